@@ -0,0 +1,97 @@
+package com.github.eboldyrev.ruleengine;
+
+import java.util.*;
+
+/**
+ * Deterministic rules and queries for benchmarks. The mix is given as percents of exact, starts with, ends with
+ * and any conditions, e.g. {@code 70/10/10/10}.
+ */
+class BenchmarkRules {
+    private static final int VALUES_PER_ATTRIBUTE = 64;
+
+    private final Random random = new Random(42);
+    private final int attributeCount;
+    private final int[] mix;
+
+    BenchmarkRules(int attributeCount, String mix) {
+        this.attributeCount = attributeCount;
+        String[] parts = mix.split("/");
+        if (parts.length != 4) {
+            throw new IllegalArgumentException("Mix should have 4 parts: " + mix);
+        }
+        this.mix = new int[4];
+        for (int i = 0; i < 4; i++) {
+            this.mix[i] = Integer.parseInt(parts[i]);
+        }
+    }
+
+    Map<String, Integer> attributeDefinitions() {
+        Map<String, Integer> attributeDefinitions = new HashMap<>();
+        for (int i = 0; i < attributeCount; i++) {
+            attributeDefinitions.put(name(i), i + 1);
+        }
+        return attributeDefinitions;
+    }
+
+    Map<String, String> rules(int ruleCount) {
+        Map<String, String> rules = new LinkedHashMap<>();
+        for (int r = 0; r < ruleCount; r++) {
+            StringJoiner conditions = new StringJoiner("#");
+            for (int i = 0; i < attributeCount; i++) {
+                if (random.nextInt(2) == 0) {
+                    continue;
+                }
+                conditions.add(name(i) + ":" + condition());
+            }
+            if (conditions.length() == 0) {
+                conditions.add(name(0) + ":" + condition());
+            }
+            rules.put(String.valueOf(r), conditions + "=" + r);
+        }
+        return rules;
+    }
+
+    List<Map<String, String>> queries(int queryCount) {
+        List<Map<String, String>> queries = new ArrayList<>(queryCount);
+        for (int q = 0; q < queryCount; q++) {
+            Map<String, String> query = new HashMap<>();
+            for (int i = 0; i < attributeCount; i++) {
+                if (random.nextInt(4) != 0) {
+                    query.put(name(i), value());
+                }
+            }
+            if (query.isEmpty()) {
+                query.put(name(0), value());
+            }
+            queries.add(query);
+        }
+        return queries;
+    }
+
+    static String asString(Map<String, String> query) {
+        StringJoiner joiner = new StringJoiner("#");
+        query.forEach((name, value) -> joiner.add(name + ":" + value));
+        return joiner.toString();
+    }
+
+    private String condition() {
+        int kind = random.nextInt(100);
+        String value = value();
+        if (kind < mix[0]) {
+            return value;
+        } else if (kind < mix[0] + mix[1]) {
+            return value.substring(0, 3) + "*";
+        } else if (kind < mix[0] + mix[1] + mix[2]) {
+            return "*" + value.substring(value.length() - 3);
+        }
+        return "*";
+    }
+
+    private String value() {
+        return "value" + (1000 + random.nextInt(VALUES_PER_ATTRIBUTE));
+    }
+
+    private static String name(int i) {
+        return "attribute" + i;
+    }
+}
@@ -0,0 +1,54 @@
+package com.github.eboldyrev.ruleengine;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RuleParsingBenchmark {
+
+    @Param({"1000", "10000"})
+    public int ruleCount;
+
+    @Param({"4", "16"})
+    public int attributeCount;
+
+    @Param({"100/0/0/0", "70/10/10/10", "25/25/25/25"})
+    public String mix;
+
+    private Map<String, AttributeDefinition> attributeDefinitions;
+    private Map<String, String> rules;
+    private List<String> ruleStrings;
+    private RuleEngine ruleEngine;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        BenchmarkRules generator = new BenchmarkRules(attributeCount, mix);
+        ruleEngine = new RuleEngine(null, null);
+        ruleEngine.setAttributesDefinitions(generator.attributeDefinitions());
+        attributeDefinitions = ruleEngine.createAttributeDefinitions(generator.attributeDefinitions());
+        rules = generator.rules(ruleCount);
+        ruleStrings = new ArrayList<>(rules.values());
+    }
+
+    @Benchmark
+    public Rule ruleFromString() {
+        String rule = ruleStrings.get(next++ % ruleStrings.size());
+        return Rule.ruleFromString("id", rule, attributeDefinitions, null, null);
+    }
+
+    @Benchmark
+    public RuleEngine setRules() {
+        ruleEngine.setRules(rules);
+        return ruleEngine;
+    }
+}
@@ -0,0 +1,66 @@
+package com.github.eboldyrev.ruleengine;
+
+import com.github.eboldyrev.ruleengine.exception.MultiplyRulesFound;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RuleQueryBenchmark {
+    private static final int QUERY_COUNT = 1024;
+    private static final String MULTIPLY = "MULTIPLY";
+
+    @Param({"1000", "10000"})
+    public int ruleCount;
+
+    @Param({"4", "16"})
+    public int attributeCount;
+
+    @Param({"100/0/0/0", "70/10/10/10", "25/25/25/25"})
+    public String mix;
+
+    @Param({"INDEXED", "COMPILED"})
+    public RuleEngine.EvaluationMode evaluationMode;
+
+    private RuleEngine ruleEngine;
+    private List<Map<String, String>> queries;
+    private String[] queryStrings;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        BenchmarkRules generator = new BenchmarkRules(attributeCount, mix);
+        ruleEngine = new RuleEngine(null, null, evaluationMode);
+        ruleEngine.setRulesAndAttributeDefinitions(generator.attributeDefinitions(), generator.rules(ruleCount));
+        queries = generator.queries(QUERY_COUNT);
+        queryStrings = new String[QUERY_COUNT];
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            queryStrings[i] = BenchmarkRules.asString(queries.get(i));
+        }
+    }
+
+    @Benchmark
+    public String queryMap() {
+        try {
+            return ruleEngine.query(queries.get(next++ & (QUERY_COUNT - 1)));
+        } catch (MultiplyRulesFound e) {
+            return MULTIPLY;
+        }
+    }
+
+    @Benchmark
+    public String queryString() {
+        try {
+            return ruleEngine.query(queryStrings[next++ & (QUERY_COUNT - 1)]);
+        } catch (MultiplyRulesFound e) {
+            return MULTIPLY;
+        }
+    }
+}
@@ -0,0 +1,446 @@
+package com.github.eboldyrev.ruleengine;
+
+import com.github.eboldyrev.ruleengine.attributes.GlobRuleAttribute;
+import com.github.eboldyrev.ruleengine.attributes.NumericRange;
+
+import java.util.*;
+
+/**
+ * Finds pairs of rules with the same weight which can match one query, so a query can't choose between them.
+ * Conditions of two rules on one attribute can be matched by one value when exact values are equal, an exact value
+ * starts with a prefix or ends with a suffix, one prefix starts with another or one suffix ends with another.
+ * Any value and a prefix with a suffix can always be matched together. Ranges match one number when they overlap
+ * or the exact value is in the range, a range with a prefix or a suffix is considered matched together.
+ * A glob pattern is matched together with an exact value which matches the pattern and with any other condition.
+ * A set is matched together with a condition which matches one of its members.
+ * Attributes constrained by only one of the rules don't matter, a query can contain any value of them.
+ * A rule is compared only with rules of its weight found through indexes of conditions on one of its attributes.
+ */
+class AmbiguityAnalysis {
+
+    // checked rules of one weight compared with every rule of the weight instead of indexing the rules
+    private static final int MAX_DIRECTLY_CHECKED = 8;
+
+    private AmbiguityAnalysis() {
+    }
+
+    /**
+     * Returns at most {@code limit} pairs of positions of ambiguous rules of the encoded rules sorted by weight.
+     */
+    static List<int[]> ambiguousPairs(EncodedRules encodedRules, int limit) {
+        List<int[]> pairs = new ArrayList<>();
+        int rulesCount = encodedRules.getRulesCount();
+        for (int from = 0, to; from < rulesCount && pairs.size() < limit; from = to) {
+            to = from + 1;
+            while (to < rulesCount && encodedRules.getWeight(to) == encodedRules.getWeight(from)) {
+                to++;
+            }
+            if (to - from > 1) {
+                new WeightGroup(encodedRules, from, to).collectPairs(pairs, limit);
+            }
+        }
+        return pairs;
+    }
+
+    /**
+     * Returns at most {@code limit} pairs of ambiguous rules where at least one rule is at one of the given sorted
+     * positions. A rule is checked against every rule of its weight when few rules of the weight are checked,
+     * otherwise the rules of the weight are indexed.
+     */
+    static List<int[]> ambiguousPairs(EncodedRules encodedRules, int[] positions, int limit) {
+        List<int[]> pairs = new ArrayList<>();
+        for (int i = 0, j; i < positions.length && pairs.size() < limit; i = j) {
+            long weight = encodedRules.getWeight(positions[i]);
+            int from = positions[i];
+            while (from > 0 && encodedRules.getWeight(from - 1) == weight) {
+                from--;
+            }
+            int to = positions[i] + 1;
+            while (to < encodedRules.getRulesCount() && encodedRules.getWeight(to) == weight) {
+                to++;
+            }
+            j = i + 1;
+            while (j < positions.length && positions[j] < to) {
+                j++;
+            }
+            if (to - from == 1) {
+                continue;
+            }
+
+            int[] checked = Arrays.copyOfRange(positions, i, j);
+            if (checked.length <= MAX_DIRECTLY_CHECKED) {
+                for (int k = 0; k < checked.length && pairs.size() < limit; k++) {
+                    for (int r = from; r < to && pairs.size() < limit; r++) {
+                        if (isCheckedBefore(checked, k, r) && canMatchSameQuery(encodedRules, checked[k], r)) {
+                            pairs.add(new int[]{Math.min(r, checked[k]), Math.max(r, checked[k])});
+                        }
+                    }
+                }
+            } else {
+                new WeightGroup(encodedRules, from, to).collectPairs(pairs, limit, checked);
+            }
+        }
+        return pairs;
+    }
+
+    // false for the rule itself and for checked rules before it, these pairs are found when that rule is checked
+    private static boolean isCheckedBefore(int[] checked, int k, int rule) {
+        return rule != checked[k] && (rule > checked[k] || Arrays.binarySearch(checked, 0, k, rule) < 0);
+    }
+
+    static boolean canMatchSameQuery(EncodedRules encodedRules, int first, int second) {
+        for (int c1 = encodedRules.getConditionStart(first); c1 < encodedRules.getConditionEnd(first); c1++) {
+            for (int c2 = encodedRules.getConditionStart(second); c2 < encodedRules.getConditionEnd(second); c2++) {
+                if (encodedRules.getConditionAttribute(c1) == encodedRules.getConditionAttribute(c2)
+                        && !compatible(encodedRules, c1, c2)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean compatible(EncodedRules encodedRules, int c1, int c2) {
+        byte type1 = encodedRules.getConditionType(c1);
+        byte type2 = encodedRules.getConditionType(c2);
+        if (type1 == EncodedRules.ANY || type2 == EncodedRules.ANY) {
+            return true;
+        }
+        if (type1 > type2) {
+            return compatible(encodedRules, c2, c1);
+        }
+        int attributeId = encodedRules.getConditionAttribute(c1);
+        if (type2 == EncodedRules.SET) {
+            for (int memberId : encodedRules.getSetMembers(attributeId, encodedRules.getConditionValue(c2))) {
+                if (matchesValue(encodedRules, c1, memberId)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (type2 == EncodedRules.GLOB) {
+            return type1 != EncodedRules.EXACT || GlobRuleAttribute.matches(
+                    encodedRules.getValue(attributeId, encodedRules.getConditionValue(c2)),
+                    encodedRules.getValue(attributeId, encodedRules.getConditionValue(c1)));
+        }
+        if (type2 == EncodedRules.RANGE) {
+            NumericRange range = encodedRules.getRange(attributeId, encodedRules.getConditionValue(c2));
+            switch (type1) {
+                case EncodedRules.EXACT:
+                    String value = encodedRules.getValue(attributeId, encodedRules.getConditionValue(c1));
+                    return range.contains(NumericRange.parseNumber(value));
+                case EncodedRules.RANGE:
+                    return range.overlaps(encodedRules.getRange(attributeId, encodedRules.getConditionValue(c1)));
+                default:
+                    return true;
+            }
+        }
+        String value1 = encodedRules.getValue(attributeId, encodedRules.getConditionValue(c1));
+        String value2 = encodedRules.getValue(attributeId, encodedRules.getConditionValue(c2));
+        switch (type1) {
+            case EncodedRules.EXACT:
+                if (type2 == EncodedRules.EXACT) {
+                    return value1.equals(value2);
+                }
+                return type2 == EncodedRules.PREFIX ? value1.startsWith(value2) : value1.endsWith(value2);
+            case EncodedRules.PREFIX:
+                if (type2 == EncodedRules.PREFIX) {
+                    return value1.startsWith(value2) || value2.startsWith(value1);
+                }
+                // prefix followed by suffix matches both
+                return true;
+            default:
+                return value1.endsWith(value2) || value2.endsWith(value1);
+        }
+    }
+
+    // checks whether the condition matches the value with the value id
+    private static boolean matchesValue(EncodedRules encodedRules, int condition, int valueId) {
+        int attributeId = encodedRules.getConditionAttribute(condition);
+        int conditionValue = encodedRules.getConditionValue(condition);
+        String value = encodedRules.getValue(attributeId, valueId);
+        switch (encodedRules.getConditionType(condition)) {
+            case EncodedRules.EXACT:
+                return conditionValue == valueId;
+            case EncodedRules.PREFIX:
+                return value.startsWith(encodedRules.getValue(attributeId, conditionValue));
+            case EncodedRules.SUFFIX:
+                return value.endsWith(encodedRules.getValue(attributeId, conditionValue));
+            case EncodedRules.RANGE:
+                return encodedRules.getRange(attributeId, conditionValue).contains(NumericRange.parseNumber(value));
+            case EncodedRules.GLOB:
+                return GlobRuleAttribute.matches(encodedRules.getValue(attributeId, conditionValue), value);
+            case EncodedRules.SET:
+                return Arrays.binarySearch(encodedRules.getSetMembers(attributeId, conditionValue), valueId) >= 0;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Conditions of rules of one weight indexed by attribute, so every rule is compared only with rules whose
+     * conditions can be matched together with its conditions on one of its attributes.
+     */
+    private static class WeightGroup {
+        private final EncodedRules encodedRules;
+        private final int from;
+        private final int to;
+        // by attribute id, null for attributes without conditions in the group
+        private final AttributeConditions[] attributes;
+        private int[] candidates;
+
+        WeightGroup(EncodedRules encodedRules, int from, int to) {
+            this.encodedRules = encodedRules;
+            this.from = from;
+            this.to = to;
+            this.attributes = new AttributeConditions[encodedRules.getAttributesCount()];
+            this.candidates = new int[to - from];
+            for (int r = from; r < to; r++) {
+                for (int c = encodedRules.getConditionStart(r); c < encodedRules.getConditionEnd(r); c++) {
+                    int attributeId = encodedRules.getConditionAttribute(c);
+                    if (attributes[attributeId] == null) {
+                        attributes[attributeId] = new AttributeConditions();
+                    }
+                }
+            }
+            for (int r = from; r < to; r++) {
+                for (int attributeId = 0; attributeId < attributes.length; attributeId++) {
+                    if (attributes[attributeId] != null) {
+                        attributes[attributeId].constrained = false;
+                    }
+                }
+                for (int c = encodedRules.getConditionStart(r); c < encodedRules.getConditionEnd(r); c++) {
+                    attributes[encodedRules.getConditionAttribute(c)].add(encodedRules, c, r);
+                }
+                for (AttributeConditions conditions : attributes) {
+                    if (conditions != null && !conditions.constrained) {
+                        conditions.unconstrained.add(r);
+                    }
+                }
+            }
+            for (AttributeConditions conditions : attributes) {
+                if (conditions != null) {
+                    conditions.build();
+                }
+            }
+        }
+
+        void collectPairs(List<int[]> pairs, int limit) {
+            RuleIndex.PostingLists lists = new RuleIndex.PostingLists();
+            for (int r = from; r < to && pairs.size() < limit; r++) {
+                int count = candidates(r, r, lists);
+                for (int i = 0; i < count && pairs.size() < limit; i++) {
+                    if (canMatchSameQuery(encodedRules, r, candidates[i])) {
+                        pairs.add(new int[]{r, candidates[i]});
+                    }
+                }
+            }
+        }
+
+        // pairs where at least one rule is one of the sorted checked rules
+        void collectPairs(List<int[]> pairs, int limit, int[] checked) {
+            RuleIndex.PostingLists lists = new RuleIndex.PostingLists();
+            for (int k = 0; k < checked.length && pairs.size() < limit; k++) {
+                int count = candidates(checked[k], from - 1, lists);
+                for (int i = 0; i < count && pairs.size() < limit; i++) {
+                    if (isCheckedBefore(checked, k, candidates[i])
+                            && canMatchSameQuery(encodedRules, checked[k], candidates[i])) {
+                        pairs.add(new int[]{Math.min(checked[k], candidates[i]), Math.max(checked[k], candidates[i])});
+                    }
+                }
+            }
+        }
+
+        // puts sorted positions after the given one which can be ambiguous with the rule into candidates and returns
+        // their count, candidates are taken from the attribute of the rule with the fewest of them
+        private int candidates(int rule, int after, RuleIndex.PostingLists lists) {
+            int driverFrom = -1;
+            int driverTo = -1;
+            for (int c = encodedRules.getConditionStart(rule); c < encodedRules.getConditionEnd(rule); c++) {
+                int start = lists.size();
+                if (attributes[encodedRules.getConditionAttribute(c)].collect(encodedRules, c, lists)) {
+                    if (driverFrom < 0 || lists.totalLength(start, lists.size()) < lists.totalLength(driverFrom, driverTo)) {
+                        driverFrom = start;
+                        driverTo = lists.size();
+                    }
+                } else {
+                    lists.truncate(start);
+                }
+            }
+
+            int count = 0;
+            if (driverFrom < 0) {
+                for (int r = after + 1; r < to; r++) {
+                    candidates[count++] = r;
+                }
+            } else {
+                // a rule can be in several lists, like a rule with a set in the lists of its members
+                int length = lists.totalLength(driverFrom, driverTo);
+                if (candidates.length < length) {
+                    candidates = new int[Math.max(length, 2 * candidates.length)];
+                }
+                for (int l = driverFrom; l < driverTo; l++) {
+                    int[] list = lists.get(l);
+                    int idx = Arrays.binarySearch(list, after + 1);
+                    for (int i = idx >= 0 ? idx : -idx - 1; i < list.length; i++) {
+                        candidates[count++] = list[i];
+                    }
+                }
+                Arrays.sort(candidates, 0, count);
+                int distinct = 0;
+                for (int i = 0; i < count; i++) {
+                    if (distinct == 0 || candidates[distinct - 1] != candidates[i]) {
+                        candidates[distinct++] = candidates[i];
+                    }
+                }
+                count = distinct;
+            }
+            lists.clear();
+            return count;
+        }
+    }
+
+    /**
+     * Rules of one weight by their conditions on one attribute. Exact values and set members are kept in a sorted map,
+     * prefixes and suffixes in tries and in sorted maps, ranges in a {@link RangeIndex}. Posting lists of positions
+     * are sorted ascending, a rule with several conditions on the attribute is added for each of them.
+     */
+    private static class AttributeConditions {
+        private final TreeMap<String, RuleIndex.IntList> exactValues = new TreeMap<>();
+        // exact values and set members read backwards
+        private final TreeMap<String, RuleIndex.IntList> reversedExactValues = new TreeMap<>();
+        private final TreeMap<String, RuleIndex.IntList> prefixes = new TreeMap<>();
+        // suffixes read backwards
+        private final TreeMap<String, RuleIndex.IntList> reversedSuffixes = new TreeMap<>();
+        private final PrefixTrie.Builder prefixTrieBuilder = new PrefixTrie.Builder();
+        private final PrefixTrie.Builder suffixTrieBuilder = new PrefixTrie.Builder(true);
+        private final RangeIndex.Builder rangesBuilder = new RangeIndex.Builder();
+        private final RuleIndex.IntList prefixRules = new RuleIndex.IntList();
+        private final RuleIndex.IntList suffixRules = new RuleIndex.IntList();
+        private final RuleIndex.IntList rangeRules = new RuleIndex.IntList();
+        private final RuleIndex.IntList globRules = new RuleIndex.IntList();
+        // rules without a condition on the attribute or with any value
+        private final RuleIndex.IntList unconstrained = new RuleIndex.IntList();
+        private PrefixTrie prefixTrie;
+        private PrefixTrie suffixTrie;
+        private RangeIndex ranges;
+        private boolean constrained;
+
+        void add(EncodedRules encodedRules, int condition, int rule) {
+            int attributeId = encodedRules.getConditionAttribute(condition);
+            int valueId = encodedRules.getConditionValue(condition);
+            switch (encodedRules.getConditionType(condition)) {
+                case EncodedRules.EXACT:
+                    addExact(encodedRules.getValue(attributeId, valueId), rule);
+                    break;
+                case EncodedRules.SET:
+                    for (int memberId : encodedRules.getSetMembers(attributeId, valueId)) {
+                        addExact(encodedRules.getValue(attributeId, memberId), rule);
+                    }
+                    break;
+                case EncodedRules.PREFIX:
+                    String prefix = encodedRules.getValue(attributeId, valueId);
+                    prefixes.computeIfAbsent(prefix, v -> new RuleIndex.IntList()).add(rule);
+                    prefixTrieBuilder.add(prefix, rule);
+                    prefixRules.add(rule);
+                    break;
+                case EncodedRules.SUFFIX:
+                    String suffix = encodedRules.getValue(attributeId, valueId);
+                    reversedSuffixes.computeIfAbsent(reverse(suffix), v -> new RuleIndex.IntList()).add(rule);
+                    suffixTrieBuilder.add(suffix, rule);
+                    suffixRules.add(rule);
+                    break;
+                case EncodedRules.RANGE:
+                    rangesBuilder.add(encodedRules.getRange(attributeId, valueId), rule);
+                    rangeRules.add(rule);
+                    break;
+                case EncodedRules.GLOB:
+                    globRules.add(rule);
+                    break;
+                default:
+                    unconstrained.add(rule);
+            }
+            constrained = true;
+        }
+
+        private void addExact(String value, int rule) {
+            exactValues.computeIfAbsent(value, v -> new RuleIndex.IntList()).add(rule);
+            reversedExactValues.computeIfAbsent(reverse(value), v -> new RuleIndex.IntList()).add(rule);
+        }
+
+        void build() {
+            prefixTrie = prefixTrieBuilder.build();
+            suffixTrie = suffixTrieBuilder.build();
+            ranges = rangesBuilder.build();
+        }
+
+        /**
+         * Adds posting lists of rules whose conditions on the attribute can be matched together with the condition,
+         * returns false without adding lists when the condition is matched together with almost any condition.
+         */
+        boolean collect(EncodedRules encodedRules, int condition, RuleIndex.PostingLists lists) {
+            int attributeId = encodedRules.getConditionAttribute(condition);
+            int valueId = encodedRules.getConditionValue(condition);
+            switch (encodedRules.getConditionType(condition)) {
+                case EncodedRules.EXACT:
+                    collectExact(encodedRules.getValue(attributeId, valueId), lists);
+                    break;
+                case EncodedRules.SET:
+                    for (int memberId : encodedRules.getSetMembers(attributeId, valueId)) {
+                        collectExact(encodedRules.getValue(attributeId, memberId), lists);
+                    }
+                    break;
+                case EncodedRules.PREFIX:
+                    String prefix = encodedRules.getValue(attributeId, valueId);
+                    collectStartingWith(exactValues, prefix, true, lists);
+                    prefixTrie.collect(prefix, lists);
+                    collectStartingWith(prefixes, prefix, false, lists);
+                    add(lists, suffixRules);
+                    break;
+                case EncodedRules.SUFFIX:
+                    String reversedSuffix = reverse(encodedRules.getValue(attributeId, valueId));
+                    collectStartingWith(reversedExactValues, reversedSuffix, true, lists);
+                    suffixTrie.collect(encodedRules.getValue(attributeId, valueId), lists);
+                    collectStartingWith(reversedSuffixes, reversedSuffix, false, lists);
+                    add(lists, prefixRules);
+                    break;
+                default:
+                    return false;
+            }
+            if (encodedRules.getConditionType(condition) != EncodedRules.EXACT
+                    && encodedRules.getConditionType(condition) != EncodedRules.SET) {
+                add(lists, rangeRules);
+            }
+            add(lists, globRules);
+            add(lists, unconstrained);
+            return true;
+        }
+
+        private void collectExact(String value, RuleIndex.PostingLists lists) {
+            add(lists, exactValues.get(value));
+            prefixTrie.collect(value, lists);
+            suffixTrie.collect(value, lists);
+            ranges.collect(NumericRange.parseNumber(value), lists);
+        }
+
+        private static void collectStartingWith(NavigableMap<String, RuleIndex.IntList> values, String start,
+                                                boolean inclusive, RuleIndex.PostingLists lists) {
+            for (Map.Entry<String, RuleIndex.IntList> entry : values.tailMap(start, inclusive).entrySet()) {
+                if (!entry.getKey().startsWith(start)) {
+                    return;
+                }
+                add(lists, entry.getValue());
+            }
+        }
+
+        private static void add(RuleIndex.PostingLists lists, RuleIndex.IntList rules) {
+            if (rules != null && rules.size() > 0) {
+                lists.add(rules.toArray());
+            }
+        }
+
+        private static String reverse(String value) {
+            return new StringBuilder(value).reverse().toString();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.github.eboldyrev.ruleengine;
+
+/**
+ * Attribute resolved once by {@link RuleEngine#attributeHandle(String)}: name transformation and
+ * attribute definition lookup are already done, so the handle can be used for building many queries.
+ */
+public class AttributeHandle {
+
+    private final AttributeDefinition definition;
+
+    AttributeHandle(AttributeDefinition definition) {
+        this.definition = definition;
+    }
+
+    public String getName() {
+        return definition.getName();
+    }
+
+    AttributeDefinition getDefinition() {
+        return definition;
+    }
+
+    @Override
+    public String toString() {
+        return "AttributeHandle{" +
+                "name='" + definition.getName() + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,101 @@
+package com.github.eboldyrev.ruleengine;
+
+import java.util.AbstractList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Rules of {@link RuleEngine.StorageMode#COMPACT} storage. Conditions are kept only by {@link EncodedRules},
+ * ids and results in arrays with equal results shared, and a {@link Rule} is created every time it is requested.
+ */
+class CompactRules extends AbstractList<Rule> implements RandomAccess {
+    private final EncodedRules encodedRules;
+    // by attribute id of the encoded rules
+    private final AttributeDefinition[] attributeDefinitions;
+    private final String[] ids;
+    private final String[] results;
+
+    CompactRules(EncodedRules encodedRules, AttributeDefinition[] attributeDefinitions, String[] ids, String[] results) {
+        this.encodedRules = encodedRules;
+        this.attributeDefinitions = attributeDefinitions;
+        this.ids = ids;
+        this.results = results;
+    }
+
+    /**
+     * Compacts rules which were encoded into the given encoded rules in the same order.
+     */
+    static CompactRules of(List<Rule> rules, EncodedRules encodedRules) {
+        AttributeDefinition[] attributeDefinitions = new AttributeDefinition[encodedRules.getAttributesCount()];
+        String[] ids = new String[rules.size()];
+        String[] results = new String[rules.size()];
+        Map<String, String> resultsPool = new HashMap<>();
+        for (int r = 0; r < rules.size(); r++) {
+            Rule rule = rules.get(r);
+            ids[r] = rule.getId();
+            results[r] = resultsPool.computeIfAbsent(rule.getResult(), result -> result);
+            int condition = encodedRules.getConditionStart(r);
+            for (int i = 0; i < rule.getAttributes().size(); i++, condition++) {
+                int attributeId = encodedRules.getConditionAttribute(condition);
+                if (attributeDefinitions[attributeId] == null) {
+                    attributeDefinitions[attributeId] = rule.getAttributes().get(i).getDefinition();
+                }
+            }
+        }
+        return new CompactRules(encodedRules, attributeDefinitions, ids, results);
+    }
+
+    /**
+     * Applies the changes to these rules, the encoded rules should be the changed ones. Kept rules are not created.
+     */
+    CompactRules update(EncodedRules changedRules, RuleChanges changes) {
+        String[] updatedIds = new String[changes.getRulesCount()];
+        String[] updatedResults = new String[changes.getRulesCount()];
+        for (int position = 0; position < ids.length; position++) {
+            int newPosition = changes.newPosition(position);
+            if (newPosition != RuleChanges.REMOVED) {
+                updatedIds[newPosition] = ids[position];
+                updatedResults[newPosition] = results[position];
+            }
+        }
+        AttributeDefinition[] updatedDefinitions = attributeDefinitions.clone();
+        int[] addedPositions = changes.getAddedPositions();
+        for (int i = 0; i < addedPositions.length; i++) {
+            Rule rule = changes.getAddedRules().get(i);
+            updatedIds[addedPositions[i]] = rule.getId();
+            updatedResults[addedPositions[i]] = rule.getResult();
+            int condition = changedRules.getConditionStart(addedPositions[i]);
+            for (int j = 0; j < rule.getAttributes().size(); j++, condition++) {
+                int attributeId = changedRules.getConditionAttribute(condition);
+                if (updatedDefinitions[attributeId] == null) {
+                    updatedDefinitions[attributeId] = rule.getAttributes().get(j).getDefinition();
+                }
+            }
+        }
+        return new CompactRules(changedRules, updatedDefinitions, updatedIds, updatedResults);
+    }
+
+    @Override
+    public Rule get(int position) {
+        return new Rule(ids[position], encodedRules.decodeAttributes(position, attributeDefinitions), results[position]);
+    }
+
+    @Override
+    public int size() {
+        return ids.length;
+    }
+
+    String getId(int position) {
+        return ids[position];
+    }
+
+    String getResult(int position) {
+        return results[position];
+    }
+
+    EncodedRules getEncodedRules() {
+        return encodedRules;
+    }
+}
@@ -0,0 +1,574 @@
+package com.github.eboldyrev.ruleengine;
+
+import com.github.eboldyrev.ruleengine.attributes.NumericRange;
+
+import java.util.*;
+import java.util.function.IntFunction;
+
+/**
+ * Rules compiled into a discrimination tree. Every level of the tree branches on the value of one attribute:
+ * exact value, prefix, suffix, range, glob pattern, any value or no condition on the attribute. A set of values
+ * puts the rule under the exact value branch of every member. Rules which share conditions share
+ * the nodes of the tree, so a query is one walk from the root to the leaves and every rule reached in a leaf
+ * matches the query without evaluating its conditions one by one.
+ * Rules with several conditions on one attribute can't be put into the tree and are evaluated one by one.
+ * Leaves and residual rules keep rule numbers, see {@link RulePositions}.
+ */
+class DiscriminationTree {
+    private static final int[] NO_RULES = new int[0];
+    private static final int NO_CONDITION = -1;
+    private static final int NO_LEVEL = -1;
+
+    private final EncodedRules encodedRules;
+    // attribute id of every level
+    private final int[] levelAttributes;
+    // level of every attribute id, NO_LEVEL for attributes without conditions
+    private final int[] levels;
+    private final Node root;
+    private final int[] residualRules;
+    private final RulePositions positions;
+
+    DiscriminationTree(EncodedRules encodedRules) {
+        this.encodedRules = encodedRules;
+        int rulesCount = encodedRules.getRulesCount();
+
+        // attributes constrained by more rules go first, so the tree splits as early as possible
+        int[] usage = new int[encodedRules.getAttributesCount()];
+        for (int r = 0; r < rulesCount; r++) {
+            for (int c = encodedRules.getConditionStart(r); c < encodedRules.getConditionEnd(r); c++) {
+                usage[encodedRules.getConditionAttribute(c)]++;
+            }
+        }
+        List<Integer> attributes = new ArrayList<>();
+        for (int attributeId = 0; attributeId < usage.length; attributeId++) {
+            if (usage[attributeId] > 0) {
+                attributes.add(attributeId);
+            }
+        }
+        attributes.sort(Comparator.comparing((Integer attributeId) -> usage[attributeId]).reversed()
+                .thenComparing(attributeId -> attributeId));
+        this.levelAttributes = new int[attributes.size()];
+        this.levels = new int[usage.length];
+        Arrays.fill(levels, NO_LEVEL);
+        for (int level = 0; level < levelAttributes.length; level++) {
+            levelAttributes[level] = attributes.get(level);
+            levels[levelAttributes[level]] = level;
+        }
+
+        // condition index of every rule on every level
+        int[][] conditions = new int[rulesCount][];
+        RuleIndex.IntList compiled = new RuleIndex.IntList();
+        RuleIndex.IntList residual = new RuleIndex.IntList();
+        for (int r = 0; r < rulesCount; r++) {
+            conditions[r] = ruleConditions(r);
+            if (conditions[r] != null) {
+                compiled.add(r);
+            } else {
+                residual.add(r);
+            }
+        }
+
+        this.root = compiled.size() > 0 ? build(0, compiled.toArray(), r -> conditions[r]) : null;
+        this.residualRules = residual.toArray();
+        this.positions = new RulePositions(rulesCount);
+    }
+
+    private DiscriminationTree(DiscriminationTree previous, EncodedRules encodedRules, RuleChanges changes) {
+        this.encodedRules = encodedRules;
+        this.levelAttributes = previous.levelAttributes;
+        this.levels = previous.levels;
+        this.positions = previous.positions.update(changes);
+        Node updatedRoot = previous.root;
+        RuleIndex.IntList residual = new RuleIndex.IntList();
+        int[] addedPositions = changes.getAddedPositions();
+        for (int i = 0; i < addedPositions.length; i++) {
+            int number = previous.positions.size() + i;
+            int[] ruleConditions = ruleConditions(addedPositions[i]);
+            if (ruleConditions != null) {
+                updatedRoot = insert(updatedRoot, 0, number, ruleConditions);
+            } else {
+                residual.add(number);
+            }
+        }
+        this.root = updatedRoot;
+        this.residualRules = RuleChanges.merge(previous.residualRules, residual.toArray());
+    }
+
+    /**
+     * Applies the changes to the tree of the previous rules, the encoded rules should be the changed ones.
+     * Added rules are put into the tree one by one copying only nodes on their paths, other nodes are shared with
+     * the previous tree, and removed rules stay in leaves until the tree is built again. The tree is built again
+     * when an added rule has a condition on an attribute without a level in the tree.
+     */
+    static DiscriminationTree update(DiscriminationTree previous, EncodedRules encodedRules, RuleChanges changes) {
+        for (int r : changes.getAddedPositions()) {
+            for (int c = encodedRules.getConditionStart(r); c < encodedRules.getConditionEnd(r); c++) {
+                if (previous.levels[encodedRules.getConditionAttribute(c)] == NO_LEVEL) {
+                    return new DiscriminationTree(encodedRules);
+                }
+            }
+        }
+        return new DiscriminationTree(previous, encodedRules, changes);
+    }
+
+    // condition index of the rule on every level, null when the rule has several conditions on one attribute
+    private int[] ruleConditions(int r) {
+        int[] ruleConditions = new int[levelAttributes.length];
+        Arrays.fill(ruleConditions, NO_CONDITION);
+        for (int c = encodedRules.getConditionStart(r); c < encodedRules.getConditionEnd(r); c++) {
+            int level = levels[encodedRules.getConditionAttribute(c)];
+            if (ruleConditions[level] != NO_CONDITION) {
+                return null;
+            }
+            ruleConditions[level] = c;
+        }
+        return ruleConditions;
+    }
+
+    /**
+     * Puts sorted positions of the heaviest rules which match the query encoded by {@link EncodedRules#encodeQuery}
+     * into {@link QueryScratch#matches} and returns their count, several positions mean that rules have the same weight.
+     */
+    int match(QueryScratch scratch) {
+        scratch.matches.clear();
+        scratch.bestWeight = -1;
+        scratch.postingLists.clear();
+        if (root != null) {
+            walk(root, scratch);
+        }
+        matchResidual(scratch);
+        // the tree is walked branch by branch and residual rules come after the tree
+        scratch.matches.sort();
+        return scratch.matches.size();
+    }
+
+    /**
+     * Puts sorted positions of at most {@code k} heaviest rules which match the query encoded by
+     * {@link EncodedRules#encodeQuery} into {@link QueryScratch#matches} and returns their count.
+     * Subtrees whose heaviest rule can't get into the top are skipped.
+     */
+    int matchTopK(QueryScratch scratch, int k) {
+        scratch.topK = k;
+        scratch.topPositions.reset(k);
+        scratch.postingLists.clear();
+        try {
+            if (root != null) {
+                walk(root, scratch);
+            }
+            matchResidual(scratch);
+        } finally {
+            scratch.topK = 0;
+        }
+        scratch.topPositions.drainSorted(scratch.matches);
+        return scratch.matches.size();
+    }
+
+    private void matchResidual(QueryScratch scratch) {
+        for (int number : residualRules) {
+            int position = positions.position(number);
+            if (position != RulePositions.REMOVED && canBeat(scratch, position)) {
+                scratch.evaluatedRules++;
+                if (encodedRules.matches(position, scratch)) {
+                    addMatch(scratch, position);
+                }
+            }
+        }
+    }
+
+    private void walk(Node node, QueryScratch scratch) {
+        if (!canBeat(scratch, positions.bound(node.bestRule))) {
+            return;
+        }
+        if (node.level == levelAttributes.length) {
+            scratch.evaluatedRules += node.rules.length;
+            for (int number : node.rules) {
+                int position = positions.position(number);
+                if (position != RulePositions.REMOVED) {
+                    addMatch(scratch, position);
+                }
+            }
+            return;
+        }
+
+        int attributeId = levelAttributes[node.level];
+        String value = scratch.queryValues[attributeId];
+        if (value != null) {
+            int exactIdx = Arrays.binarySearch(node.exactValues, scratch.queryValueIds[attributeId]);
+            if (exactIdx >= 0) {
+                walk(node.exactChildren[exactIdx], scratch);
+            }
+            walkPartial(node.prefixes, node.prefixChildren, value, scratch);
+            walkPartial(node.suffixes, node.suffixChildren, value, scratch);
+            if (node.ranges != null) {
+                int from = scratch.postingLists.size();
+                node.ranges.collect(scratch.queryNumbers[attributeId], scratch.postingLists);
+                walkCollected(node.rangeChildren, from, scratch);
+            }
+            if (node.globValues.length > 0) {
+                for (int i = scratch.globMatchStarts[attributeId]; i < scratch.globMatchEnds[attributeId]; i++) {
+                    int globIdx = Arrays.binarySearch(node.globValues, scratch.globMatches[i]);
+                    if (globIdx >= 0) {
+                        walk(node.globChildren[globIdx], scratch);
+                    }
+                }
+            }
+            if (node.any != null) {
+                walk(node.any, scratch);
+            }
+        }
+        if (node.none != null) {
+            walk(node.none, scratch);
+        }
+    }
+
+    private void walkPartial(PrefixTrie trie, Node[] children, String value, QueryScratch scratch) {
+        if (trie == null) {
+            return;
+        }
+        int from = scratch.postingLists.size();
+        trie.collect(value, scratch.postingLists);
+        walkCollected(children, from, scratch);
+    }
+
+    // walks children whose indexes were collected to posting lists after from and removes these lists,
+    // posting lists are used as a stack: children found here stay below the lists appended by nested walks
+    private void walkCollected(Node[] children, int from, QueryScratch scratch) {
+        RuleIndex.PostingLists lists = scratch.postingLists;
+        int to = lists.size();
+        for (int l = from; l < to; l++) {
+            for (int index : lists.get(l)) {
+                walk(children[index], scratch);
+            }
+        }
+        lists.truncate(from);
+    }
+
+    private boolean canBeat(QueryScratch scratch, int position) {
+        if (position >= encodedRules.getRulesCount()) {
+            return false;
+        }
+        if (scratch.topK > 0) {
+            return scratch.topPositions.accepts(position);
+        }
+        return encodedRules.getWeight(position) >= scratch.bestWeight;
+    }
+
+    private void addMatch(QueryScratch scratch, int position) {
+        if (scratch.topK > 0) {
+            scratch.topPositions.offer(position);
+            return;
+        }
+        long weight = encodedRules.getWeight(position);
+        if (weight > scratch.bestWeight) {
+            scratch.bestWeight = weight;
+            scratch.matches.clear();
+        }
+        if (weight == scratch.bestWeight) {
+            scratch.matches.add(position);
+        }
+    }
+
+    private Node build(int level, int[] rules, IntFunction<int[]> conditions) {
+        if (level == levelAttributes.length) {
+            return new Node(level, rules);
+        }
+
+        RuleIndex.IntList none = new RuleIndex.IntList();
+        RuleIndex.IntList any = new RuleIndex.IntList();
+        Map<Integer, RuleIndex.IntList> exact = new TreeMap<>();
+        Map<Integer, RuleIndex.IntList> prefixes = new LinkedHashMap<>();
+        Map<Integer, RuleIndex.IntList> suffixes = new LinkedHashMap<>();
+        Map<Integer, RuleIndex.IntList> ranges = new LinkedHashMap<>();
+        Map<Integer, RuleIndex.IntList> globs = new TreeMap<>();
+        for (int rule : rules) {
+            int condition = conditions.apply(rule)[level];
+            if (condition == NO_CONDITION) {
+                none.add(rule);
+                continue;
+            }
+            int valueId = encodedRules.getConditionValue(condition);
+            switch (encodedRules.getConditionType(condition)) {
+                case EncodedRules.EXACT:
+                    exact.computeIfAbsent(valueId, v -> new RuleIndex.IntList()).add(rule);
+                    break;
+                case EncodedRules.PREFIX:
+                    prefixes.computeIfAbsent(valueId, v -> new RuleIndex.IntList()).add(rule);
+                    break;
+                case EncodedRules.SUFFIX:
+                    suffixes.computeIfAbsent(valueId, v -> new RuleIndex.IntList()).add(rule);
+                    break;
+                case EncodedRules.RANGE:
+                    ranges.computeIfAbsent(valueId, v -> new RuleIndex.IntList()).add(rule);
+                    break;
+                case EncodedRules.GLOB:
+                    globs.computeIfAbsent(valueId, v -> new RuleIndex.IntList()).add(rule);
+                    break;
+                case EncodedRules.SET:
+                    for (int memberId : encodedRules.getSetMembers(levelAttributes[level], valueId)) {
+                        exact.computeIfAbsent(memberId, v -> new RuleIndex.IntList()).add(rule);
+                    }
+                    break;
+                default:
+                    any.add(rule);
+            }
+        }
+
+        // no rule has a condition on this attribute, skip the level
+        if (none.size() == rules.length) {
+            return build(level + 1, rules, conditions);
+        }
+
+        Node node = new Node(level, NO_RULES);
+        node.none = none.size() > 0 ? build(level + 1, none.toArray(), conditions) : null;
+        node.any = any.size() > 0 ? build(level + 1, any.toArray(), conditions) : null;
+        node.exactValues = new int[exact.size()];
+        node.exactChildren = new Node[exact.size()];
+        buildValues(level, exact, node.exactValues, node.exactChildren, conditions);
+        node.globValues = new int[globs.size()];
+        node.globChildren = new Node[globs.size()];
+        buildValues(level, globs, node.globValues, node.globChildren, conditions);
+        if (!prefixes.isEmpty()) {
+            PrefixTrie.Builder trie = new PrefixTrie.Builder();
+            node.prefixChildren = buildPartial(level, prefixes, trie, conditions);
+            node.prefixes = trie.build();
+        }
+        if (!suffixes.isEmpty()) {
+            PrefixTrie.Builder trie = new PrefixTrie.Builder(true);
+            node.suffixChildren = buildPartial(level, suffixes, trie, conditions);
+            node.suffixes = trie.build();
+        }
+        if (!ranges.isEmpty()) {
+            int attributeId = levelAttributes[level];
+            RangeIndex.Builder rangeIndex = new RangeIndex.Builder();
+            node.rangeChildren = new Node[ranges.size()];
+            int child = 0;
+            for (Map.Entry<Integer, RuleIndex.IntList> entry : ranges.entrySet()) {
+                rangeIndex.add(encodedRules.getRange(attributeId, entry.getKey()), child);
+                node.rangeChildren[child] = build(level + 1, entry.getValue().toArray(), conditions);
+                child++;
+            }
+            node.ranges = rangeIndex.build();
+            node.rangeValues = new int[ranges.size()];
+            child = 0;
+            for (int valueId : ranges.keySet()) {
+                node.rangeValues[child++] = valueId;
+            }
+        }
+        // rules are built in position order
+        node.bestRule = rules[0];
+        return node;
+    }
+
+    // puts the rule under the node, only nodes on the path of the rule are copied
+    private Node insert(Node node, int level, int number, int[] conditions) {
+        if (node == null) {
+            return build(level, new int[]{number}, r -> conditions);
+        }
+        for (int skipped = level; skipped < node.level; skipped++) {
+            // no rule under the node has a condition on this level, the node goes under no condition branch
+            if (conditions[skipped] != NO_CONDITION) {
+                Node split = new Node(skipped, NO_RULES);
+                split.none = node;
+                split.bestRule = node.bestRule;
+                node = split;
+                break;
+            }
+        }
+        if (node.level == levelAttributes.length) {
+            Node leaf = new Node(node.level, RuleChanges.merge(node.rules, new int[]{number}));
+            leaf.bestRule = heavier(node.bestRule, number);
+            return leaf;
+        }
+
+        Node inserted = node.copy();
+        int condition = conditions[node.level];
+        int attributeId = levelAttributes[node.level];
+        if (condition == NO_CONDITION) {
+            inserted.none = insert(node.none, node.level + 1, number, conditions);
+        } else {
+            int valueId = encodedRules.getConditionValue(condition);
+            switch (encodedRules.getConditionType(condition)) {
+                case EncodedRules.EXACT:
+                    insertValue(inserted, false, valueId, number, conditions);
+                    break;
+                case EncodedRules.GLOB:
+                    insertValue(inserted, true, valueId, number, conditions);
+                    break;
+                case EncodedRules.SET:
+                    for (int memberId : encodedRules.getSetMembers(attributeId, valueId)) {
+                        insertValue(inserted, false, memberId, number, conditions);
+                    }
+                    break;
+                case EncodedRules.PREFIX:
+                    insertPartial(inserted, false, encodedRules.getValue(attributeId, valueId), number, conditions);
+                    break;
+                case EncodedRules.SUFFIX:
+                    insertPartial(inserted, true, encodedRules.getValue(attributeId, valueId), number, conditions);
+                    break;
+                case EncodedRules.RANGE:
+                    insertRange(inserted, valueId, number, conditions);
+                    break;
+                default:
+                    inserted.any = insert(node.any, node.level + 1, number, conditions);
+            }
+        }
+        inserted.bestRule = heavier(node.bestRule, number);
+        return inserted;
+    }
+
+    // numbers of added rules don't follow position order, so rules are compared by their positions
+    private int heavier(int rule, int addedRule) {
+        return positions.position(addedRule) < positions.bound(rule) ? addedRule : rule;
+    }
+
+    private void insertValue(Node node, boolean glob, int valueId, int number, int[] conditions) {
+        int[] values = glob ? node.globValues : node.exactValues;
+        Node[] children = glob ? node.globChildren : node.exactChildren;
+        int idx = Arrays.binarySearch(values, valueId);
+        if (idx < 0) {
+            idx = -idx - 1;
+            int[] insertedValues = new int[values.length + 1];
+            Node[] insertedChildren = new Node[children.length + 1];
+            System.arraycopy(values, 0, insertedValues, 0, idx);
+            System.arraycopy(children, 0, insertedChildren, 0, idx);
+            insertedValues[idx] = valueId;
+            System.arraycopy(values, idx, insertedValues, idx + 1, values.length - idx);
+            System.arraycopy(children, idx, insertedChildren, idx + 1, children.length - idx);
+            values = insertedValues;
+            children = insertedChildren;
+        } else {
+            children = children.clone();
+        }
+        children[idx] = insert(children[idx], node.level + 1, number, conditions);
+        if (glob) {
+            node.globValues = values;
+            node.globChildren = children;
+        } else {
+            node.exactValues = values;
+            node.exactChildren = children;
+        }
+    }
+
+    private void insertPartial(Node node, boolean suffix, String value, int number, int[] conditions) {
+        PrefixTrie trie = suffix ? node.suffixes : node.prefixes;
+        Node[] children = suffix ? node.suffixChildren : node.prefixChildren;
+        int[] found = trie != null ? trie.find(value) : NO_RULES;
+        int idx;
+        if (found.length > 0) {
+            idx = found[0];
+            children = children.clone();
+        } else {
+            idx = children != null ? children.length : 0;
+            children = children != null ? Arrays.copyOf(children, idx + 1) : new Node[1];
+            if (trie != null) {
+                trie = trie.with(value, idx);
+            } else {
+                PrefixTrie.Builder builder = new PrefixTrie.Builder(suffix);
+                builder.add(value, idx);
+                trie = builder.build();
+            }
+        }
+        children[idx] = insert(children[idx], node.level + 1, number, conditions);
+        if (suffix) {
+            node.suffixes = trie;
+            node.suffixChildren = children;
+        } else {
+            node.prefixes = trie;
+            node.prefixChildren = children;
+        }
+    }
+
+    private void insertRange(Node node, int valueId, int number, int[] conditions) {
+        int idx = node.rangeValues.length - 1;
+        while (idx >= 0 && node.rangeValues[idx] != valueId) {
+            idx--;
+        }
+        if (idx >= 0) {
+            node.rangeChildren = node.rangeChildren.clone();
+        } else {
+            idx = node.rangeValues.length;
+            NumericRange range = encodedRules.getRange(levelAttributes[node.level], valueId);
+            node.rangeValues = Arrays.copyOf(node.rangeValues, idx + 1);
+            node.rangeValues[idx] = valueId;
+            node.rangeChildren = node.rangeChildren != null ? Arrays.copyOf(node.rangeChildren, idx + 1) : new Node[1];
+            RangeIndex.Builder builder = new RangeIndex.Builder();
+            builder.add(range, idx);
+            node.ranges = node.ranges != null ? node.ranges.with(builder) : builder.build();
+        }
+        node.rangeChildren[idx] = insert(node.rangeChildren[idx], node.level + 1, number, conditions);
+    }
+
+    private void buildValues(int level, Map<Integer, RuleIndex.IntList> values, int[] valueIds, Node[] children,
+                             IntFunction<int[]> conditions) {
+        int i = 0;
+        for (Map.Entry<Integer, RuleIndex.IntList> entry : values.entrySet()) {
+            valueIds[i] = entry.getKey();
+            children[i] = build(level + 1, entry.getValue().toArray(), conditions);
+            i++;
+        }
+    }
+
+    private Node[] buildPartial(int level, Map<Integer, RuleIndex.IntList> values, PrefixTrie.Builder trie,
+                                IntFunction<int[]> conditions) {
+        int attributeId = levelAttributes[level];
+        Node[] children = new Node[values.size()];
+        int i = 0;
+        for (Map.Entry<Integer, RuleIndex.IntList> entry : values.entrySet()) {
+            trie.add(encodedRules.getValue(attributeId, entry.getKey()), i);
+            children[i] = build(level + 1, entry.getValue().toArray(), conditions);
+            i++;
+        }
+        return children;
+    }
+
+    private static class Node {
+        private static final int[] NO_VALUES = new int[0];
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        private final int level;
+        private final int[] rules;
+        // number of the heaviest rule under the node, rules positions follow descending weight order
+        private int bestRule;
+        // sorted value ids of exact conditions
+        private int[] exactValues = NO_VALUES;
+        private Node[] exactChildren = NO_CHILDREN;
+        // sorted value ids of glob conditions
+        private int[] globValues = NO_VALUES;
+        private Node[] globChildren = NO_CHILDREN;
+        private PrefixTrie prefixes;
+        private Node[] prefixChildren;
+        private PrefixTrie suffixes;
+        private Node[] suffixChildren;
+        private RangeIndex ranges;
+        private Node[] rangeChildren;
+        // range value id of every range child
+        private int[] rangeValues = NO_VALUES;
+        private Node any;
+        private Node none;
+
+        Node(int level, int[] rules) {
+            this.level = level;
+            this.rules = rules;
+            this.bestRule = rules.length > 0 ? rules[0] : Integer.MAX_VALUE;
+        }
+
+        Node copy() {
+            Node copy = new Node(level, rules);
+            copy.bestRule = bestRule;
+            copy.exactValues = exactValues;
+            copy.exactChildren = exactChildren;
+            copy.globValues = globValues;
+            copy.globChildren = globChildren;
+            copy.prefixes = prefixes;
+            copy.prefixChildren = prefixChildren;
+            copy.suffixes = suffixes;
+            copy.suffixChildren = suffixChildren;
+            copy.ranges = ranges;
+            copy.rangeChildren = rangeChildren;
+            copy.rangeValues = rangeValues;
+            copy.any = any;
+            copy.none = none;
+            return copy;
+        }
+    }
+}
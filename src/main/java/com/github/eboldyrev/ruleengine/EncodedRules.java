@@ -0,0 +1,631 @@
+package com.github.eboldyrev.ruleengine;
+
+import com.github.eboldyrev.ruleengine.attributes.AnyRuleAttribute;
+import com.github.eboldyrev.ruleengine.attributes.EndsWithRuleAttribute;
+import com.github.eboldyrev.ruleengine.attributes.ExactMatchAttribute;
+import com.github.eboldyrev.ruleengine.attributes.GlobRuleAttribute;
+import com.github.eboldyrev.ruleengine.attributes.NumericRange;
+import com.github.eboldyrev.ruleengine.attributes.RangeRuleAttribute;
+import com.github.eboldyrev.ruleengine.attributes.RuleAttribute;
+import com.github.eboldyrev.ruleengine.attributes.SetRuleAttribute;
+import com.github.eboldyrev.ruleengine.attributes.StartsWithRuleAttribute;
+import com.github.eboldyrev.ruleengine.exception.RuleEngineException;
+
+import java.util.*;
+
+/**
+ * Rules conditions encoded into primitive arrays. Attribute names used by rules are interned to ids in name order
+ * and condition values to ids of a per attribute dictionary. Conditions of rule {@code r} are stored at
+ * {@code [conditionStarts[r], conditionStarts[r + 1])} ordered by attribute id, and attributes of every rule are kept
+ * as a bitmask, so matching a rule compares ints instead of strings.
+ */
+class EncodedRules {
+    static final byte EXACT = 0;
+    static final byte PREFIX = 1;
+    static final byte SUFFIX = 2;
+    static final byte ANY = 3;
+    static final byte RANGE = 4;
+    static final byte GLOB = 5;
+    static final byte SET = 6;
+
+    static final int UNKNOWN_VALUE = -1;
+
+    private final String[] attributeNames;
+    private final Map<String, Integer> attributeIds;
+    private final List<Map<String, Integer>> valueIds;
+    // values added by updates since the dictionary was copied last time, looked up after valueIds
+    private final List<Map<String, Integer>> addedValueIds;
+    private final String[][] values;
+    private final boolean[] partialAttributes;
+    // ranges by attribute id and value id, null for attributes without range conditions
+    private final NumericRange[][] ranges;
+    // glob patterns of an attribute compiled into one automaton, pattern ids are value ids, null for attributes
+    // without glob conditions
+    private final GlobAutomaton[] globs;
+    // offsets of attribute patterns in QueryScratch glob states
+    private final int[] globOffsets;
+    private final int globStatesCount;
+    // sorted value ids of set members by attribute id and value id of the set, null for attributes without
+    // set conditions
+    private final int[][][] setMembers;
+
+    private final int rulesCount;
+    private final long[] weights;
+    private final int[] conditionStarts;
+    private final int[] conditionAttributes;
+    private final byte[] conditionTypes;
+    private final int[] conditionValues;
+    private final int maskWords;
+    private final long[] masks;
+
+    EncodedRules(List<Rule> rules) {
+        Set<String> names = new TreeSet<>();
+        int conditionsCount = 0;
+        for (Rule rule : rules) {
+            for (RuleAttribute attribute : rule.getAttributes()) {
+                names.add(attribute.getName());
+                conditionsCount++;
+            }
+        }
+
+        this.attributeNames = names.toArray(new String[0]);
+        this.attributeIds = new HashMap<>((int) (attributeNames.length / 0.75) + 1);
+        this.valueIds = new ArrayList<>(attributeNames.length);
+        this.addedValueIds = new ArrayList<>(attributeNames.length);
+        List<List<String>> dictionaries = new ArrayList<>(attributeNames.length);
+        for (int i = 0; i < attributeNames.length; i++) {
+            attributeIds.put(attributeNames[i], i);
+            valueIds.add(new HashMap<>());
+            addedValueIds.add(Collections.emptyMap());
+            dictionaries.add(new ArrayList<>());
+        }
+
+        this.rulesCount = rules.size();
+        this.weights = new long[rulesCount];
+        this.conditionStarts = new int[rulesCount + 1];
+        this.conditionAttributes = new int[conditionsCount];
+        this.conditionTypes = new byte[conditionsCount];
+        this.conditionValues = new int[conditionsCount];
+        this.partialAttributes = new boolean[attributeNames.length];
+        this.maskWords = (attributeNames.length + 63) / 64;
+        this.masks = new long[rulesCount * maskWords];
+
+        int condition = 0;
+        for (int r = 0; r < rulesCount; r++) {
+            condition = encodeRule(rules.get(r), r, condition, null, valueIds, dictionaries);
+        }
+        conditionStarts[rulesCount] = condition;
+
+        this.values = new String[attributeNames.length][];
+        for (int i = 0; i < attributeNames.length; i++) {
+            values[i] = dictionaries.get(i).toArray(new String[0]);
+        }
+        this.ranges = parseRanges(null, null);
+        this.globs = compileGlobs(null, null);
+        this.globOffsets = new int[attributeNames.length];
+        this.globStatesCount = globOffsets(globs, globOffsets);
+        this.setMembers = parseSets(null, null);
+    }
+
+    /**
+     * Applies the changes to the previous encoded rules, attributes of added rules should be known to them, see
+     * {@link #hasAttributes}. Conditions of kept rules are copied, values of added rules are appended to the
+     * dictionaries of the previous rules and values of removed rules stay there.
+     */
+    EncodedRules(EncodedRules previous, RuleChanges changes) {
+        List<Rule> addedRules = changes.getAddedRules();
+        int[] addedPositions = changes.getAddedPositions();
+        int conditionsCount = previous.conditionTypes.length;
+        for (int position = 0; position < previous.rulesCount && changes.getRemovedCount() > 0; position++) {
+            if (changes.newPosition(position) == RuleChanges.REMOVED) {
+                conditionsCount -= previous.conditionStarts[position + 1] - previous.conditionStarts[position];
+            }
+        }
+        for (Rule rule : addedRules) {
+            conditionsCount += rule.getAttributes().size();
+        }
+
+        this.attributeNames = previous.attributeNames;
+        this.attributeIds = previous.attributeIds;
+        // ids of new values continue ids of the previous dictionaries
+        List<Map<String, Integer>> newValueIds = new ArrayList<>(attributeNames.length);
+        List<List<String>> dictionaries = new ArrayList<>(attributeNames.length);
+        for (int i = 0; i < attributeNames.length; i++) {
+            newValueIds.add(new HashMap<>());
+            dictionaries.add(new ArrayList<>());
+        }
+
+        this.rulesCount = changes.getRulesCount();
+        this.weights = new long[rulesCount];
+        this.conditionStarts = new int[rulesCount + 1];
+        this.conditionAttributes = new int[conditionsCount];
+        this.conditionTypes = new byte[conditionsCount];
+        this.conditionValues = new int[conditionsCount];
+        this.partialAttributes = previous.partialAttributes.clone();
+        this.maskWords = previous.maskWords;
+        this.masks = new long[rulesCount * maskWords];
+
+        int condition = 0;
+        int added = 0;
+        int previousPosition = 0;
+        int r = 0;
+        while (r < rulesCount) {
+            if (added < addedPositions.length && addedPositions[added] == r) {
+                condition = encodeRule(addedRules.get(added++), r++, condition, previous, newValueIds, dictionaries);
+                continue;
+            }
+            while (changes.newPosition(previousPosition) == RuleChanges.REMOVED) {
+                previousPosition++;
+            }
+            // kept rules up to the next added or removed one are copied at once
+            int count = 1;
+            while (previousPosition + count < previous.rulesCount
+                    && changes.newPosition(previousPosition + count) == r + count) {
+                count++;
+            }
+            int from = previous.conditionStarts[previousPosition];
+            int length = previous.conditionStarts[previousPosition + count] - from;
+            for (int i = 0; i < count; i++) {
+                conditionStarts[r + i] = previous.conditionStarts[previousPosition + i] - from + condition;
+            }
+            System.arraycopy(previous.weights, previousPosition, weights, r, count);
+            System.arraycopy(previous.conditionAttributes, from, conditionAttributes, condition, length);
+            System.arraycopy(previous.conditionTypes, from, conditionTypes, condition, length);
+            System.arraycopy(previous.conditionValues, from, conditionValues, condition, length);
+            System.arraycopy(previous.masks, previousPosition * maskWords, masks, r * maskWords, count * maskWords);
+            condition += length;
+            previousPosition += count;
+            r += count;
+        }
+        conditionStarts[rulesCount] = condition;
+
+        this.values = new String[attributeNames.length][];
+        this.valueIds = new ArrayList<>(attributeNames.length);
+        this.addedValueIds = new ArrayList<>(attributeNames.length);
+        for (int i = 0; i < attributeNames.length; i++) {
+            List<String> dictionary = dictionaries.get(i);
+            Map<String, Integer> ids = previous.valueIds.get(i);
+            Map<String, Integer> addedIds = previous.addedValueIds.get(i);
+            if (dictionary.isEmpty()) {
+                values[i] = previous.values[i];
+            } else {
+                int previousLength = previous.values[i].length;
+                values[i] = Arrays.copyOf(previous.values[i], previousLength + dictionary.size());
+                for (int valueId = 0; valueId < dictionary.size(); valueId++) {
+                    values[i][previousLength + valueId] = dictionary.get(valueId);
+                }
+                // new values are copied with the values added since the last merge, so an update copies
+                // the whole dictionary only when added values make a noticeable part of it
+                addedIds = new HashMap<>(addedIds);
+                addedIds.putAll(newValueIds.get(i));
+                if (addedIds.size() > ids.size() / 4) {
+                    ids = new HashMap<>(ids);
+                    ids.putAll(addedIds);
+                    addedIds = Collections.emptyMap();
+                }
+            }
+            valueIds.add(ids);
+            addedValueIds.add(addedIds);
+        }
+        this.ranges = parseRanges(previous, addedPositions);
+        this.globs = compileGlobs(previous, addedPositions);
+        this.globOffsets = new int[attributeNames.length];
+        this.globStatesCount = globOffsets(globs, globOffsets);
+        this.setMembers = parseSets(previous, addedPositions);
+    }
+
+    // encodes conditions of the rule from the given condition on, returns the condition after the last one
+    private int encodeRule(Rule rule, int r, int condition, EncodedRules previous,
+                           List<Map<String, Integer>> newValueIds, List<List<String>> dictionaries) {
+        weights[r] = rule.getWeight();
+        conditionStarts[r] = condition;
+        // rule attributes are sorted by name, so conditions are sorted by attribute id
+        for (RuleAttribute attribute : rule.getAttributes()) {
+            int attributeId = attributeIds.get(attribute.getName());
+            conditionAttributes[condition] = attributeId;
+            conditionTypes[condition] = typeOf(attribute);
+            if (isPartial(conditionTypes[condition])) {
+                partialAttributes[attributeId] = true;
+            }
+            if (conditionTypes[condition] == ANY) {
+                conditionValues[condition] = UNKNOWN_VALUE;
+            } else {
+                conditionValues[condition] = valueId(attributeId, attribute.getValue(), previous, newValueIds,
+                        dictionaries);
+            }
+            // members get value ids, so a query value is found in sets by its id
+            if (conditionTypes[condition] == SET) {
+                for (String member : ((SetRuleAttribute) attribute).getMembers()) {
+                    valueId(attributeId, member, previous, newValueIds, dictionaries);
+                }
+            }
+            masks[r * maskWords + (attributeId >>> 6)] |= 1L << attributeId;
+            condition++;
+        }
+        return condition;
+    }
+
+    private static int valueId(int attributeId, String value, EncodedRules previous,
+                               List<Map<String, Integer>> newValueIds, List<List<String>> dictionaries) {
+        if (previous != null) {
+            Integer valueId = previous.findValueId(attributeId, value);
+            if (valueId != null) {
+                return valueId;
+            }
+        }
+        int firstId = previous != null ? previous.values[attributeId].length : 0;
+        List<String> dictionary = dictionaries.get(attributeId);
+        return newValueIds.get(attributeId).computeIfAbsent(value, v -> {
+            dictionary.add(v);
+            return firstId + dictionary.size() - 1;
+        });
+    }
+
+    private Integer findValueId(int attributeId, String value) {
+        Integer valueId = valueIds.get(attributeId).get(value);
+        if (valueId == null && !addedValueIds.get(attributeId).isEmpty()) {
+            valueId = addedValueIds.get(attributeId).get(value);
+        }
+        return valueId;
+    }
+
+    // true when every attribute of the rules is an attribute of these encoded rules
+    boolean hasAttributes(List<Rule> rules) {
+        for (Rule rule : rules) {
+            for (RuleAttribute attribute : rule.getAttributes()) {
+                if (!attributeIds.containsKey(attribute.getName())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Restores encoded rules from arrays of a snapshot, rule {@code r} of the arrays is the rule at position {@code r}.
+     */
+    EncodedRules(String[] attributeNames, String[][] values, long[] weights, int[] conditionStarts,
+                 int[] conditionAttributes, byte[] conditionTypes, int[] conditionValues) {
+        this.attributeNames = attributeNames;
+        this.values = values;
+        this.attributeIds = new HashMap<>((int) (attributeNames.length / 0.75) + 1);
+        this.valueIds = new ArrayList<>(attributeNames.length);
+        this.addedValueIds = new ArrayList<>(attributeNames.length);
+        for (int i = 0; i < attributeNames.length; i++) {
+            attributeIds.put(attributeNames[i], i);
+            addedValueIds.add(Collections.emptyMap());
+            Map<String, Integer> ids = new HashMap<>((int) (values[i].length / 0.75) + 1);
+            for (int valueId = 0; valueId < values[i].length; valueId++) {
+                ids.put(values[i][valueId], valueId);
+            }
+            valueIds.add(ids);
+        }
+
+        this.rulesCount = weights.length;
+        this.weights = weights;
+        this.conditionStarts = conditionStarts;
+        this.conditionAttributes = conditionAttributes;
+        this.conditionTypes = conditionTypes;
+        this.conditionValues = conditionValues;
+        this.partialAttributes = new boolean[attributeNames.length];
+        this.maskWords = (attributeNames.length + 63) / 64;
+        this.masks = new long[rulesCount * maskWords];
+        for (int r = 0; r < rulesCount; r++) {
+            for (int c = conditionStarts[r]; c < conditionStarts[r + 1]; c++) {
+                int attributeId = conditionAttributes[c];
+                if (isPartial(conditionTypes[c])) {
+                    partialAttributes[attributeId] = true;
+                }
+                masks[r * maskWords + (attributeId >>> 6)] |= 1L << attributeId;
+            }
+        }
+        this.ranges = parseRanges(null, null);
+        this.globs = compileGlobs(null, null);
+        this.globOffsets = new int[attributeNames.length];
+        this.globStatesCount = globOffsets(globs, globOffsets);
+        this.setMembers = parseSets(null, null);
+    }
+
+    // conditions which match values other than their own, sets match only values which have their own ids
+    private static boolean isPartial(byte type) {
+        return type == PREFIX || type == SUFFIX || type == RANGE || type == GLOB;
+    }
+
+    // range values are kept as written in rules, bounds are parsed once for all conditions with the same value,
+    // ranges of the previous encoded rules are reused and only conditions of the added rules are parsed
+    private NumericRange[][] parseRanges(EncodedRules previous, int[] addedPositions) {
+        NumericRange[][] ranges = previous != null ? previous.ranges.clone() : new NumericRange[attributeNames.length][];
+        int count = addedPositions != null ? addedPositions.length : rulesCount;
+        for (int i = 0; i < count; i++) {
+            int r = addedPositions != null ? addedPositions[i] : i;
+            for (int c = conditionStarts[r]; c < conditionStarts[r + 1]; c++) {
+                int attributeId = conditionAttributes[c];
+                if (conditionTypes[c] != RANGE
+                        || (ranges[attributeId] != null && conditionValues[c] < ranges[attributeId].length
+                        && ranges[attributeId][conditionValues[c]] != null)) {
+                    continue;
+                }
+                if (ranges[attributeId] == null) {
+                    ranges[attributeId] = new NumericRange[values[attributeId].length];
+                } else if (previous != null && ranges[attributeId] == previous.ranges[attributeId]) {
+                    ranges[attributeId] = Arrays.copyOf(ranges[attributeId], values[attributeId].length);
+                }
+                ranges[attributeId][conditionValues[c]] = NumericRange.parse(values[attributeId][conditionValues[c]]);
+            }
+        }
+        return ranges;
+    }
+
+    // automatons of attributes without new patterns are reused, other ones are compiled again with all patterns
+    private GlobAutomaton[] compileGlobs(EncodedRules previous, int[] addedPositions) {
+        String[][] patterns = new String[attributeNames.length][];
+        int count = addedPositions != null ? addedPositions.length : rulesCount;
+        for (int i = 0; i < count; i++) {
+            int r = addedPositions != null ? addedPositions[i] : i;
+            for (int c = conditionStarts[r]; c < conditionStarts[r + 1]; c++) {
+                int attributeId = conditionAttributes[c];
+                if (conditionTypes[c] != GLOB || (previous != null && previous.globs[attributeId] != null
+                        && previous.globs[attributeId].isPattern(conditionValues[c]))) {
+                    continue;
+                }
+                if (patterns[attributeId] == null) {
+                    patterns[attributeId] = new String[values[attributeId].length];
+                    GlobAutomaton previousGlobs = previous != null ? previous.globs[attributeId] : null;
+                    for (int valueId = 0; previousGlobs != null && valueId < previousGlobs.getPatternsCount(); valueId++) {
+                        if (previousGlobs.isPattern(valueId)) {
+                            patterns[attributeId][valueId] = values[attributeId][valueId];
+                        }
+                    }
+                }
+                patterns[attributeId][conditionValues[c]] = values[attributeId][conditionValues[c]];
+            }
+        }
+        GlobAutomaton[] globs = previous != null ? previous.globs.clone() : new GlobAutomaton[attributeNames.length];
+        for (int attributeId = 0; attributeId < attributeNames.length; attributeId++) {
+            if (patterns[attributeId] != null) {
+                globs[attributeId] = new GlobAutomaton(patterns[attributeId]);
+            }
+        }
+        return globs;
+    }
+
+    // members of sets of the previous encoded rules are reused and only sets of the added rules are parsed
+    private int[][][] parseSets(EncodedRules previous, int[] addedPositions) {
+        int[][][] members = previous != null ? previous.setMembers.clone() : new int[attributeNames.length][][];
+        int count = addedPositions != null ? addedPositions.length : rulesCount;
+        for (int i = 0; i < count; i++) {
+            int r = addedPositions != null ? addedPositions[i] : i;
+            for (int c = conditionStarts[r]; c < conditionStarts[r + 1]; c++) {
+                int attributeId = conditionAttributes[c];
+                if (conditionTypes[c] != SET
+                        || (members[attributeId] != null && conditionValues[c] < members[attributeId].length
+                        && members[attributeId][conditionValues[c]] != null)) {
+                    continue;
+                }
+                if (members[attributeId] == null) {
+                    members[attributeId] = new int[values[attributeId].length][];
+                } else if (previous != null && members[attributeId] == previous.setMembers[attributeId]) {
+                    members[attributeId] = Arrays.copyOf(members[attributeId], values[attributeId].length);
+                }
+                Set<String> setValues = SetRuleAttribute.parseMembers(values[attributeId][conditionValues[c]]);
+                int[] ids = new int[setValues.size()];
+                int j = 0;
+                for (String member : setValues) {
+                    ids[j++] = findValueId(attributeId, member);
+                }
+                Arrays.sort(ids);
+                members[attributeId][conditionValues[c]] = ids;
+            }
+        }
+        return members;
+    }
+
+    private static int globOffsets(GlobAutomaton[] globs, int[] offsets) {
+        int count = 0;
+        for (int attributeId = 0; attributeId < globs.length; attributeId++) {
+            offsets[attributeId] = count;
+            if (globs[attributeId] != null) {
+                count += globs[attributeId].getPatternsCount();
+            }
+        }
+        return count;
+    }
+
+    private static byte typeOf(RuleAttribute attribute) {
+        if (attribute instanceof ExactMatchAttribute) {
+            return EXACT;
+        } else if (attribute instanceof StartsWithRuleAttribute) {
+            return PREFIX;
+        } else if (attribute instanceof EndsWithRuleAttribute) {
+            return SUFFIX;
+        } else if (attribute instanceof AnyRuleAttribute) {
+            return ANY;
+        } else if (attribute instanceof RangeRuleAttribute) {
+            return RANGE;
+        } else if (attribute instanceof GlobRuleAttribute) {
+            return GLOB;
+        } else if (attribute instanceof SetRuleAttribute) {
+            return SET;
+        }
+        throw new RuleEngineException("Unsupported rule attribute: " + attribute);
+    }
+
+    /**
+     * Encodes query attributes into the scratch: attribute bitmask, value ids and values by attribute id,
+     * numbers for attributes with range conditions and glob patterns matched by values of attributes with glob
+     * conditions. Attributes which are not used by any rule are skipped.
+     */
+    void encodeQuery(List<RuleAttribute> queryAttributes, QueryScratch scratch) {
+        long[] queryMask = scratch.queryMask(maskWords);
+        int[] queryValueIds = scratch.queryValueIds(attributeNames.length);
+        String[] queryValues = scratch.queryValues(attributeNames.length);
+        double[] queryNumbers = scratch.queryNumbers(attributeNames.length);
+        if (globStatesCount > 0) {
+            scratch.resetGlobs(attributeNames.length, globStatesCount);
+        }
+        for (int i = 0; i < queryAttributes.size(); i++) {
+            RuleAttribute queryAttribute = queryAttributes.get(i);
+            Integer attributeId = attributeIds.get(queryAttribute.getName());
+            if (attributeId == null) {
+                continue;
+            }
+            queryMask[attributeId >>> 6] |= 1L << attributeId;
+            queryValues[attributeId] = queryAttribute.getValue();
+            Integer valueId = findValueId(attributeId, queryAttribute.getValue());
+            queryValueIds[attributeId] = valueId != null ? valueId : UNKNOWN_VALUE;
+            if (ranges[attributeId] != null) {
+                queryNumbers[attributeId] = NumericRange.parseNumber(queryAttribute.getValue());
+            }
+            if (globs[attributeId] != null) {
+                scratch.globMatchStarts[attributeId] = scratch.globMatchesCount;
+                globs[attributeId].scan(queryAttribute.getValue(), globOffsets[attributeId], scratch);
+                scratch.globMatchEnds[attributeId] = scratch.globMatchesCount;
+            }
+        }
+    }
+
+    /**
+     * Checks the rule against the query encoded by {@link #encodeQuery}.
+     */
+    boolean matches(int rule, QueryScratch scratch) {
+        long[] queryMask = scratch.queryMask;
+        int maskOffset = rule * maskWords;
+        for (int w = 0; w < maskWords; w++) {
+            if ((masks[maskOffset + w] & ~queryMask[w]) != 0) {
+                return false;
+            }
+        }
+
+        int[] queryValueIds = scratch.queryValueIds;
+        String[] queryValues = scratch.queryValues;
+        for (int c = conditionStarts[rule]; c < conditionStarts[rule + 1]; c++) {
+            int attributeId = conditionAttributes[c];
+            switch (conditionTypes[c]) {
+                case EXACT:
+                    if (queryValueIds[attributeId] != conditionValues[c]) {
+                        return false;
+                    }
+                    break;
+                case PREFIX:
+                    if (!queryValues[attributeId].startsWith(values[attributeId][conditionValues[c]])) {
+                        return false;
+                    }
+                    break;
+                case SUFFIX:
+                    if (!queryValues[attributeId].endsWith(values[attributeId][conditionValues[c]])) {
+                        return false;
+                    }
+                    break;
+                case RANGE:
+                    if (!ranges[attributeId][conditionValues[c]].contains(scratch.queryNumbers[attributeId])) {
+                        return false;
+                    }
+                    break;
+                case GLOB:
+                    if (!globs[attributeId].isMatched(conditionValues[c], globOffsets[attributeId], scratch)) {
+                        return false;
+                    }
+                    break;
+                case SET:
+                    if (Arrays.binarySearch(setMembers[attributeId][conditionValues[c]], queryValueIds[attributeId]) < 0) {
+                        return false;
+                    }
+                    break;
+                default:
+                    // any value, presence is checked by the mask
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Restores attributes of the rule in name order, definitions are taken by attribute id.
+     */
+    List<RuleAttribute> decodeAttributes(int rule, AttributeDefinition[] attributeDefinitions) {
+        List<RuleAttribute> attributes = new ArrayList<>(conditionStarts[rule + 1] - conditionStarts[rule]);
+        for (int c = conditionStarts[rule]; c < conditionStarts[rule + 1]; c++) {
+            int attributeId = conditionAttributes[c];
+            attributes.add(RuleAttribute.of(attributeDefinitions[attributeId], conditionValue(c)));
+        }
+        return attributes;
+    }
+
+    // value as it is written in a rule, so the same attribute is created from it
+    private String conditionValue(int condition) {
+        int attributeId = conditionAttributes[condition];
+        switch (conditionTypes[condition]) {
+            case EXACT:
+            case RANGE:
+            case GLOB:
+            case SET:
+                return values[attributeId][conditionValues[condition]];
+            case PREFIX:
+                return values[attributeId][conditionValues[condition]] + RuleAttribute.anyCharsValue;
+            case SUFFIX:
+                return RuleAttribute.anyCharsValue + values[attributeId][conditionValues[condition]];
+            case ANY:
+                return RuleAttribute.anyCharsValue;
+            default:
+                throw new RuleEngineException("Unknown condition type: " + conditionTypes[condition]);
+        }
+    }
+
+    int getRulesCount() {
+        return rulesCount;
+    }
+
+    int getAttributesCount() {
+        return attributeNames.length;
+    }
+
+    String getAttributeName(int attributeId) {
+        return attributeNames[attributeId];
+    }
+
+    String getValue(int attributeId, int valueId) {
+        return values[attributeId][valueId];
+    }
+
+    // parsed range of a range condition value
+    NumericRange getRange(int attributeId, int valueId) {
+        return ranges[attributeId][valueId];
+    }
+
+    // sorted value ids of members of a set condition value
+    int[] getSetMembers(int attributeId, int valueId) {
+        return setMembers[attributeId][valueId];
+    }
+
+    int getValuesCount(int attributeId) {
+        return values[attributeId].length;
+    }
+
+    // true when the attribute has conditions which match values other than their own
+    boolean hasPartialConditions(int attributeId) {
+        return partialAttributes[attributeId];
+    }
+
+    long getWeight(int rule) {
+        return weights[rule];
+    }
+
+    int getConditionStart(int rule) {
+        return conditionStarts[rule];
+    }
+
+    int getConditionEnd(int rule) {
+        return conditionStarts[rule + 1];
+    }
+
+    int getConditionAttribute(int condition) {
+        return conditionAttributes[condition];
+    }
+
+    byte getConditionType(int condition) {
+        return conditionTypes[condition];
+    }
+
+    int getConditionValue(int condition) {
+        return conditionValues[condition];
+    }
+}
@@ -0,0 +1,216 @@
+package com.github.eboldyrev.ruleengine;
+
+import java.util.*;
+
+/**
+ * Aho-Corasick automaton over glob patterns of one attribute. Pattern {@code ab*cd*ef} is split into literal parts
+ * which have to be found in the value in order without overlapping, the first part at the start and the last part
+ * at the end of the value unless the pattern starts or ends with '*'.
+ * One scan over the value reports occurrences of all parts of all patterns ordered by their end, and every pattern
+ * takes the first occurrence of its next part which starts after its previous part, the earliest end leaves the most
+ * room for the following parts. Nothing is allocated by a scan.
+ */
+class GlobAutomaton {
+    private static final int ROOT = 0;
+    private static final int NO_NODE = -1;
+    private static final int NOT_PATTERN = -1;
+    private static final char WILDCARD = '*';
+
+    // children of node n are at [childStarts[n], childStarts[n + 1]) of labels and targets, sorted by label
+    private final int[] childStarts;
+    private final char[] labels;
+    private final int[] targets;
+    private final int[] failures;
+    // nearest node on the failure chain which ends some parts
+    private final int[] outputLinks;
+    private final int[] depths;
+    // parts ending at node n are at [outputStarts[n], outputStarts[n + 1]) of outputPatterns and outputParts
+    private final int[] outputStarts;
+    private final int[] outputPatterns;
+    private final int[] outputParts;
+
+    // by pattern id, NOT_PATTERN for ids without a pattern
+    private final int[] partsCounts;
+    private final boolean[] anchoredStarts;
+    private final boolean[] anchoredEnds;
+    // patterns without literal parts, like '**', match any value
+    private final int[] partlessPatterns;
+
+    /**
+     * Compiles patterns, pattern id is the index in the array, null elements are skipped.
+     */
+    GlobAutomaton(String[] patterns) {
+        this.partsCounts = new int[patterns.length];
+        this.anchoredStarts = new boolean[patterns.length];
+        this.anchoredEnds = new boolean[patterns.length];
+        RuleIndex.IntList partless = new RuleIndex.IntList();
+
+        List<TreeMap<Character, Integer>> children = new ArrayList<>();
+        // pattern and part of every part ending at the node
+        List<List<int[]>> outputs = new ArrayList<>();
+        List<Integer> nodeDepths = new ArrayList<>();
+        children.add(new TreeMap<>());
+        outputs.add(null);
+        nodeDepths.add(0);
+        int outputsCount = 0;
+        for (int pattern = 0; pattern < patterns.length; pattern++) {
+            String value = patterns[pattern];
+            if (value == null) {
+                partsCounts[pattern] = NOT_PATTERN;
+                continue;
+            }
+            anchoredStarts[pattern] = value.isEmpty() || value.charAt(0) != WILDCARD;
+            anchoredEnds[pattern] = value.isEmpty() || value.charAt(value.length() - 1) != WILDCARD;
+            int part = 0;
+            for (int from = 0; from <= value.length(); ) {
+                int to = value.indexOf(WILDCARD, from);
+                if (to < 0) {
+                    to = value.length();
+                }
+                if (to > from) {
+                    int node = ROOT;
+                    for (int i = from; i < to; i++) {
+                        Integer child = children.get(node).get(value.charAt(i));
+                        if (child == null) {
+                            child = children.size();
+                            children.get(node).put(value.charAt(i), child);
+                            children.add(new TreeMap<>());
+                            outputs.add(null);
+                            nodeDepths.add(i - from + 1);
+                        }
+                        node = child;
+                    }
+                    if (outputs.get(node) == null) {
+                        outputs.set(node, new ArrayList<>());
+                    }
+                    outputs.get(node).add(new int[]{pattern, part});
+                    outputsCount++;
+                    part++;
+                }
+                from = to + 1;
+            }
+            partsCounts[pattern] = part;
+            if (part == 0) {
+                partless.add(pattern);
+            }
+        }
+        this.partlessPatterns = partless.toArray();
+
+        int nodesCount = children.size();
+        this.childStarts = new int[nodesCount + 1];
+        int edgesCount = nodesCount - 1;
+        this.labels = new char[edgesCount];
+        this.targets = new int[edgesCount];
+        this.depths = new int[nodesCount];
+        this.outputStarts = new int[nodesCount + 1];
+        this.outputPatterns = new int[outputsCount];
+        this.outputParts = new int[outputsCount];
+        for (int node = 0, edge = 0, output = 0; node < nodesCount; node++) {
+            childStarts[node] = edge;
+            for (Map.Entry<Character, Integer> entry : children.get(node).entrySet()) {
+                labels[edge] = entry.getKey();
+                targets[edge] = entry.getValue();
+                edge++;
+            }
+            depths[node] = nodeDepths.get(node);
+            outputStarts[node] = output;
+            if (outputs.get(node) != null) {
+                for (int[] patternPart : outputs.get(node)) {
+                    outputPatterns[output] = patternPart[0];
+                    outputParts[output] = patternPart[1];
+                    output++;
+                }
+            }
+        }
+        childStarts[nodesCount] = edgesCount;
+        outputStarts[nodesCount] = outputsCount;
+
+        this.failures = new int[nodesCount];
+        this.outputLinks = new int[nodesCount];
+        outputLinks[ROOT] = NO_NODE;
+        // breadth first, so failures of shallower nodes are known
+        int[] queue = new int[nodesCount];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = ROOT;
+        while (head < tail) {
+            int node = queue[head++];
+            for (int edge = childStarts[node]; edge < childStarts[node + 1]; edge++) {
+                int child = targets[edge];
+                failures[child] = node == ROOT ? ROOT : next(failures[node], labels[edge]);
+                int failure = failures[child];
+                outputLinks[child] = hasOutputs(failure) ? failure : outputLinks[failure];
+                queue[tail++] = child;
+            }
+        }
+    }
+
+    int getPatternsCount() {
+        return partsCounts.length;
+    }
+
+    boolean isPattern(int id) {
+        return id < partsCounts.length && partsCounts[id] != NOT_PATTERN;
+    }
+
+    /**
+     * Scans the value and appends ids of matched patterns to {@link QueryScratch#globMatches}. States of patterns
+     * are kept in {@code [offset, offset + getPatternsCount())} of the scratch glob states, they are reset by the scan.
+     */
+    void scan(String value, int offset, QueryScratch scratch) {
+        int[] states = scratch.globStates;
+        int[] ends = scratch.globEnds;
+        Arrays.fill(states, offset, offset + partsCounts.length, 0);
+        for (int pattern : partlessPatterns) {
+            scratch.addGlobMatch(pattern);
+        }
+        int length = value.length();
+        int node = ROOT;
+        for (int i = 0; i < length; i++) {
+            node = next(node, value.charAt(i));
+            for (int o = hasOutputs(node) ? node : outputLinks[node]; o != NO_NODE; o = outputLinks[o]) {
+                int end = i + 1;
+                int start = end - depths[o];
+                for (int k = outputStarts[o]; k < outputStarts[o + 1]; k++) {
+                    int pattern = outputPatterns[k];
+                    int part = outputParts[k];
+                    int state = offset + pattern;
+                    if (states[state] != part || (part > 0 && start < ends[state])
+                            || (part == 0 && anchoredStarts[pattern] && start != 0)
+                            || (part == partsCounts[pattern] - 1 && anchoredEnds[pattern] && end != length)) {
+                        continue;
+                    }
+                    states[state] = part + 1;
+                    ends[state] = end;
+                    if (part + 1 == partsCounts[pattern]) {
+                        scratch.addGlobMatch(pattern);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks whether the pattern matched the value of the last scan with this offset.
+     */
+    boolean isMatched(int pattern, int offset, QueryScratch scratch) {
+        return partsCounts[pattern] != NOT_PATTERN && scratch.globStates[offset + pattern] == partsCounts[pattern];
+    }
+
+    private int next(int node, char c) {
+        while (true) {
+            int edge = Arrays.binarySearch(labels, childStarts[node], childStarts[node + 1], c);
+            if (edge >= 0) {
+                return targets[edge];
+            }
+            if (node == ROOT) {
+                return ROOT;
+            }
+            node = failures[node];
+        }
+    }
+
+    private boolean hasOutputs(int node) {
+        return outputStarts[node] < outputStarts[node + 1];
+    }
+}
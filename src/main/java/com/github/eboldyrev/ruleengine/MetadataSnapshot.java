@@ -0,0 +1,260 @@
+package com.github.eboldyrev.ruleengine;
+
+import com.github.eboldyrev.ruleengine.attributes.NumericRange;
+import com.github.eboldyrev.ruleengine.attributes.SetRuleAttribute;
+import com.github.eboldyrev.ruleengine.exception.InvalidRuleStructure;
+import com.github.eboldyrev.ruleengine.exception.RuleEngineException;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Binary snapshot of {@link RuleEngine.Metadata}: attribute definitions, rules ids and results, and encoded rules
+ * in weight order, rules of the same weight ordered by id. Reading a snapshot doesn't parse rules: the file is memory
+ * mapped, arrays of encoded rules are bulk copied and rules are restored from their encoded conditions only for
+ * object storage.
+ * <pre>
+ * int magic, int version
+ * int definitionsCount, definitionsCount * (string name, int weight)
+ * int attributesCount, attributesCount * (string name, int valuesCount, valuesCount * string value)
+ * int rulesCount, rulesCount * (string id, string result), long[rulesCount] weights, int[rulesCount + 1] conditionStarts
+ * int conditionsCount, int[conditionsCount] attributes, byte[conditionsCount] types, int[conditionsCount] values
+ * </pre>
+ * Strings are stored as int length of UTF-8 bytes followed by the bytes. Counts and lengths are checked against
+ * the remaining bytes before arrays are allocated, so a corrupted snapshot is rejected instead of exhausting memory.
+ * Encoded conditions are checked before they are restored, so a corrupted snapshot doesn't fail later on queries.
+ * The snapshot is mapped as one buffer and can't be larger than 2 GB.
+ */
+class MetadataSnapshot {
+    private static final int MAGIC = 0x524C3453;
+    private static final int VERSION = 1;
+
+    private MetadataSnapshot() {
+    }
+
+    static void write(RuleEngine.Metadata metadata, Path path) throws IOException {
+        EncodedRules encodedRules = metadata.getEncodedRules();
+        int rulesCount = encodedRules.getRulesCount();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            Map<String, AttributeDefinition> definitions = metadata.getAttributeDefinitions();
+            out.writeInt(definitions.size());
+            for (AttributeDefinition definition : definitions.values()) {
+                writeString(out, definition.getName());
+                out.writeInt(definition.getWeight());
+            }
+
+            out.writeInt(encodedRules.getAttributesCount());
+            for (int attributeId = 0; attributeId < encodedRules.getAttributesCount(); attributeId++) {
+                writeString(out, encodedRules.getAttributeName(attributeId));
+                out.writeInt(encodedRules.getValuesCount(attributeId));
+                for (int valueId = 0; valueId < encodedRules.getValuesCount(attributeId); valueId++) {
+                    writeString(out, encodedRules.getValue(attributeId, valueId));
+                }
+            }
+
+            out.writeInt(rulesCount);
+            for (int r = 0; r < rulesCount; r++) {
+                writeString(out, metadata.getRuleId(r));
+                writeString(out, metadata.getResult(r));
+            }
+            for (int r = 0; r < rulesCount; r++) {
+                out.writeLong(encodedRules.getWeight(r));
+            }
+            for (int r = 0; r <= rulesCount; r++) {
+                out.writeInt(r < rulesCount ? encodedRules.getConditionStart(r) : encodedRules.getConditionEnd(r - 1));
+            }
+
+            int conditionsCount = rulesCount == 0 ? 0 : encodedRules.getConditionEnd(rulesCount - 1);
+            out.writeInt(conditionsCount);
+            for (int c = 0; c < conditionsCount; c++) {
+                out.writeInt(encodedRules.getConditionAttribute(c));
+            }
+            for (int c = 0; c < conditionsCount; c++) {
+                out.writeByte(encodedRules.getConditionType(c));
+            }
+            for (int c = 0; c < conditionsCount; c++) {
+                out.writeInt(encodedRules.getConditionValue(c));
+            }
+        }
+    }
+
+    static RuleEngine.Metadata read(Path path, RuleEngine.EvaluationMode evaluationMode,
+                                    RuleEngine.StorageMode storageMode,
+                                    RuleEngine.AmbiguityPolicy ambiguityPolicy) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new RuleEngineException("Snapshot is too large: " + path);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        try {
+            return read(buffer, evaluationMode, storageMode, ambiguityPolicy);
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException
+                 | NegativeArraySizeException e) {
+            throw new RuleEngineException("Corrupted snapshot: " + path);
+        }
+    }
+
+    private static RuleEngine.Metadata read(ByteBuffer buffer, RuleEngine.EvaluationMode evaluationMode,
+                                            RuleEngine.StorageMode storageMode,
+                                            RuleEngine.AmbiguityPolicy ambiguityPolicy) {
+        if (buffer.getInt() != MAGIC) {
+            throw new RuleEngineException("Not a rules snapshot");
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new RuleEngineException("Unsupported snapshot version: " + version);
+        }
+
+        int definitionsCount = readCount(buffer, Integer.BYTES * 2);
+        Map<String, AttributeDefinition> definitions = new HashMap<>((int) (definitionsCount / 0.75) + 1);
+        for (int i = 0; i < definitionsCount; i++) {
+            String name = readString(buffer);
+            definitions.put(name, new AttributeDefinition(name, buffer.getInt()));
+        }
+
+        int attributesCount = readCount(buffer, Integer.BYTES * 2);
+        String[] attributeNames = new String[attributesCount];
+        String[][] values = new String[attributesCount][];
+        for (int attributeId = 0; attributeId < attributesCount; attributeId++) {
+            attributeNames[attributeId] = readString(buffer);
+            values[attributeId] = new String[readCount(buffer, Integer.BYTES)];
+            for (int valueId = 0; valueId < values[attributeId].length; valueId++) {
+                values[attributeId][valueId] = readString(buffer);
+            }
+        }
+
+        // id and result lengths, weight and condition start
+        int rulesCount = readCount(buffer, Integer.BYTES * 3 + Long.BYTES);
+        String[] ids = new String[rulesCount];
+        String[] results = new String[rulesCount];
+        Map<String, String> resultsPool = new HashMap<>();
+        for (int r = 0; r < rulesCount; r++) {
+            ids[r] = readString(buffer);
+            results[r] = resultsPool.computeIfAbsent(readString(buffer), result -> result);
+        }
+        long[] weights = new long[rulesCount];
+        buffer.asLongBuffer().get(weights);
+        skip(buffer, rulesCount * Long.BYTES);
+        int[] conditionStarts = readInts(buffer, rulesCount + 1);
+
+        int conditionsCount = readCount(buffer, Integer.BYTES * 2 + Byte.BYTES);
+        int[] conditionAttributes = readInts(buffer, conditionsCount);
+        byte[] conditionTypes = new byte[conditionsCount];
+        buffer.get(conditionTypes);
+        int[] conditionValues = readInts(buffer, conditionsCount);
+        validateRules(values, weights, conditionStarts, conditionAttributes, conditionTypes, conditionValues);
+
+        EncodedRules encodedRules = new EncodedRules(attributeNames, values, weights, conditionStarts,
+                conditionAttributes, conditionTypes, conditionValues);
+
+        AttributeDefinition[] attributeDefinitions = new AttributeDefinition[attributesCount];
+        for (int attributeId = 0; attributeId < attributesCount; attributeId++) {
+            attributeDefinitions[attributeId] = definitions.get(attributeNames[attributeId]);
+            if (attributeDefinitions[attributeId] == null) {
+                throw new RuleEngineException("Unknown rule attribute in snapshot: " + attributeNames[attributeId]);
+            }
+        }
+        CompactRules rules = new CompactRules(encodedRules, attributeDefinitions, ids, results);
+        return new RuleEngine.Metadata(definitions, rules, evaluationMode, storageMode, ambiguityPolicy);
+    }
+
+    // invalid arrays are reported as IllegalArgumentException, so they are reported as a corrupted snapshot
+    private static void validateRules(String[][] values, long[] weights, int[] conditionStarts,
+                                      int[] conditionAttributes, byte[] conditionTypes, int[] conditionValues) {
+        int rulesCount = weights.length;
+        if (conditionStarts[0] != 0 || conditionStarts[rulesCount] != conditionTypes.length) {
+            throw new IllegalArgumentException("Conditions don't match rules");
+        }
+        // dictionary values by attribute id, built only for attributes with sets
+        Map<Integer, Set<String>> dictionaries = new HashMap<>();
+        for (int r = 0; r < rulesCount; r++) {
+            if (conditionStarts[r] > conditionStarts[r + 1] || (r > 0 && weights[r - 1] < weights[r])) {
+                throw new IllegalArgumentException("Rules are not in weight order at " + r);
+            }
+            for (int c = conditionStarts[r]; c < conditionStarts[r + 1]; c++) {
+                int attributeId = conditionAttributes[c];
+                if (attributeId < 0 || attributeId >= values.length
+                        || (c > conditionStarts[r] && conditionAttributes[c - 1] > attributeId)) {
+                    throw new IllegalArgumentException("Invalid attribute of condition " + c);
+                }
+                byte type = conditionTypes[c];
+                int valueId = conditionValues[c];
+                if (type == EncodedRules.ANY) {
+                    if (valueId != EncodedRules.UNKNOWN_VALUE) {
+                        throw new IllegalArgumentException("Invalid value of condition " + c);
+                    }
+                    continue;
+                }
+                if (type < EncodedRules.EXACT || type > EncodedRules.SET) {
+                    throw new IllegalArgumentException("Unknown type of condition " + c);
+                }
+                if (valueId < 0 || valueId >= values[attributeId].length) {
+                    throw new IllegalArgumentException("Invalid value of condition " + c);
+                }
+                try {
+                    if (type == EncodedRules.RANGE) {
+                        NumericRange.parse(values[attributeId][valueId]);
+                    } else if (type == EncodedRules.SET) {
+                        Set<String> dictionary = dictionaries.computeIfAbsent(attributeId,
+                                id -> new HashSet<>(Arrays.asList(values[id])));
+                        if (!dictionary.containsAll(SetRuleAttribute.parseMembers(values[attributeId][valueId]))) {
+                            throw new IllegalArgumentException("Set members of condition " + c + " have no ids");
+                        }
+                    }
+                } catch (InvalidRuleStructure e) {
+                    throw new IllegalArgumentException(e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static int[] readInts(ByteBuffer buffer, int count) {
+        int[] ints = new int[count];
+        buffer.asIntBuffer().get(ints);
+        skip(buffer, count * Integer.BYTES);
+        return ints;
+    }
+
+    /**
+     * Reads count of elements which take at least {@code minBytes} each, the count has to fit the remaining bytes.
+     */
+    private static int readCount(ByteBuffer buffer, int minBytes) {
+        int count = buffer.getInt();
+        if (count < 0 || (long) count * minBytes > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        return count;
+    }
+
+    private static void skip(ByteBuffer buffer, int bytes) {
+        buffer.position(buffer.position() + bytes);
+    }
+
+    private static void writeString(DataOutputStream out, String str) throws IOException {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[readCount(buffer, Byte.BYTES)];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
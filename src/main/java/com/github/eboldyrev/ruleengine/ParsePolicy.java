@@ -0,0 +1,68 @@
+package com.github.eboldyrev.ruleengine;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Defines how {@link RuleEngine} parses rules passed to setRules, setRulesAndAttributeDefinitions and upsertRules
+ * and rules read by loadRules: what to do with invalid rules and whether rules are parsed in parallel. Rules read
+ * by loadRules are parsed as they are read, never in parallel.
+ */
+public class ParsePolicy {
+    // all rules are parsed and all errors are reported
+    static final ParsePolicy DEFAULT = new ParsePolicy(Integer.MAX_VALUE, false, null);
+
+    private final int maxErrors;
+    private final boolean skipInvalid;
+    private final ForkJoinPool pool;
+
+    private ParsePolicy(int maxErrors, boolean skipInvalid, ForkJoinPool pool) {
+        this.maxErrors = maxErrors;
+        this.skipInvalid = skipInvalid;
+        this.pool = pool;
+    }
+
+    /**
+     * Parsing stops at the first invalid rule.
+     */
+    public static ParsePolicy failFast() {
+        return new ParsePolicy(1, false, null);
+    }
+
+    /**
+     * Parsing stops when {@code maxErrors} invalid rules are found, all of them are reported.
+     */
+    public static ParsePolicy collectErrors(int maxErrors) {
+        if (maxErrors <= 0) {
+            throw new IllegalArgumentException("maxErrors should be positive");
+        }
+        return new ParsePolicy(maxErrors, false, null);
+    }
+
+    /**
+     * Invalid rules are ignored, the rest are loaded.
+     */
+    public static ParsePolicy skipInvalid() {
+        return new ParsePolicy(Integer.MAX_VALUE, true, null);
+    }
+
+    /**
+     * Returns the same policy which parses rules in parallel in the given pool.
+     */
+    public ParsePolicy inParallel(ForkJoinPool pool) {
+        return new ParsePolicy(maxErrors, skipInvalid, requireNonNull(pool));
+    }
+
+    int getMaxErrors() {
+        return maxErrors;
+    }
+
+    boolean isSkipInvalid() {
+        return skipInvalid;
+    }
+
+    ForkJoinPool getPool() {
+        return pool;
+    }
+}
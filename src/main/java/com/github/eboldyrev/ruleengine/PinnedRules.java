@@ -0,0 +1,73 @@
+package com.github.eboldyrev.ruleengine;
+
+import com.github.eboldyrev.ruleengine.attributes.RuleAttribute;
+import com.github.eboldyrev.ruleengine.exception.InvalidRuleStructure;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * One version of rules and attribute definitions of a {@link RuleEngine} returned by {@link RuleEngine#pinRules()}.
+ * Queries of pinned rules are evaluated against this version even if the engine is reloaded meanwhile, so
+ * several queries get consistent results without any locking. Pinned rules are kept in memory until released.
+ */
+public class PinnedRules {
+
+    private final RuleEngine ruleEngine;
+    private final RuleEngine.Metadata metadata;
+
+    PinnedRules(RuleEngine ruleEngine, RuleEngine.Metadata metadata) {
+        this.ruleEngine = ruleEngine;
+        this.metadata = metadata;
+    }
+
+    /**
+     * Version of the rules, see {@link RuleEngine#getRulesVersion()}.
+     */
+    public long getVersion() {
+        return metadata.getVersion();
+    }
+
+    public List<Rule> getRules() {
+        return Collections.unmodifiableList(metadata.getRules());
+    }
+
+    public String query(String queryAttrsStr) throws InvalidRuleStructure {
+        return ruleEngine.query(metadata, parse(queryAttrsStr));
+    }
+
+    public String query(Map<String, String> queryAttrs) throws InvalidRuleStructure {
+        return ruleEngine.query(metadata, parse(queryAttrs));
+    }
+
+    /**
+     * Evaluates the prepared query, the query should be built for attribute definitions of the pinned version.
+     */
+    public String query(PreparedQuery query) {
+        requireNonNull(query);
+        return ruleEngine.query(metadata, query.attributes());
+    }
+
+    public QueryOutcome queryOutcome(String queryAttrsStr) throws InvalidRuleStructure {
+        return ruleEngine.queryOutcome(metadata, parse(queryAttrsStr), new QueryOutcome());
+    }
+
+    public QueryOutcome queryOutcome(PreparedQuery query, QueryOutcome outcome) {
+        requireNonNull(query);
+        requireNonNull(outcome);
+        return ruleEngine.queryOutcome(metadata, query.attributes(), outcome);
+    }
+
+    private List<RuleAttribute> parse(String queryAttrsStr) {
+        return Rule.queryFromString(queryAttrsStr, metadata.getAttributeDefinitions(),
+                ruleEngine.getNameTransformator(), ruleEngine.getValueTransformator());
+    }
+
+    private List<RuleAttribute> parse(Map<String, String> queryAttrs) {
+        return Rule.queryFromMap(queryAttrs, metadata.getAttributeDefinitions(),
+                ruleEngine.getNameTransformator(), ruleEngine.getValueTransformator());
+    }
+}
@@ -0,0 +1,191 @@
+package com.github.eboldyrev.ruleengine;
+
+import java.util.*;
+
+/**
+ * Character trie over partial match values. Every node keeps sorted positions of rules whose value ends at the node,
+ * so one walk down the query value collects posting lists of all matching rules.
+ * Reversed trie is built from values read backwards and is walked from the last character of the query value,
+ * so it matches suffixes.
+ */
+class PrefixTrie {
+    private static final char[] NO_LABELS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final int[] NO_RULES = new int[0];
+
+    private final Node root;
+    private final boolean reversed;
+
+    private PrefixTrie(Node root, boolean reversed) {
+        this.root = root;
+        this.reversed = reversed;
+    }
+
+    void collect(String value, RuleIndex.PostingLists postings) {
+        Node node = root;
+        if (node.rules.length > 0) {
+            postings.add(node.rules);
+        }
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            node = node.child(value.charAt(reversed ? length - 1 - i : i));
+            if (node == null) {
+                return;
+            }
+            if (node.rules.length > 0) {
+                postings.add(node.rules);
+            }
+        }
+    }
+
+    /**
+     * Returns positions stored for exactly this value.
+     */
+    int[] find(String value) {
+        Node node = root;
+        int length = value.length();
+        for (int i = 0; i < length && node != null; i++) {
+            node = node.child(value.charAt(reversed ? length - 1 - i : i));
+        }
+        return node != null ? node.rules : NO_RULES;
+    }
+
+    /**
+     * Returns a trie with the position added to the value. Only nodes on the path of the value are copied,
+     * other nodes are shared with this trie.
+     */
+    PrefixTrie with(String value, int position) {
+        return new PrefixTrie(with(root, value, 0, position), reversed);
+    }
+
+    private Node with(Node node, String value, int depth, int position) {
+        int length = value.length();
+        if (depth == length) {
+            return new Node(node.labels, node.children, insert(node.rules, position));
+        }
+        char label = value.charAt(reversed ? length - 1 - depth : depth);
+        int idx = Arrays.binarySearch(node.labels, label);
+        if (idx >= 0) {
+            Node[] children = node.children.clone();
+            children[idx] = with(children[idx], value, depth + 1, position);
+            return new Node(node.labels, children, node.rules);
+        }
+        int insertion = -idx - 1;
+        char[] labels = new char[node.labels.length + 1];
+        Node[] children = new Node[node.children.length + 1];
+        System.arraycopy(node.labels, 0, labels, 0, insertion);
+        System.arraycopy(node.children, 0, children, 0, insertion);
+        labels[insertion] = label;
+        children[insertion] = with(new Node(NO_LABELS, NO_CHILDREN, NO_RULES), value, depth + 1, position);
+        System.arraycopy(node.labels, insertion, labels, insertion + 1, node.labels.length - insertion);
+        System.arraycopy(node.children, insertion, children, insertion + 1, node.children.length - insertion);
+        return new Node(labels, children, node.rules);
+    }
+
+    private static int[] insert(int[] rules, int position) {
+        int idx = Arrays.binarySearch(rules, position);
+        if (idx >= 0) {
+            return rules;
+        }
+        int insertion = -idx - 1;
+        int[] inserted = new int[rules.length + 1];
+        System.arraycopy(rules, 0, inserted, 0, insertion);
+        inserted[insertion] = position;
+        System.arraycopy(rules, insertion, inserted, insertion + 1, rules.length - insertion);
+        return inserted;
+    }
+
+    /**
+     * Returns a trie with positions of both tries, nodes which are only in one of the tries are shared.
+     */
+    PrefixTrie merge(PrefixTrie other) {
+        return new PrefixTrie(merge(root, other.root), reversed);
+    }
+
+    private static Node merge(Node node, Node other) {
+        char[] labels = new char[node.labels.length + other.labels.length];
+        Node[] children = new Node[labels.length];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < node.labels.length || j < other.labels.length) {
+            if (j == other.labels.length || (i < node.labels.length && node.labels[i] < other.labels[j])) {
+                labels[k] = node.labels[i];
+                children[k++] = node.children[i++];
+            } else if (i == node.labels.length || other.labels[j] < node.labels[i]) {
+                labels[k] = other.labels[j];
+                children[k++] = other.children[j++];
+            } else {
+                labels[k] = node.labels[i];
+                children[k++] = merge(node.children[i++], other.children[j++]);
+            }
+        }
+        int[] rules = other.rules.length == 0 ? node.rules : RuleChanges.merge(node.rules, other.rules);
+        return new Node(Arrays.copyOf(labels, k), Arrays.copyOf(children, k), rules);
+    }
+
+    private static class Node {
+        private final char[] labels;
+        private final Node[] children;
+        private final int[] rules;
+
+        Node(char[] labels, Node[] children, int[] rules) {
+            this.labels = labels;
+            this.children = children;
+            this.rules = rules;
+        }
+
+        Node child(char c) {
+            int idx = Arrays.binarySearch(labels, c);
+            return idx >= 0 ? children[idx] : null;
+        }
+    }
+
+    static class Builder {
+        private final BuilderNode root = new BuilderNode();
+        private final boolean reversed;
+
+        Builder() {
+            this(false);
+        }
+
+        Builder(boolean reversed) {
+            this.reversed = reversed;
+        }
+
+        void add(String value, int position) {
+            BuilderNode node = root;
+            int length = value.length();
+            for (int i = 0; i < length; i++) {
+                node = node.children.computeIfAbsent(value.charAt(reversed ? length - 1 - i : i), c -> new BuilderNode());
+            }
+            node.rules.add(position);
+        }
+
+        PrefixTrie build() {
+            return new PrefixTrie(root.build(), reversed);
+        }
+    }
+
+    private static class BuilderNode {
+        private final TreeMap<Character, BuilderNode> children = new TreeMap<>();
+        private final RuleIndex.IntList rules = new RuleIndex.IntList();
+
+        Node build() {
+            int[] nodeRules = rules.size() > 0 ? rules.toArray() : NO_RULES;
+            if (children.isEmpty()) {
+                return new Node(NO_LABELS, NO_CHILDREN, nodeRules);
+            }
+
+            char[] labels = new char[children.size()];
+            Node[] nodes = new Node[children.size()];
+            int i = 0;
+            for (Map.Entry<Character, BuilderNode> entry : children.entrySet()) {
+                labels[i] = entry.getKey();
+                nodes[i] = entry.getValue().build();
+                i++;
+            }
+            return new Node(labels, nodes, nodeRules);
+        }
+    }
+}
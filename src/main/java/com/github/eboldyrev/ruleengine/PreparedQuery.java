@@ -0,0 +1,35 @@
+package com.github.eboldyrev.ruleengine;
+
+import com.github.eboldyrev.ruleengine.attributes.RuleAttribute;
+
+import java.util.List;
+
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * Query built by {@link QueryBuilder}. It holds attributes in the same form as a parsed query string,
+ * so it can be passed to {@link RuleEngine#query(PreparedQuery)} many times without any parsing.
+ */
+public class PreparedQuery {
+
+    private final List<RuleAttribute> attributes;
+
+    PreparedQuery(List<RuleAttribute> attributes) {
+        this.attributes = attributes;
+    }
+
+    public List<RuleAttribute> getAttributes() {
+        return unmodifiableList(attributes);
+    }
+
+    List<RuleAttribute> attributes() {
+        return attributes;
+    }
+
+    @Override
+    public String toString() {
+        return "PreparedQuery{" +
+                "attributes=" + attributes +
+                '}';
+    }
+}
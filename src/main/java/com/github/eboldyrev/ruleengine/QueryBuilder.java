@@ -0,0 +1,50 @@
+package com.github.eboldyrev.ruleengine;
+
+import com.github.eboldyrev.ruleengine.attributes.RuleAttribute;
+import com.github.eboldyrev.ruleengine.exception.InvalidRuleStructure;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Builds {@link PreparedQuery} from attribute handles and values without formatting and parsing of query strings.
+ * Values are trimmed, transformed and validated like values of query strings.
+ * Builder is not thread safe, but can be reused after {@link #clear()}.
+ */
+public class QueryBuilder {
+
+    private final Function<String, String> valueTransformator;
+    private final List<RuleAttribute> attributes = new ArrayList<>();
+
+    QueryBuilder(Function<String, String> valueTransformator) {
+        this.valueTransformator = valueTransformator;
+    }
+
+    public QueryBuilder set(AttributeHandle handle, String value) throws InvalidRuleStructure {
+        requireNonNull(handle);
+        RuleAttribute attribute = RuleScanner.queryAttribute(handle.getDefinition(), value, valueTransformator);
+        for (int i = 0; i < attributes.size(); i++) {
+            if (attributes.get(i).getName().equals(handle.getName())) {
+                attributes.set(i, attribute);
+                return this;
+            }
+        }
+        attributes.add(attribute);
+        return this;
+    }
+
+    public QueryBuilder clear() {
+        attributes.clear();
+        return this;
+    }
+
+    public PreparedQuery build() {
+        List<RuleAttribute> queryAttributes = new ArrayList<>(attributes);
+        queryAttributes.sort(Comparator.comparing(RuleAttribute::getName));
+        return new PreparedQuery(queryAttributes);
+    }
+}
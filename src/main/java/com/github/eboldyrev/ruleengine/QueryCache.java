@@ -0,0 +1,195 @@
+package com.github.eboldyrev.ruleengine;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of query results in front of rules evaluation. The cache is split into segments with LRU eviction,
+ * each segment is locked separately. Entries belong to the {@link RuleEngine.Metadata} they were calculated for:
+ * when the engine switches to new metadata, the old entries are dropped at once. Queries of older metadata, e.g.
+ * of pinned rules, are not cached, so they don't drop entries of the current metadata.
+ * Capacities of the segments add up to the maximum size, small caches have fewer segments.
+ */
+class QueryCache {
+    private static final int MAX_SEGMENTS_COUNT = 16;
+
+    // power of two, a segment is chosen by the hash bits
+    private final int segmentsCount;
+    private final int maximumSize;
+    private final AtomicReference<Generation> generation;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    QueryCache(int maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("Cache size should be positive");
+        }
+        this.segmentsCount = Integer.highestOneBit(Math.min(MAX_SEGMENTS_COUNT, maximumSize));
+        this.maximumSize = maximumSize;
+        this.generation = new AtomicReference<>(new Generation(null));
+    }
+
+    /**
+     * Returns positions of the heaviest matched rules or null if the query is not in the cache.
+     */
+    int[] get(RuleEngine.Metadata metadata, Key key) {
+        Generation current = generation.get();
+        if (current.metadata != metadata) {
+            misses.increment();
+            return null;
+        }
+        int[] positions = current.segment(key).get(key);
+        if (positions == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return positions;
+    }
+
+    void put(RuleEngine.Metadata metadata, Key key, int[] positions) {
+        Generation current = generation.get();
+        if (current.metadata != metadata) {
+            if (!isNewer(metadata, current)) {
+                return;
+            }
+            Generation next = new Generation(metadata);
+            current = generation.compareAndSet(current, next) ? next : generation.get();
+            if (current.metadata != metadata) {
+                return;
+            }
+        }
+        current.segment(key).put(key, positions);
+    }
+
+    // concurrent reloads can invalidate in any order, the newest metadata wins
+    void invalidate(RuleEngine.Metadata metadata) {
+        generation.updateAndGet(current -> isNewer(metadata, current) ? new Generation(metadata) : current);
+    }
+
+    private static boolean isNewer(RuleEngine.Metadata metadata, Generation generation) {
+        return generation.metadata == null || metadata.getVersion() > generation.metadata.getVersion();
+    }
+
+    QueryCacheStats stats() {
+        return new QueryCacheStats(hits.sum(), misses.sum(), evictions.sum(), generation.get().size());
+    }
+
+    private class Generation {
+        private final RuleEngine.Metadata metadata;
+        private final Segment[] segments = new Segment[segmentsCount];
+
+        Generation(RuleEngine.Metadata metadata) {
+            this.metadata = metadata;
+            // the first segments take the remainder of the division
+            for (int i = 0; i < segmentsCount; i++) {
+                segments[i] = new Segment(maximumSize / segmentsCount + (i < maximumSize % segmentsCount ? 1 : 0));
+            }
+        }
+
+        Segment segment(Key key) {
+            return segments[(key.hash ^ (key.hash >>> 16)) & (segmentsCount - 1)];
+        }
+
+        long size() {
+            long size = 0;
+            for (Segment segment : segments) {
+                size += segment.size();
+            }
+            return size;
+        }
+    }
+
+    private class Segment {
+        private final int capacity;
+        private final LinkedHashMap<Key, int[]> entries = new LinkedHashMap<Key, int[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, int[]> eldest) {
+                if (size() > capacity) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        Segment(int capacity) {
+            this.capacity = capacity;
+        }
+
+        synchronized int[] get(Key key) {
+            return entries.get(key);
+        }
+
+        synchronized void put(Key key, int[] positions) {
+            entries.put(key, positions);
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Query projected to the attributes used by rules. Attributes which have only exact and any conditions are
+     * kept as value ids, so all values unknown to the rules fall into one key. Attributes with partial conditions
+     * are kept as values. Probe keys are reused by a thread, stored keys are copies.
+     */
+    static class Key {
+        static final int ABSENT = -2;
+
+        private int[] valueIds = new int[0];
+        private String[] values = new String[0];
+        private int hash;
+
+        void project(EncodedRules encodedRules, QueryScratch scratch) {
+            int attributesCount = encodedRules.getAttributesCount();
+            if (valueIds.length != attributesCount) {
+                valueIds = new int[attributesCount];
+                values = new String[attributesCount];
+            }
+            int h = 1;
+            for (int attributeId = 0; attributeId < attributesCount; attributeId++) {
+                String value = scratch.queryValues[attributeId];
+                if (value == null) {
+                    valueIds[attributeId] = ABSENT;
+                    values[attributeId] = null;
+                } else if (encodedRules.hasPartialConditions(attributeId)) {
+                    valueIds[attributeId] = EncodedRules.UNKNOWN_VALUE;
+                    values[attributeId] = value;
+                } else {
+                    valueIds[attributeId] = scratch.queryValueIds[attributeId];
+                    values[attributeId] = null;
+                }
+                h = 31 * h + valueIds[attributeId];
+                h = 31 * h + (values[attributeId] != null ? values[attributeId].hashCode() : 0);
+            }
+            hash = h;
+        }
+
+        Key copy() {
+            Key copy = new Key();
+            copy.valueIds = valueIds.clone();
+            copy.values = values.clone();
+            copy.hash = hash;
+            return copy;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return hash == key.hash && Arrays.equals(valueIds, key.valueIds) && Arrays.equals(values, key.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
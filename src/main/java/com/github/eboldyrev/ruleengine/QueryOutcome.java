@@ -0,0 +1,92 @@
+package com.github.eboldyrev.ruleengine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Result of a query which doesn't throw on ambiguous match: the status, the result of the matched rule or
+ * ids of the heaviest rules matched together. An outcome can be passed to
+ * {@link RuleEngine#queryOutcome(PreparedQuery, QueryOutcome)} again, so a query allocates nothing.
+ * The outcome refers to the rules it was evaluated against until it is reused.
+ */
+public class QueryOutcome {
+    public enum Status {
+        MATCHED,
+        NO_MATCH,
+        // several rules with the same weight matched the query
+        AMBIGUOUS
+    }
+
+    private RuleEngine.Metadata metadata;
+    private int[] positions = new int[4];
+    private int count;
+
+    void set(RuleEngine.Metadata metadata, int[] positions, int count) {
+        if (this.positions.length < count) {
+            this.positions = new int[Math.max(count, this.positions.length * 2)];
+        }
+        System.arraycopy(positions, 0, this.positions, 0, count);
+        this.metadata = metadata;
+        this.count = count;
+    }
+
+    public Status getStatus() {
+        if (count == 0) {
+            return Status.NO_MATCH;
+        }
+        return count == 1 ? Status.MATCHED : Status.AMBIGUOUS;
+    }
+
+    public boolean isMatched() {
+        return count == 1;
+    }
+
+    /**
+     * Result of the matched rule or null if no rule or several rules match the query.
+     */
+    public String getResult() {
+        return count == 1 ? metadata.getResult(positions[0]) : null;
+    }
+
+    /**
+     * Matched rule or null if no rule or several rules match the query.
+     */
+    public Rule getRule() {
+        return count == 1 ? metadata.getRules().get(positions[0]) : null;
+    }
+
+    /**
+     * Number of the heaviest matched rules, more than one when the match is ambiguous.
+     */
+    public int getRulesCount() {
+        return count;
+    }
+
+    public String getRuleId(int i) {
+        if (i < 0 || i >= count) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", rules count: " + count);
+        }
+        return metadata.getRuleId(positions[i]);
+    }
+
+    /**
+     * Ids of the heaviest matched rules in the order of {@link RuleEngine#queryAllMatches(PreparedQuery)}, tied rules
+     * are ordered by id in every evaluation mode.
+     */
+    public List<String> getRuleIds() {
+        List<String> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(metadata.getRuleId(positions[i]));
+        }
+        return ids;
+    }
+
+    @Override
+    public String toString() {
+        return "QueryOutcome{" +
+                "status=" + getStatus() +
+                ", ruleIds=" + (metadata != null ? getRuleIds() : Arrays.asList()) +
+                '}';
+    }
+}
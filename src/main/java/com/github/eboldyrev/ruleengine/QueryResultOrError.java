@@ -0,0 +1,37 @@
+package com.github.eboldyrev.ruleengine;
+
+import com.github.eboldyrev.ruleengine.exception.RuleEngineException;
+
+public class QueryResultOrError {
+
+    private final String result;
+    private final RuleEngineException error;
+
+    private QueryResultOrError(String result, RuleEngineException error) {
+        this.result = result;
+        this.error = error;
+    }
+
+    static QueryResultOrError result(String result) {
+        return new QueryResultOrError(result, null);
+    }
+
+    static QueryResultOrError error(RuleEngineException exception) {
+        return new QueryResultOrError(null, exception);
+    }
+
+    public boolean isError() {
+        return error != null;
+    }
+
+    /**
+     * Result of the matched rule or null if no rule matches the query.
+     */
+    public String getResult() {
+        return result;
+    }
+
+    public RuleEngineException getError() {
+        return error;
+    }
+}
@@ -0,0 +1,126 @@
+package com.github.eboldyrev.ruleengine;
+
+import java.util.Arrays;
+
+/**
+ * Per thread buffers reused by queries, so a query which doesn't find an ambiguous match allocates nothing
+ * once the buffers have grown to the size of the rule set.
+ */
+class QueryScratch {
+    private static final ThreadLocal<QueryScratch> SCRATCH = ThreadLocal.withInitial(QueryScratch::new);
+
+    final RuleIndex.PostingLists postingLists = new RuleIndex.PostingLists();
+    // positions of the heaviest matched rules
+    final RuleIndex.IntList matches = new RuleIndex.IntList();
+    long bestWeight;
+    // rules checked by the last query, reported to RuleEngineListener
+    int evaluatedRules;
+    // number of the heaviest matches to collect into topPositions, 0 when only the heaviest weight is searched
+    int topK;
+    final RuleIndex.BoundedHeap topPositions = new RuleIndex.BoundedHeap();
+    final QueryCache.Key cacheKey = new QueryCache.Key();
+    // result of the last query: matches array or positions cached by QueryCache
+    int[] resultPositions;
+    int resultCount;
+    int[] candidates = new int[64];
+    private int[] mergeBuffer = new int[64];
+    private int[] attributeStarts = new int[16];
+    // query encoded by EncodedRules, indexed by attribute id
+    long[] queryMask = new long[1];
+    int[] queryValueIds = new int[16];
+    String[] queryValues = new String[16];
+    // numbers of query values of attributes with range conditions, NaN for other attributes and not numbers
+    double[] queryNumbers = new double[16];
+    // glob pattern states of attributes with glob conditions, see GlobAutomaton
+    int[] globStates = new int[16];
+    int[] globEnds = new int[16];
+    // value ids of glob patterns matched by the query, attribute matches are at [globMatchStarts, globMatchEnds)
+    int[] globMatches = new int[16];
+    int globMatchesCount;
+    int[] globMatchStarts = new int[16];
+    int[] globMatchEnds = new int[16];
+
+    static QueryScratch get() {
+        return SCRATCH.get();
+    }
+
+    int[] candidates(int capacity) {
+        if (candidates.length < capacity) {
+            candidates = new int[Math.max(capacity, candidates.length * 2)];
+        }
+        return candidates;
+    }
+
+    int[] mergeBuffer(int capacity) {
+        if (mergeBuffer.length < capacity) {
+            mergeBuffer = new int[Math.max(capacity, mergeBuffer.length * 2)];
+        }
+        return mergeBuffer;
+    }
+
+    void swapCandidatesAndMergeBuffer() {
+        int[] tmp = candidates;
+        candidates = mergeBuffer;
+        mergeBuffer = tmp;
+    }
+
+    int[] attributeStarts(int capacity) {
+        if (attributeStarts.length < capacity) {
+            attributeStarts = new int[capacity];
+        }
+        return attributeStarts;
+    }
+
+    long[] queryMask(int words) {
+        if (queryMask.length < words) {
+            queryMask = new long[words];
+        } else {
+            Arrays.fill(queryMask, 0, words, 0L);
+        }
+        return queryMask;
+    }
+
+    int[] queryValueIds(int capacity) {
+        if (queryValueIds.length < capacity) {
+            queryValueIds = new int[capacity];
+        }
+        Arrays.fill(queryValueIds, 0, capacity, EncodedRules.UNKNOWN_VALUE);
+        return queryValueIds;
+    }
+
+    String[] queryValues(int capacity) {
+        if (queryValues.length < capacity) {
+            queryValues = new String[capacity];
+        } else {
+            Arrays.fill(queryValues, 0, capacity, null);
+        }
+        return queryValues;
+    }
+
+    double[] queryNumbers(int capacity) {
+        if (queryNumbers.length < capacity) {
+            queryNumbers = new double[capacity];
+        }
+        Arrays.fill(queryNumbers, 0, capacity, Double.NaN);
+        return queryNumbers;
+    }
+
+    void resetGlobs(int attributesCount, int statesCount) {
+        if (globStates.length < statesCount) {
+            globStates = new int[statesCount];
+            globEnds = new int[statesCount];
+        }
+        if (globMatchStarts.length < attributesCount) {
+            globMatchStarts = new int[attributesCount];
+            globMatchEnds = new int[attributesCount];
+        }
+        globMatchesCount = 0;
+    }
+
+    void addGlobMatch(int valueId) {
+        if (globMatchesCount == globMatches.length) {
+            globMatches = Arrays.copyOf(globMatches, globMatchesCount * 2);
+        }
+        globMatches[globMatchesCount++] = valueId;
+    }
+}
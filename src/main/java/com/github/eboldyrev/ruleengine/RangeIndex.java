@@ -0,0 +1,198 @@
+package com.github.eboldyrev.ruleengine;
+
+import com.github.eboldyrev.ruleengine.attributes.NumericRange;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Segment tree over numeric ranges. Distinct range bounds split numbers into slots: every bound itself and every
+ * open interval between neighbour bounds. A range is stored in the few tree nodes which cover its slots, so memory
+ * stays linear in the number of ranges up to a logarithmic factor. A lookup is one binary search over the bounds,
+ * then the posting lists of the nodes on the path from the slot leaf to the root are collected.
+ */
+class RangeIndex {
+    private final double[] bounds;
+    // slot 2i is the interval before bounds[i], slot 2i + 1 is bounds[i], the last slot is after the last bound
+    private final int leavesCount;
+    // node n has children 2n and 2n + 1, leaf of slot s is leavesCount + s, null for nodes without ranges
+    private final int[][] nodes;
+    // indexed ranges and their ascending positions, the index is built again from them when slots change
+    private final NumericRange[] ranges;
+    private final int[] positions;
+
+    private RangeIndex(double[] bounds, int leavesCount, int[][] nodes, NumericRange[] ranges, int[] positions) {
+        this.bounds = bounds;
+        this.leavesCount = leavesCount;
+        this.nodes = nodes;
+        this.ranges = ranges;
+        this.positions = positions;
+    }
+
+    /**
+     * Adds posting lists of rules whose range contains the number, nothing is added for NaN.
+     */
+    void collect(double number, RuleIndex.PostingLists postings) {
+        if (Double.isNaN(number)) {
+            return;
+        }
+        int idx = Arrays.binarySearch(bounds, number);
+        int slot = idx >= 0 ? 2 * idx + 1 : 2 * (-idx - 1);
+        for (int node = leavesCount + slot; node > 0; node >>>= 1) {
+            if (nodes[node] != null) {
+                postings.add(nodes[node]);
+            }
+        }
+    }
+
+    /**
+     * Returns an index with ranges of the builder added, their positions should be greater than positions of this
+     * index. Only nodes which get a position are copied when bounds of added ranges are bounds of this index,
+     * otherwise slots change and the index is built again.
+     */
+    RangeIndex with(Builder added) {
+        Builder builder = new Builder();
+        for (int i = 0; i < ranges.length; i++) {
+            builder.add(ranges[i], positions[i]);
+        }
+        boolean sameBounds = true;
+        for (int i = 0; i < added.ranges.size(); i++) {
+            NumericRange range = added.ranges.get(i);
+            builder.add(range, added.positions[i]);
+            sameBounds &= hasBound(range.getLow()) && hasBound(range.getHigh());
+        }
+        if (!sameBounds) {
+            return builder.build();
+        }
+
+        int[][] updated = nodes.clone();
+        for (int i = 0; i < added.ranges.size(); i++) {
+            NumericRange range = added.ranges.get(i);
+            int from = leavesCount + Builder.firstSlot(range, bounds);
+            int to = leavesCount + Builder.lastSlot(range, bounds) + 1;
+            while (from < to) {
+                if ((from & 1) == 1) {
+                    append(updated, from++, added.positions[i]);
+                }
+                if ((to & 1) == 1) {
+                    append(updated, --to, added.positions[i]);
+                }
+                from >>>= 1;
+                to >>>= 1;
+            }
+        }
+        return new RangeIndex(bounds, leavesCount, updated, builder.ranges.toArray(new NumericRange[0]),
+                Arrays.copyOf(builder.positions, builder.ranges.size()));
+    }
+
+    private boolean hasBound(double bound) {
+        return Double.isInfinite(bound) || Arrays.binarySearch(bounds, bound) >= 0;
+    }
+
+    private static void append(int[][] nodes, int node, int position) {
+        int[] list = nodes[node];
+        if (list == null) {
+            nodes[node] = new int[]{position};
+        } else if (list[list.length - 1] != position) {
+            nodes[node] = Arrays.copyOf(list, list.length + 1);
+            nodes[node][list.length] = position;
+        }
+    }
+
+    // number of positions kept in all nodes
+    int positionsCount() {
+        int count = 0;
+        for (int[] node : nodes) {
+            if (node != null) {
+                count += node.length;
+            }
+        }
+        return count;
+    }
+
+    static class Builder {
+        private final List<NumericRange> ranges = new ArrayList<>();
+        // not an IntList, a rule with several ranges on one attribute adds its position several times
+        private int[] positions = new int[4];
+
+        // positions should be added in ascending order
+        void add(NumericRange range, int position) {
+            if (ranges.size() == positions.length) {
+                positions = Arrays.copyOf(positions, positions.length * 2);
+            }
+            positions[ranges.size()] = position;
+            ranges.add(range);
+        }
+
+        RangeIndex build() {
+            TreeSet<Double> distinctBounds = new TreeSet<>();
+            for (NumericRange range : ranges) {
+                if (!Double.isInfinite(range.getLow())) {
+                    distinctBounds.add(range.getLow());
+                }
+                if (!Double.isInfinite(range.getHigh())) {
+                    distinctBounds.add(range.getHigh());
+                }
+            }
+            double[] bounds = new double[distinctBounds.size()];
+            int b = 0;
+            for (double bound : distinctBounds) {
+                bounds[b++] = bound;
+            }
+
+            int leavesCount = Integer.highestOneBit(2 * bounds.length + 1) << 1;
+            RuleIndex.IntList[] nodeRules = new RuleIndex.IntList[2 * leavesCount];
+            for (int i = 0; i < ranges.size(); i++) {
+                NumericRange range = ranges.get(i);
+                // nodes covering leaves [from, to)
+                int from = leavesCount + firstSlot(range, bounds);
+                int to = leavesCount + lastSlot(range, bounds) + 1;
+                while (from < to) {
+                    if ((from & 1) == 1) {
+                        add(nodeRules, from++, positions[i]);
+                    }
+                    if ((to & 1) == 1) {
+                        add(nodeRules, --to, positions[i]);
+                    }
+                    from >>>= 1;
+                    to >>>= 1;
+                }
+            }
+
+            int[][] nodes = new int[nodeRules.length][];
+            for (int node = 0; node < nodes.length; node++) {
+                if (nodeRules[node] != null) {
+                    nodes[node] = nodeRules[node].toArray();
+                }
+            }
+            return new RangeIndex(bounds, leavesCount, nodes, ranges.toArray(new NumericRange[0]),
+                    Arrays.copyOf(positions, ranges.size()));
+        }
+
+        // positions come in ascending order, so every node list is sorted
+        private static void add(RuleIndex.IntList[] nodeRules, int node, int position) {
+            if (nodeRules[node] == null) {
+                nodeRules[node] = new RuleIndex.IntList();
+            }
+            nodeRules[node].add(position);
+        }
+
+        private static int firstSlot(NumericRange range, double[] bounds) {
+            if (Double.isInfinite(range.getLow())) {
+                return 0;
+            }
+            int idx = Arrays.binarySearch(bounds, range.getLow());
+            return range.isLowInclusive() ? 2 * idx + 1 : 2 * idx + 2;
+        }
+
+        private static int lastSlot(NumericRange range, double[] bounds) {
+            if (Double.isInfinite(range.getHigh())) {
+                return 2 * bounds.length;
+            }
+            int idx = Arrays.binarySearch(bounds, range.getHigh());
+            return range.isHighInclusive() ? 2 * idx + 1 : 2 * idx;
+        }
+    }
+}
@@ -15,21 +15,23 @@ public class Rule {
     private static final String nameValueDivider = ":";
     static final String divider = "#";
     static final String equalityDivider = "=";
+    static final Consumer<RuleAttribute> queryAttributeType = ruleAttribute -> {
+        if (!(ruleAttribute instanceof ExactMatchAttribute)) {
+            throw new InvalidRuleStructure("Only exact match values allowed in query.");
+        }
+    };
 
     private final String id;
     private final List<RuleAttribute> attributes;
-    private final Set<String> attributeNames;
     private final String result;
     private final long weight;
 
     Rule(String ruleId, List<RuleAttribute> attributes, String result) {
         this.id = ruleId;
         this.attributes = attributes;
-        this.attributeNames = new HashSet<>((int)(attributes.size() / 0.75));
         int tmp = 0;
         for (RuleAttribute ruleAttribute : attributes) {
             tmp = tmp + ruleAttribute.getWeight();
-            attributeNames.add(ruleAttribute.getName());
         }
         this.weight = tmp;
         this.result = result;
@@ -39,12 +41,8 @@ public class Rule {
                                Map<String, AttributeDefinition> attributeDefinitions,
                                Function<String, String> nameTransformator,
                                Function<String, String> valueTransformator) {
-        String[] ruleAndResult = rule.split(equalityDivider);
-        if (ruleAndResult.length != 2) {
-            throw new InvalidRuleStructure("No rule result found: " + rule);
-        }
-
-        return new Rule(id, ruleAttributesFromString(ruleAndResult[0], attributeDefinitions, nameTransformator, valueTransformator), ruleAndResult[1]);
+        return RuleScanner.rule(id, rule, attributeDefinitions, nameTransformator, valueTransformator,
+                Rule::unknownRuleAttribute, null);
     }
 
     // name1:10#name2:1#name3:12345
@@ -52,72 +50,20 @@ public class Rule {
                                                         Map<String, AttributeDefinition> attributeDefinitions,
                                                         Function<String, String> nameTransformator,
                                                         Function<String, String> valueTransformator) {
-        return queryFromString(ruleStr, attributeDefinitions, nameTransformator, valueTransformator,
-                name -> {
-                    throw new InvalidRuleStructure("Unknown rule attribute: " + name);
-                },
-                ruleAttribute -> {
-                }
-        );
+        return RuleScanner.attributes(ruleStr, attributeDefinitions, nameTransformator, valueTransformator,
+                Rule::unknownRuleAttribute, null);
     }
 
     static List<RuleAttribute> queryFromString(String queryStr,
                                                Map<String, AttributeDefinition> attributeDefinitions,
                                                Function<String, String> nameTransformator,
                                                Function<String, String> valueTransformator) throws InvalidRuleStructure {
-        return queryFromString(queryStr, attributeDefinitions, nameTransformator, valueTransformator,
-                name -> null,
-                ruleAttribute -> {
-                    if (!(ruleAttribute instanceof ExactMatchAttribute)) {
-                        throw new InvalidRuleStructure("Only exact match values allowed in query.");
-                    }
-                }
-        );
+        return RuleScanner.attributes(queryStr, attributeDefinitions, nameTransformator, valueTransformator,
+                name -> null, queryAttributeType);
     }
 
-    private static List<RuleAttribute> queryFromString(String queryStr,
-                                                       Map<String, AttributeDefinition> attributeDefinitions,
-                                                       Function<String, String> nameTransformator,
-                                                       Function<String, String> valueTransformator,
-                                                       Function<String, AttributeDefinition> unknownAttributePolicy,
-                                                       Consumer<RuleAttribute> validRuleAttributePredicate) {
-        String[] splittedRule = queryStr.split(divider);
-
-        if (splittedRule.length == 0) {
-            throw new InvalidRuleStructure("No attributes found!");
-        }
-
-        validateStructure(queryStr, splittedRule.length);
-
-        List<RuleAttribute> attributes = new ArrayList<>(splittedRule.length);
-        for (String ruleAttrStr : splittedRule) {
-            RuleAttribute ruleAttribute = RuleAttribute.fromString(ruleAttrStr, attributeDefinitions,
-                    nameTransformator, valueTransformator, unknownAttributePolicy, validRuleAttributePredicate);
-            if (ruleAttribute != null) {
-                attributes.add(ruleAttribute);
-            }
-        }
-
-        attributes.sort(Comparator.comparing(RuleAttribute::getName));
-
-        return attributes;
-    }
-
-    private static void validateStructure(String queryStr, int ruleAttributesCount) {
-        int attributeDivCount = 0;
-        for (int i = 0; i < queryStr.length(); i++) {
-            char c = queryStr.charAt(i);
-            if (c == RuleAttribute.divider.charAt(0)) {
-                attributeDivCount++;
-            }
-        }
-        if (attributeDivCount != ruleAttributesCount && !(ruleAttributesCount == 1 && attributeDivCount == 0)) {
-            String missedPart = divider;
-            if (attributeDivCount < ruleAttributesCount) {
-                missedPart = RuleAttribute.divider;
-            }
-            throw new InvalidRuleStructure("Incorrect query structure. Missed '" + missedPart + "' in " + queryStr);
-        }
+    private static AttributeDefinition unknownRuleAttribute(String name) {
+        throw new InvalidRuleStructure("Unknown rule attribute: " + name);
     }
 
     static List<RuleAttribute> queryFromMap(Map<String, String> queryAttrs,
@@ -130,40 +76,25 @@ public class Rule {
         return queryFromString(queryStr, attributeDefinitions, nameTransformator, valueTransformator);
     }
 
+    // query attributes should be sorted by name like rule attributes
     RuleResult execute(List<RuleAttribute> queryAttributes, Set<String> queryAttributeNames) {
-        if (this.attributes.size() > queryAttributes.size()) {
-            return RuleResult.notApplicable(this);
-        } else if (!queryAttributeNames.containsAll(this.attributeNames)) {
-            return RuleResult.notApplicable(this);
+        for (RuleAttribute attribute : attributes) {
+            if (!queryAttributeNames.contains(attribute.getName())) {
+                return RuleResult.notApplicable(this);
+            }
         }
 
-        boolean calculationResult = true;
-        int queryAttrOffset = 0;
-        for (int i = 0; i < attributes.size(); i++) {
-            boolean foundFlag = true;
-            while (!queryAttributes.get(queryAttrOffset + i).getName().equals(attributes.get(i).getName())) {
-                queryAttrOffset++;
-                if (queryAttrOffset + i == queryAttributes.size()) {
-                    foundFlag = false;
-                    break;
-                }
+        int queryIdx = 0;
+        for (RuleAttribute attribute : attributes) {
+            // several rule attributes with one name are checked against the same query attribute
+            while (!queryAttributes.get(queryIdx).getName().equals(attribute.getName())) {
+                queryIdx++;
             }
-            if (foundFlag) {
-                calculationResult = calculationResult && attributes.get(i).calculate(queryAttributes.get(queryAttrOffset + i));
-            } else {
-                calculationResult = false;
+            if (!attribute.calculate(queryAttributes.get(queryIdx))) {
+                return RuleResult.notEqual(this);
             }
-
-            if (calculationResult == false) {
-                break;
-            }
-        }
-
-        if (calculationResult) {
-            return new RuleResult(this, RuleResult.Status.EQUAL, weight, result);
-        } else {
-            return RuleResult.notEqual(this);
         }
+        return new RuleResult(this, RuleResult.Status.EQUAL, weight, result);
     }
 
     public List<RuleAttribute> getAttributes() {
@@ -178,6 +109,10 @@ public class Rule {
         return id;
     }
 
+    public long getWeight() {
+        return weight;
+    }
+
     public String asString() {
         String[] attributeDefs = new String[attributes.size()];
         for (int i = 0; i < attributes.size(); i++) {
@@ -0,0 +1,135 @@
+package com.github.eboldyrev.ruleengine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Rules removed from and added to rules sorted by weight, with new positions of all rules. Kept rules keep their
+ * order and added rules are put between them by weight and id, so the update is applied without sorting all rules
+ * again.
+ */
+class RuleChanges {
+    static final int REMOVED = -1;
+
+    private final int previousCount;
+    private final int rulesCount;
+    // by previous position, -(number of new rules before the removed rule) - 1 for removed rules
+    private final int[] newPositions;
+    private final int removedCount;
+    private final List<Rule> addedRules;
+    // ascending new positions of added rules, in the order of added rules
+    private final int[] addedPositions;
+
+    // ids of the previous rules are taken by position, removed positions are ascending
+    RuleChanges(EncodedRules previous, IntFunction<String> ids, int[] removedPositions, List<Rule> addedRules) {
+        this.previousCount = previous.getRulesCount();
+        this.addedRules = new ArrayList<>(addedRules);
+        this.addedRules.sort(RuleEngine.Metadata.RULE_ORDER);
+
+        // previous position before which every added rule goes
+        int[] insertions = new int[this.addedRules.size()];
+        for (int i = 0; i < insertions.length; i++) {
+            insertions[i] = insertion(previous, ids, this.addedRules.get(i));
+        }
+
+        this.newPositions = new int[previousCount];
+        this.addedPositions = new int[insertions.length];
+        int next = 0;
+        int added = 0;
+        int removed = 0;
+        for (int position = 0; position < previousCount; position++) {
+            while (added < insertions.length && insertions[added] == position) {
+                addedPositions[added++] = next++;
+            }
+            if (removed < removedPositions.length && removedPositions[removed] == position) {
+                newPositions[position] = -next - 1;
+                removed++;
+            } else {
+                newPositions[position] = next++;
+            }
+        }
+        while (added < insertions.length) {
+            addedPositions[added++] = next++;
+        }
+        this.removedCount = removed;
+        this.rulesCount = next;
+    }
+
+    // the first previous rule which goes after the added rule
+    private static int insertion(EncodedRules previous, IntFunction<String> ids, Rule rule) {
+        int low = 0;
+        int high = previous.getRulesCount();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int cmp = Long.compare(rule.getWeight(), previous.getWeight(middle));
+            if (cmp == 0) {
+                cmp = RuleEngine.Metadata.compareIds(ids.apply(middle), rule.getId());
+            }
+            if (cmp <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    int getRulesCount() {
+        return rulesCount;
+    }
+
+    int getRemovedCount() {
+        return removedCount;
+    }
+
+    // number of removed and added rules
+    int size() {
+        return removedCount + addedRules.size();
+    }
+
+    int newPosition(int previousPosition) {
+        return newPositions[previousPosition] >= 0 ? newPositions[previousPosition] : REMOVED;
+    }
+
+    /**
+     * Returns the number of new rules which go before the previous rule, that is its new position for a kept rule.
+     * Previous position equal to the previous count stands for the end of rules.
+     */
+    int newBound(int previousPosition) {
+        if (previousPosition == previousCount) {
+            return rulesCount;
+        }
+        int position = newPositions[previousPosition];
+        return position >= 0 ? position : -position - 1;
+    }
+
+    List<Rule> getAddedRules() {
+        return addedRules;
+    }
+
+    int[] getAddedPositions() {
+        return addedPositions;
+    }
+
+    /**
+     * Merges sorted positions with sorted positions of added rules, returns the first array when nothing is added.
+     */
+    static int[] merge(int[] positions, int[] added) {
+        if (added.length == 0) {
+            return positions;
+        }
+        int[] merged = new int[positions.length + added.length];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < positions.length || j < added.length) {
+            if (j == added.length || (i < positions.length && positions[i] < added[j])) {
+                merged[k++] = positions[i++];
+            } else {
+                merged[k++] = added[j++];
+            }
+        }
+        return merged;
+    }
+}
@@ -1,14 +1,28 @@
 package com.github.eboldyrev.ruleengine;
 
 import com.github.eboldyrev.ruleengine.attributes.RuleAttribute;
+import com.github.eboldyrev.ruleengine.exception.AmbiguousRulesFound;
 import com.github.eboldyrev.ruleengine.exception.InvalidRuleStructure;
 import com.github.eboldyrev.ruleengine.exception.MultiplyRulesFound;
 import com.github.eboldyrev.ruleengine.exception.RuleEngineException;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static com.github.eboldyrev.ruleengine.utils.Utils.isEmpty;
 import static java.util.Collections.emptyList;
@@ -16,14 +30,57 @@ import static java.util.Collections.emptyMap;
 import static java.util.Objects.requireNonNull;
 
 public class RuleEngine {
+    public enum EvaluationMode {
+        // candidate rules are taken from the inverted index and evaluated one by one
+        INDEXED,
+        // rules are compiled into a discrimination tree, query is a single walk over the tree
+        COMPILED
+    }
+
+    public enum StorageMode {
+        // rules are kept as parsed
+        OBJECTS,
+        // rules are kept only as encoded conditions, rule objects are created on demand
+        COMPACT
+    }
+
+    public enum AmbiguityPolicy {
+        // query matched by several rules with the same weight throws MultiplyRulesFound
+        FAIL_ON_QUERY,
+        // rules with the same weight which can match one query are rejected when rules are set
+        REJECT_RULES,
+        // rule with the smallest id wins among matched rules with the same weight
+        TIE_BREAK_BY_ID
+    }
+
     private final AtomicReference<Metadata> metadataRef = new AtomicReference<>(Metadata.EMPTY_METADATA);
     private final Function<String, String> nameTransformator;
     private final Function<String, String> valueTransformator;
+    private final EvaluationMode evaluationMode;
+    private final StorageMode storageMode;
+    private volatile QueryCache queryCache;
+    private volatile RuleEngineListener listener;
+    private volatile ParsePolicy parsePolicy = ParsePolicy.DEFAULT;
 
     public RuleEngine(Function<String, String> attributeNameTransformator,
                       Function<String, String> attributeValueTransformator) {
+        this(attributeNameTransformator, attributeValueTransformator, EvaluationMode.INDEXED);
+    }
+
+    public RuleEngine(Function<String, String> attributeNameTransformator,
+                      Function<String, String> attributeValueTransformator,
+                      EvaluationMode evaluationMode) {
+        this(attributeNameTransformator, attributeValueTransformator, evaluationMode, StorageMode.OBJECTS);
+    }
+
+    public RuleEngine(Function<String, String> attributeNameTransformator,
+                      Function<String, String> attributeValueTransformator,
+                      EvaluationMode evaluationMode,
+                      StorageMode storageMode) {
         this.nameTransformator = attributeNameTransformator;
         this.valueTransformator = attributeValueTransformator;
+        this.evaluationMode = requireNonNull(evaluationMode);
+        this.storageMode = requireNonNull(storageMode);
     }
 
     public Map<String, AttributeDefinition> createAttributeDefinitions(Map<String, Integer> attrDefs) throws InvalidRuleStructure {
@@ -42,38 +99,92 @@ public class RuleEngine {
 
     // TODO support Collection as argument ??
     // TODO return Set ??
-    // LATER add policy for batch parsing : throw exception or return invalid and valid rules
     public List<RuleOrError> parseRules(Map<String, String> idRuleMap) throws InvalidRuleStructure {
         Map<String, AttributeDefinition> attributeDefinitions = metadataRef.get().attributeDefinitions;
         return parseRules(attributeDefinitions, idRuleMap);
     }
 
-    // what will happen when setRules and settAttributeDefinitions will be called from different threads
     public void setRules(Map<String, String> idRuleMap) {
         requireNonNull(idRuleMap);
-        Map<String, AttributeDefinition> attributeDefinitions = metadataRef.get().attributeDefinitions;
-        List<RuleOrError> ruleOrErrors = parseRules(attributeDefinitions, idRuleMap);
-        List<Rule> rules = checkForErrors(ruleOrErrors);
-        metadataRef.set(new Metadata(attributeDefinitions, rules));
+        AtomicInteger skipped = new AtomicInteger();
+        reload(current -> {
+            List<Rule> rules = parseValidRules(current.attributeDefinitions, idRuleMap, skipped);
+            return newMetadata(current, current.attributeDefinitions, rules);
+        });
+        reportSkipped(skipped.get());
     }
 
     public void setAttributesDefinitions(Map<String, Integer> attrDefs) throws InvalidRuleStructure {
         requireNonNull(attrDefs);
-        Map<String, AttributeDefinition> attributeDefinitions = createAttributeDefinitions(attrDefs);
-        List<Rule> rules = metadataRef.get().rules;
-        validateRules(rules, attributeDefinitions);
-        metadataRef.set(new Metadata(attributeDefinitions, rules));
+        reload(current -> {
+            Map<String, AttributeDefinition> attributeDefinitions = createAttributeDefinitions(attrDefs);
+            validateRules(current.rules, attributeDefinitions);
+            return newMetadata(current, attributeDefinitions, current.rules);
+        });
     }
 
     public void setRulesAndAttributeDefinitions(Map<String, Integer> attrDefs, Map<String, String> idRuleMap) {
         requireNonNull(attrDefs);
         requireNonNull(idRuleMap);
 
-        Map<String, AttributeDefinition> attributeDefinitions = createAttributeDefinitions(attrDefs);
-        List<RuleOrError> ruleOrErrors = parseRules(attributeDefinitions, idRuleMap);
-        List<Rule> rules = checkForErrors(ruleOrErrors);
+        AtomicInteger skipped = new AtomicInteger();
+        reload(current -> {
+            Map<String, AttributeDefinition> attributeDefinitions = createAttributeDefinitions(attrDefs);
+            List<Rule> rules = parseValidRules(attributeDefinitions, idRuleMap, skipped);
+            return newMetadata(current, attributeDefinitions, rules);
+        });
+        reportSkipped(skipped.get());
+    }
 
-        metadataRef.set(new Metadata(attributeDefinitions, rules));
+    /**
+     * Adds the rule, only the new rule is parsed.
+     *
+     * @throws RuleEngineException if a rule with the same id already exists
+     */
+    public void addRule(String id, String ruleStr) throws InvalidRuleStructure {
+        requireNonNull(id);
+        requireNonNull(ruleStr);
+        reload(current -> {
+            if (current.containsRuleId(Collections.singleton(id))) {
+                throw new RuleEngineException("Rule with id " + id + " already exists");
+            }
+            Rule rule = parseRule(current.attributeDefinitions, id, ruleStr);
+            return updateMetadata(current, Collections.emptySet(), Collections.singletonList(rule));
+        });
+    }
+
+    /**
+     * Adds new rules and replaces rules with the same ids, only given rules are parsed. A rule skipped as invalid
+     * by the parse policy doesn't replace the existing rule.
+     */
+    public void upsertRules(Map<String, String> idRuleMap) {
+        requireNonNull(idRuleMap);
+        AtomicInteger skipped = new AtomicInteger();
+        reload(current -> {
+            List<Rule> newRules = parseValidRules(current.attributeDefinitions, idRuleMap, skipped);
+            Set<String> replacedIds = new HashSet<>((int) (newRules.size() / 0.75) + 1);
+            for (Rule rule : newRules) {
+                replacedIds.add(rule.getId());
+            }
+            return updateMetadata(current, replacedIds, newRules);
+        });
+        reportSkipped(skipped.get());
+    }
+
+    public void removeRule(String id) {
+        requireNonNull(id);
+        removeRules(Collections.singleton(id));
+    }
+
+    /**
+     * Removes rules with given ids, unknown ids are ignored.
+     */
+    public void removeRules(Collection<String> ids) {
+        requireNonNull(ids);
+        Set<String> removedIds = new HashSet<>(ids);
+        reload(current -> current.containsRuleId(removedIds)
+                ? updateMetadata(current, removedIds, emptyList())
+                : current);
     }
 
     public static List<Rule> checkForErrors(List<RuleOrError> ruleOrErrors) throws RuleEngineException{
@@ -92,23 +203,205 @@ public class RuleEngine {
         }
 
         if (!errors.isEmpty()){
-            String errorMsg = errors.stream()
-                    .map(roe -> "rule id: " + roe.getRuleId() + ", rule: " + roe.getRuleStr() + " has error: " + roe.getError().getMessage()).collect(Collectors.joining(","));
-            throw new RuleEngineException("The following rules has errors: "+ errorMsg);
+            throw errorsException(errors);
         }
         return rules;
     }
 
+    private static RuleEngineException errorsException(List<RuleOrError> errors) {
+        StringBuilder errorMsg = new StringBuilder("The following rules has errors: ");
+        for (int i = 0; i < errors.size(); i++) {
+            RuleOrError roe = errors.get(i);
+            if (i > 0) {
+                errorMsg.append(',');
+            }
+            errorMsg.append("rule id: ").append(roe.getRuleId())
+                    .append(", rule: ").append(roe.getRuleStr())
+                    .append(" has error: ").append(roe.getError().getMessage());
+        }
+        return new RuleEngineException(errorMsg.toString());
+    }
+
     public List<Rule> getRules() {
         return Collections.unmodifiableList(metadataRef.get().rules);
     }
 
+    /**
+     * Returns version of the current rules and attribute definitions. Every change of them increases the version,
+     * an engine without rules has version 0.
+     */
+    public long getRulesVersion() {
+        return metadataRef.get().version;
+    }
+
+    /**
+     * Returns the current version of rules which can be queried many times regardless of reloads.
+     */
+    public PinnedRules pinRules() {
+        return new PinnedRules(this, metadataRef.get());
+    }
+
     public Map<String, Integer> getAttributesDefinitions() {
         return metadataRef.get().attributeDefinitions.entrySet()
                 .stream()
                 .collect(Collectors.toMap(e-> e.getKey(), e-> e.getValue().getWeight()));
     }
 
+    /**
+     * Replaces rules with rules read from lines {@code id<TAB>rule}, empty lines are skipped. Rules are parsed
+     * as lines are read and invalid rules are handled according to the parse policy. If attribute definitions are
+     * changed while the lines are read, the rules are parsed again against the new definitions.
+     *
+     * @param errorHandler receives every invalid rule as soon as it is read, can be null
+     */
+    public void loadRules(Reader reader, Consumer<RuleOrError> errorHandler) throws IOException {
+        requireNonNull(reader);
+        ParsePolicy policy = this.parsePolicy;
+        Map<String, AttributeDefinition> attributeDefinitions = metadataRef.get().attributeDefinitions;
+        List<Rule> rules = new ArrayList<>();
+        Set<String> ids = new HashSet<>();
+        List<RuleOrError> errors = new ArrayList<>();
+        int skippedLines = 0;
+
+        BufferedReader lines = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        int lineNumber = 0;
+        String line;
+        while (errors.size() < policy.getMaxErrors() && (line = lines.readLine()) != null) {
+            lineNumber++;
+            if (line.isEmpty()) {
+                continue;
+            }
+            RuleOrError ruleOrError = parseLine(attributeDefinitions, line, lineNumber);
+            if (ruleOrError.isRule() && !ids.add(ruleOrError.getRule().getId())) {
+                Rule rule = ruleOrError.getRule();
+                ruleOrError = RuleOrError.error(rule.getId(), rule.asString(),
+                        new InvalidRuleStructure("Duplicate rule id in line " + lineNumber));
+            }
+            if (ruleOrError.isRule()) {
+                rules.add(ruleOrError.getRule());
+            } else {
+                if (errorHandler != null) {
+                    errorHandler.accept(ruleOrError);
+                }
+                if (policy.isSkipInvalid()) {
+                    skippedLines++;
+                } else {
+                    errors.add(ruleOrError);
+                }
+            }
+        }
+        int skippedWhileReading = skippedLines;
+        AtomicInteger skipped = new AtomicInteger();
+        reload(current -> {
+            // thrown inside the reload, so the listener gets the failure like of other load paths
+            if (!errors.isEmpty()) {
+                throw errorsException(errors);
+            }
+            skipped.set(skippedWhileReading);
+            List<Rule> currentRules = current.attributeDefinitions == attributeDefinitions
+                    ? rules : reparseRules(rules, current.attributeDefinitions, policy, skipped);
+            return newMetadata(current, current.attributeDefinitions, currentRules);
+        });
+        reportSkipped(skipped.get());
+    }
+
+    // names and values of parsed rules are already transformed, so rules are parsed again without transformators,
+    // rules which don't fit the definitions are handled according to the parse policy
+    private static List<Rule> reparseRules(List<Rule> rules, Map<String, AttributeDefinition> attributeDefinitions,
+                                           ParsePolicy policy, AtomicInteger skipped) {
+        List<Rule> result = new ArrayList<>(rules.size());
+        List<RuleOrError> errors = new ArrayList<>();
+        for (Rule rule : rules) {
+            String ruleStr = rule.asString();
+            try {
+                result.add(Rule.ruleFromString(rule.getId(), ruleStr, attributeDefinitions, null, null));
+            } catch (InvalidRuleStructure e) {
+                if (errors.size() < policy.getMaxErrors()) {
+                    errors.add(RuleOrError.error(rule.getId(), ruleStr, e));
+                }
+            }
+        }
+        if (!errors.isEmpty() && !policy.isSkipInvalid()) {
+            throw errorsException(errors);
+        }
+        skipped.addAndGet(errors.size());
+        return result;
+    }
+
+    public void loadRules(Reader reader) throws IOException {
+        loadRules(reader, null);
+    }
+
+    /**
+     * Replaces rules with rules read from UTF-8 file, see {@link #loadRules(Reader, Consumer)}.
+     */
+    public void loadRules(Path path) throws IOException {
+        requireNonNull(path);
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            loadRules(reader, null);
+        }
+    }
+
+    /**
+     * Writes rules as lines {@code id<TAB>rule} which can be read by {@link #loadRules(Reader)}.
+     */
+    public void exportRules(Writer writer) throws IOException {
+        requireNonNull(writer);
+        for (Rule rule : metadataRef.get().rules) {
+            writer.write(rule.getId());
+            writer.write('\t');
+            writer.write(rule.asString());
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    /**
+     * Writes attribute definitions and rules into a binary snapshot which can be loaded by {@link #loadSnapshot(Path)}
+     * without parsing the rules.
+     */
+    public void writeSnapshot(Path path) throws IOException {
+        requireNonNull(path);
+        MetadataSnapshot.write(metadataRef.get(), path);
+    }
+
+    /**
+     * Replaces attribute definitions and rules with the ones of the snapshot written by {@link #writeSnapshot(Path)}.
+     * Name and value transformators are not applied, the snapshot keeps already transformed rules.
+     */
+    public void loadSnapshot(Path path) throws IOException {
+        requireNonNull(path);
+        Metadata metadata = MetadataSnapshot.read(path, evaluationMode, storageMode,
+                metadataRef.get().ambiguityPolicy);
+        reload(current -> current.ambiguityPolicy == metadata.ambiguityPolicy
+                ? metadata
+                : metadata.withAmbiguityPolicy(current.ambiguityPolicy, evaluationMode, storageMode));
+    }
+
+    // the ambiguity policy is taken from the current metadata, so a concurrent policy change is not lost
+    private Metadata newMetadata(Metadata current, Map<String, AttributeDefinition> attributeDefinitions,
+                                 List<Rule> rules) {
+        return new Metadata(attributeDefinitions, rules, evaluationMode, storageMode, current.ambiguityPolicy);
+    }
+
+    private Metadata updateMetadata(Metadata current, Set<String> removedIds, List<Rule> addedRules) {
+        return Metadata.update(current, removedIds, addedRules, evaluationMode, storageMode, current.ambiguityPolicy);
+    }
+
+    private RuleOrError parseLine(Map<String, AttributeDefinition> attributeDefinitions, String line, int lineNumber) {
+        int tab = line.indexOf('\t');
+        if (tab < 0) {
+            return RuleOrError.error(null, line, new InvalidRuleStructure("Missing tab between rule id and rule in line " + lineNumber));
+        }
+        String id = line.substring(0, tab);
+        String ruleStr = line.substring(tab + 1);
+        try {
+            return RuleOrError.rule(parseRule(attributeDefinitions, id, ruleStr));
+        } catch (Exception e) {
+            return RuleOrError.error(id, ruleStr, e);
+        }
+    }
+
     public Map<String, String> getRulesAsStrings() {
         List<Rule> rules = metadataRef.get().getRules();
         Map<String, String> result = new HashMap<>((int) (rules.size() / 0.75));
@@ -121,13 +414,155 @@ public class RuleEngine {
     public String query(Map<String, String> queryAttrs) throws InvalidRuleStructure {
         Metadata metadata = metadataRef.get();
         List<RuleAttribute> queryAttributes = Rule.queryFromMap(queryAttrs, metadata.attributeDefinitions, nameTransformator, valueTransformator);
-        return query(metadata.rules, queryAttributes);
+        return query(metadata, queryAttributes);
     }
 
     public String query(String queryAttrsStr) throws InvalidRuleStructure {
         Metadata metadata = metadataRef.get();
         List<RuleAttribute> queryAttributes = Rule.queryFromString(queryAttrsStr, metadata.attributeDefinitions, nameTransformator, valueTransformator);
-        return query(metadata.rules, queryAttributes);
+        return query(metadata, queryAttributes);
+    }
+
+    public String query(PreparedQuery query) {
+        requireNonNull(query);
+        return query(metadataRef.get(), query.attributes());
+    }
+
+    /**
+     * Evaluates the query like {@link #query(String)}, but returns an ambiguous match as an outcome
+     * instead of throwing {@link MultiplyRulesFound}.
+     */
+    public QueryOutcome queryOutcome(String queryAttrsStr) throws InvalidRuleStructure {
+        Metadata metadata = metadataRef.get();
+        List<RuleAttribute> queryAttributes = Rule.queryFromString(queryAttrsStr, metadata.attributeDefinitions, nameTransformator, valueTransformator);
+        return queryOutcome(metadata, queryAttributes, new QueryOutcome());
+    }
+
+    public QueryOutcome queryOutcome(Map<String, String> queryAttrs) throws InvalidRuleStructure {
+        Metadata metadata = metadataRef.get();
+        List<RuleAttribute> queryAttributes = Rule.queryFromMap(queryAttrs, metadata.attributeDefinitions, nameTransformator, valueTransformator);
+        return queryOutcome(metadata, queryAttributes, new QueryOutcome());
+    }
+
+    public QueryOutcome queryOutcome(PreparedQuery query) {
+        return queryOutcome(query, new QueryOutcome());
+    }
+
+    /**
+     * Puts the outcome of the query into the given outcome and returns it, nothing is allocated by the query
+     * once per thread buffers and the outcome have grown to the needed size.
+     */
+    public QueryOutcome queryOutcome(PreparedQuery query, QueryOutcome outcome) {
+        requireNonNull(query);
+        requireNonNull(outcome);
+        return queryOutcome(metadataRef.get(), query.attributes(), outcome);
+    }
+
+    /**
+     * Returns at most {@code k} matched rules ordered by descending weight, rules with the same weight
+     * are returned in the same order every time. The listener gets the query as matched by every returned rule.
+     */
+    public List<RuleResult> queryTopK(String queryAttrsStr, int k) throws InvalidRuleStructure {
+        Metadata metadata = metadataRef.get();
+        List<RuleAttribute> queryAttributes = Rule.queryFromString(queryAttrsStr, metadata.attributeDefinitions, nameTransformator, valueTransformator);
+        return queryTopK(metadata, queryAttributes, k);
+    }
+
+    public List<RuleResult> queryTopK(Map<String, String> queryAttrs, int k) throws InvalidRuleStructure {
+        Metadata metadata = metadataRef.get();
+        List<RuleAttribute> queryAttributes = Rule.queryFromMap(queryAttrs, metadata.attributeDefinitions, nameTransformator, valueTransformator);
+        return queryTopK(metadata, queryAttributes, k);
+    }
+
+    public List<RuleResult> queryTopK(PreparedQuery query, int k) {
+        requireNonNull(query);
+        return queryTopK(metadataRef.get(), query.attributes(), k);
+    }
+
+    /**
+     * Returns all matched rules ordered by descending weight.
+     */
+    public List<RuleResult> queryAllMatches(String queryAttrsStr) throws InvalidRuleStructure {
+        return queryTopK(queryAttrsStr, Integer.MAX_VALUE);
+    }
+
+    public List<RuleResult> queryAllMatches(Map<String, String> queryAttrs) throws InvalidRuleStructure {
+        return queryTopK(queryAttrs, Integer.MAX_VALUE);
+    }
+
+    public List<RuleResult> queryAllMatches(PreparedQuery query) {
+        return queryTopK(query, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Evaluates queries against the same rules and returns results in the order of queries. Identical queries are
+     * evaluated once. A query which fails, e.g. with {@link MultiplyRulesFound}, gets its error as a result and
+     * doesn't affect other queries.
+     */
+    public List<QueryResultOrError> queryBatch(List<Map<String, String>> queries) {
+        return queryBatch(queries, null);
+    }
+
+    /**
+     * Same as {@link #queryBatch(List)}, distinct queries are evaluated in parallel in the given pool
+     * if it is not null.
+     */
+    public List<QueryResultOrError> queryBatch(List<Map<String, String>> queries, ForkJoinPool pool) {
+        requireNonNull(queries);
+        Metadata metadata = metadataRef.get();
+
+        Map<Map<String, String>, Integer> distinctIndexes = new HashMap<>((int) (queries.size() / 0.75) + 1);
+        List<Map<String, String>> distinctQueries = new ArrayList<>();
+        int[] indexes = new int[queries.size()];
+        for (int i = 0; i < queries.size(); i++) {
+            Map<String, String> query = requireNonNull(queries.get(i));
+            Integer index = distinctIndexes.putIfAbsent(query, distinctQueries.size());
+            if (index == null) {
+                index = distinctQueries.size();
+                distinctQueries.add(query);
+            }
+            indexes[i] = index;
+        }
+
+        QueryResultOrError[] distinctResults = new QueryResultOrError[distinctQueries.size()];
+        if (pool != null && distinctQueries.size() > 1) {
+            pool.submit(() -> IntStream.range(0, distinctResults.length).parallel()
+                    .forEach(i -> distinctResults[i] = queryOrError(metadata, distinctQueries.get(i))))
+                    .join();
+        } else {
+            for (int i = 0; i < distinctResults.length; i++) {
+                distinctResults[i] = queryOrError(metadata, distinctQueries.get(i));
+            }
+        }
+
+        List<QueryResultOrError> results = new ArrayList<>(indexes.length);
+        for (int index : indexes) {
+            results.add(distinctResults[index]);
+        }
+        return results;
+    }
+
+    private QueryResultOrError queryOrError(Metadata metadata, Map<String, String> queryAttrs) {
+        try {
+            List<RuleAttribute> queryAttributes = Rule.queryFromMap(queryAttrs, metadata.attributeDefinitions, nameTransformator, valueTransformator);
+            return QueryResultOrError.result(query(metadata, queryAttributes));
+        } catch (RuleEngineException e) {
+            return QueryResultOrError.error(e);
+        }
+    }
+
+    public AttributeHandle attributeHandle(String attributeName) throws InvalidRuleStructure {
+        requireNonNull(attributeName);
+        String name = nameTransformator != null ? nameTransformator.apply(attributeName) : attributeName;
+        AttributeDefinition attributeDefinition = metadataRef.get().attributeDefinitions.get(name);
+        if (attributeDefinition == null) {
+            throw new InvalidRuleStructure("Unknown rule attribute: " + name);
+        }
+        return new AttributeHandle(attributeDefinition);
+    }
+
+    public QueryBuilder newQueryBuilder() {
+        return new QueryBuilder(valueTransformator);
     }
 
     public Function<String, String> getNameTransformator() {
@@ -138,6 +573,117 @@ public class RuleEngine {
         return valueTransformator;
     }
 
+    public EvaluationMode getEvaluationMode() {
+        return evaluationMode;
+    }
+
+    public StorageMode getStorageMode() {
+        return storageMode;
+    }
+
+    /**
+     * Enables cache of query results which keeps at most {@code maximumSize} queries. The cache is dropped
+     * every time rules or attribute definitions change.
+     */
+    public void enableQueryCache(int maximumSize) {
+        this.queryCache = new QueryCache(maximumSize);
+    }
+
+    public void disableQueryCache() {
+        this.queryCache = null;
+    }
+
+    public QueryCacheStats getQueryCacheStats() {
+        QueryCache cache = queryCache;
+        return cache != null ? cache.stats() : new QueryCacheStats(0, 0, 0, 0);
+    }
+
+    /**
+     * Sets policy for parsing of rules passed to setRules, setRulesAndAttributeDefinitions and upsertRules and of
+     * rules read by loadRules.
+     * By default all rules are parsed in the calling thread and all errors are reported.
+     */
+    public void setParsePolicy(ParsePolicy parsePolicy) {
+        this.parsePolicy = requireNonNull(parsePolicy);
+    }
+
+    public ParsePolicy getParsePolicy() {
+        return parsePolicy;
+    }
+
+    /**
+     * Sets policy for rules with the same weight which can match one query and applies it to the current rules.
+     * With {@link AmbiguityPolicy#REJECT_RULES} and {@link AmbiguityPolicy#TIE_BREAK_BY_ID} a query stops
+     * at the first matched heaviest rule and never throws {@link MultiplyRulesFound}.
+     *
+     * @throws AmbiguousRulesFound if rules are rejected, the policy isn't changed then
+     */
+    public void setAmbiguityPolicy(AmbiguityPolicy ambiguityPolicy) {
+        requireNonNull(ambiguityPolicy);
+        reload(current -> current.ambiguityPolicy == ambiguityPolicy
+                ? current
+                : current.withAmbiguityPolicy(ambiguityPolicy, evaluationMode, storageMode));
+    }
+
+    public AmbiguityPolicy getAmbiguityPolicy() {
+        return metadataRef.get().ambiguityPolicy;
+    }
+
+    /**
+     * Sets listener which receives query and reload metrics, null disables metrics.
+     */
+    public void setListener(RuleEngineListener listener) {
+        this.listener = listener;
+    }
+
+    public RuleEngineListener getListener() {
+        return listener;
+    }
+
+    Metadata getMetadata() {
+        return metadataRef.get();
+    }
+
+    // every change of metadata goes through here: the update is applied to the current metadata and repeated
+    // if metadata was changed by another thread meanwhile, so concurrent reloads never lose each other's changes
+    private void reload(UnaryOperator<Metadata> update) {
+        RuleEngineListener listener = this.listener;
+        long start = listener != null ? System.nanoTime() : 0;
+        Metadata current;
+        Metadata metadata;
+        try {
+            do {
+                current = metadataRef.get();
+                metadata = update.apply(current);
+                if (metadata != current) {
+                    // not published until compareAndSet succeeds
+                    metadata.version = current.version + 1;
+                }
+            } while (!metadataRef.compareAndSet(current, metadata));
+        } catch (RuntimeException e) {
+            if (listener != null) {
+                listener.reloadFailed(System.nanoTime() - start, e);
+            }
+            throw e;
+        }
+
+        QueryCache cache = queryCache;
+        if (cache != null && metadata != current) {
+            cache.invalidate(metadata);
+        }
+        if (listener != null) {
+            listener.rulesReloaded(System.nanoTime() - start, metadata.rules.size());
+        }
+    }
+
+    // reported after the reload, so retries of the reload don't report skipped rules twice
+    private void reportSkipped(int rulesCount) {
+        RuleEngineListener listener = this.listener;
+        if (listener != null && rulesCount > 0) {
+            listener.invalidRulesSkipped(rulesCount);
+        }
+    }
+
     public static void validateRules(List<Rule> rules, Map<String, AttributeDefinition> attributeDefinitions) {
         Set<String> definitionsNames = attributeDefinitions.keySet();
         for (Rule rule : rules) {
@@ -155,14 +701,65 @@ public class RuleEngine {
         if (isEmpty(idRuleMap)) {
             return emptyList();
         }
+        return Arrays.asList(parseRules(attributeDefinitions, idRuleMap, Integer.MAX_VALUE, parsePolicy.getPool()));
+    }
+
+    // parses rules according to the parse policy, returns valid rules or throws exception with found errors,
+    // the number of skipped invalid rules is set to skipped
+    private List<Rule> parseValidRules(Map<String, AttributeDefinition> attributeDefinitions,
+                                       Map<String, String> idRuleMap, AtomicInteger skipped) throws RuleEngineException {
+        skipped.set(0);
+        if (isEmpty(idRuleMap)) {
+            return emptyList();
+        }
+
+        ParsePolicy policy = this.parsePolicy;
+        RuleOrError[] ruleOrErrors = parseRules(attributeDefinitions, idRuleMap, policy.getMaxErrors(), policy.getPool());
+        List<Rule> rules = new ArrayList<>(ruleOrErrors.length);
+        List<RuleOrError> errors = new ArrayList<>();
+        for (RuleOrError ruleOrError : ruleOrErrors) {
+            if (ruleOrError == null) {
+                // not parsed, the errors limit was reached
+                continue;
+            }
+            if (ruleOrError.isRule()) {
+                rules.add(ruleOrError.getRule());
+            } else if (errors.size() < policy.getMaxErrors()) {
+                errors.add(ruleOrError);
+            }
+        }
 
-        List<RuleOrError> results = new ArrayList<>(idRuleMap.size());
-        for (Map.Entry<String, String> entry : idRuleMap.entrySet()) {
+        if (!errors.isEmpty() && !policy.isSkipInvalid()) {
+            throw errorsException(errors);
+        }
+        skipped.set(errors.size());
+        return rules;
+    }
+
+    // rules which are not parsed after maxErrors errors are found are left null
+    private RuleOrError[] parseRules(Map<String, AttributeDefinition> attributeDefinitions, Map<String, String> idRuleMap,
+                                     int maxErrors, ForkJoinPool pool) {
+        List<Map.Entry<String, String>> entries = new ArrayList<>(idRuleMap.entrySet());
+        RuleOrError[] results = new RuleOrError[entries.size()];
+        AtomicInteger errorsCount = new AtomicInteger();
+        IntConsumer parse = i -> {
+            if (errorsCount.get() >= maxErrors) {
+                return;
+            }
+            Map.Entry<String, String> entry = entries.get(i);
             try {
-                Rule rule = parseRule(attributeDefinitions, entry.getKey(), entry.getValue());
-                results.add(RuleOrError.rule(rule));
+                results[i] = RuleOrError.rule(parseRule(attributeDefinitions, entry.getKey(), entry.getValue()));
             } catch (Exception e) {
-                results.add(RuleOrError.error(entry.getKey(), entry.getValue(), e));
+                results[i] = RuleOrError.error(entry.getKey(), entry.getValue(), e);
+                errorsCount.incrementAndGet();
+            }
+        };
+
+        if (pool != null && results.length > 1) {
+            pool.submit(() -> IntStream.range(0, results.length).parallel().forEach(parse)).join();
+        } else {
+            for (int i = 0; i < results.length; i++) {
+                parse.accept(i);
             }
         }
         return results;
@@ -172,44 +769,347 @@ public class RuleEngine {
         return Rule.ruleFromString(id, ruleStr, attributeDefinitions, nameTransformator, valueTransformator);
     }
 
-    private String query(List<Rule> currentRules, List<RuleAttribute> queryAttributes) {
-        List<RuleResult> possibleResults = new ArrayList<>();
-        RuleResult notEqualResult = RuleResult.notEqual(null);
-        possibleResults.add(notEqualResult);
-        Set<String> queryAttributeNames = queryAttributes.stream().map(RuleAttribute::getName).collect(Collectors.toSet());
+    String query(Metadata metadata, List<RuleAttribute> queryAttributes) {
+        QueryScratch scratch = QueryScratch.get();
+        evaluate(metadata, queryAttributes, scratch);
+        return result(metadata, scratch.resultPositions, scratch.resultCount);
+    }
 
-        for (Rule rule : currentRules) {
-            RuleResult ruleResult = rule.execute(queryAttributes, queryAttributeNames);
-            if (ruleResult.getStatus() == RuleResult.Status.EQUAL) {
-                if (possibleResults.get(0).getRuleWeight() <= ruleResult.getRuleWeight()) {
-                    possibleResults.add(0, ruleResult);
-                }
+    // puts positions of the heaviest matched rules into scratch result positions
+    private void evaluate(Metadata metadata, List<RuleAttribute> queryAttributes, QueryScratch scratch) {
+        RuleEngineListener listener = this.listener;
+        long start = listener != null ? System.nanoTime() : 0;
+        scratch.evaluatedRules = 0;
+        metadata.encodedRules.encodeQuery(queryAttributes, scratch);
+
+        int[] positions;
+        int count;
+        QueryCache cache = queryCache;
+        if (cache != null) {
+            QueryCache.Key key = scratch.cacheKey;
+            key.project(metadata.encodedRules, scratch);
+            positions = cache.get(metadata, key);
+            if (positions == null) {
+                count = match(metadata, scratch);
+                positions = Arrays.copyOf(scratch.matches.array(), count);
+                cache.put(metadata, key.copy(), positions);
             }
+            count = positions.length;
+        } else {
+            count = match(metadata, scratch);
+            positions = scratch.matches.array();
         }
 
-        if (possibleResults.size() > 1) {
-            if (possibleResults.get(0).getRuleWeight() == possibleResults.get(1).getRuleWeight()) {
-                List<RuleResult> multiplyRulesFound = possibleResults.stream()
-                        .filter(ruleResult -> ruleResult.getRuleWeight() == possibleResults.get(0).getRuleWeight())
-                        .collect(Collectors.toList());
-                throw new MultiplyRulesFound("Multiply rules found.", multiplyRulesFound);
-            }
-        } else if (notEqualResult.equals(possibleResults.get(0))) {
+        if (listener != null) {
+            report(listener, metadata, positions, count, System.nanoTime() - start, scratch.evaluatedRules);
+        }
+        scratch.resultPositions = positions;
+        scratch.resultCount = count;
+    }
+
+    QueryOutcome queryOutcome(Metadata metadata, List<RuleAttribute> queryAttributes, QueryOutcome outcome) {
+        QueryScratch scratch = QueryScratch.get();
+        evaluate(metadata, queryAttributes, scratch);
+        outcome.set(metadata, scratch.resultPositions, scratch.resultCount);
+        return outcome;
+    }
+
+    private static void report(RuleEngineListener listener, Metadata metadata, int[] positions, int count,
+                               long durationNanos, int evaluatedRules) {
+        listener.queryEvaluated(durationNanos, evaluatedRules);
+        if (count == 0) {
+            listener.noRuleMatched();
+        } else if (count > 1) {
+            listener.multiplyRulesFound(count);
+        } else {
+            listener.ruleMatched(metadata.getRuleId(positions[0]));
+        }
+    }
+
+    private static int match(Metadata metadata, QueryScratch scratch) {
+        if (metadata.firstMatch) {
+            return matchTopK(metadata, scratch, 1);
+        }
+        return metadata.tree != null ? metadata.tree.match(scratch) : matchIndexed(metadata, scratch);
+    }
+
+    private static int matchTopK(Metadata metadata, QueryScratch scratch, int k) {
+        return metadata.tree != null ? metadata.tree.matchTopK(scratch, k) : matchTopKIndexed(metadata, scratch, k);
+    }
+
+    private static String result(Metadata metadata, int[] positions, int count) {
+        if (count == 0) {
             return null;
+        } else if (count > 1) {
+            throw new MultiplyRulesFound("Multiply rules found.", ruleResults(metadata, positions, count));
+        }
+        return metadata.getResult(positions[0]);
+    }
+
+    private static List<RuleResult> ruleResults(Metadata metadata, int[] positions, int count) {
+        List<RuleResult> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Rule rule = metadata.rules.get(positions[i]);
+            results.add(new RuleResult(rule, RuleResult.Status.EQUAL, rule.getWeight(), rule.getResult()));
+        }
+        return results;
+    }
+
+    private List<RuleResult> queryTopK(Metadata metadata, List<RuleAttribute> queryAttributes, int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("k should be positive");
+        }
+        RuleEngineListener listener = this.listener;
+        long start = listener != null ? System.nanoTime() : 0;
+        QueryScratch scratch = QueryScratch.get();
+        scratch.evaluatedRules = 0;
+        metadata.encodedRules.encodeQuery(queryAttributes, scratch);
+        int count = matchTopK(metadata, scratch, k);
+        int[] positions = scratch.matches.array();
+
+        if (listener != null) {
+            // several returned rules are the expected result, not an ambiguity
+            listener.queryEvaluated(System.nanoTime() - start, scratch.evaluatedRules);
+            if (count == 0) {
+                listener.noRuleMatched();
+            }
+            for (int i = 0; i < count; i++) {
+                listener.ruleMatched(metadata.getRuleId(positions[i]));
+            }
+        }
+        return ruleResults(metadata, positions, count);
+    }
+
+    // puts positions of the heaviest matched rules into scratch matches and returns their count
+    private static int matchIndexed(Metadata metadata, QueryScratch scratch) {
+        EncodedRules encodedRules = metadata.encodedRules;
+        int candidatesCount = metadata.index.candidates(scratch);
+        boolean allRules = candidatesCount == RuleIndex.ALL_RULES;
+        if (allRules) {
+            candidatesCount = encodedRules.getRulesCount();
+        }
+
+        RuleIndex.IntList matches = scratch.matches;
+        matches.clear();
+        long bestWeight = -1;
+        for (int i = 0; i < candidatesCount; i++) {
+            int position = allRules ? i : scratch.candidates[i];
+            // rules are sorted by weight, so the rest can't beat or tie the best found one
+            if (encodedRules.getWeight(position) < bestWeight) {
+                break;
+            }
+            scratch.evaluatedRules++;
+            if (encodedRules.matches(position, scratch)) {
+                bestWeight = encodedRules.getWeight(position);
+                matches.add(position);
+            }
+        }
+        return matches.size();
+    }
+
+    // candidates are sorted by position, so the first k matched are the heaviest ones
+    private static int matchTopKIndexed(Metadata metadata, QueryScratch scratch, int k) {
+        EncodedRules encodedRules = metadata.encodedRules;
+        int candidatesCount = metadata.index.candidates(scratch);
+        boolean allRules = candidatesCount == RuleIndex.ALL_RULES;
+        if (allRules) {
+            candidatesCount = encodedRules.getRulesCount();
         }
 
-        return possibleResults.get(0).getResultValue();
+        RuleIndex.IntList matches = scratch.matches;
+        matches.clear();
+        for (int i = 0; i < candidatesCount && matches.size() < k; i++) {
+            int position = allRules ? i : scratch.candidates[i];
+            scratch.evaluatedRules++;
+            if (encodedRules.matches(position, scratch)) {
+                matches.add(position);
+            }
+        }
+        return matches.size();
     }
 
     static class Metadata {
-        static final Metadata EMPTY_METADATA = new Metadata(emptyMap(), emptyList());
+        static final Metadata EMPTY_METADATA = new Metadata(emptyMap(), emptyList(), EvaluationMode.INDEXED,
+                StorageMode.OBJECTS, AmbiguityPolicy.FAIL_ON_QUERY);
+        private static final int MAX_REPORTED_AMBIGUITIES = 100;
+        // rules changed by updates since the last build, as a part of all rules, after which rules are built again
+        private static final int MAX_CHANGED_PART = 4;
+        // query relies on descending weight order to stop evaluation early, ties are ordered by id, so the tie break
+        // and the order of multiply found rules don't depend on input order
+        static final Comparator<Rule> RULE_ORDER = Comparator.comparingLong(Rule::getWeight).reversed()
+                .thenComparing(Rule::getId, Metadata::compareIds);
 
         private final Map<String, AttributeDefinition> attributeDefinitions;
         private final List<Rule> rules;
+        // null for object storage
+        private final CompactRules compactRules;
+        private final EncodedRules encodedRules;
+        private final RuleIndex index;
+        private final DiscriminationTree tree;
+        // assigned by reload before the metadata is published
+        private long version;
+        private final AmbiguityPolicy ambiguityPolicy;
+        // the heaviest matched rule is the only result, rules of the same weight are either not ambiguous or ordered
+        private final boolean firstMatch;
+        // rules removed and added by updates since the metadata was built from all rules
+        private final int changedRules;
+        // hash codes of rule ids by position, so rules are found by id without comparing ids of all rules
+        private final int[] idHashes;
 
-        Metadata(Map<String, AttributeDefinition> attributeDefinitions, List<Rule> rules) {
+        Metadata(Map<String, AttributeDefinition> attributeDefinitions, List<Rule> rules, EvaluationMode evaluationMode,
+                 StorageMode storageMode, AmbiguityPolicy ambiguityPolicy) {
+            List<Rule> sortedRules = sortByWeight(rules);
             this.attributeDefinitions = attributeDefinitions;
-            this.rules = rules;
+            this.encodedRules = new EncodedRules(sortedRules);
+            this.compactRules = storageMode == StorageMode.COMPACT ? CompactRules.of(sortedRules, encodedRules) : null;
+            this.rules = compactRules != null ? compactRules : sortedRules;
+            this.index = evaluationMode == EvaluationMode.INDEXED ? new RuleIndex(encodedRules) : null;
+            this.tree = evaluationMode == EvaluationMode.COMPILED ? new DiscriminationTree(encodedRules) : null;
+            this.ambiguityPolicy = ambiguityPolicy;
+            this.firstMatch = checkAmbiguity(ambiguityPolicy, null);
+            this.changedRules = 0;
+            this.idHashes = idHashes();
+        }
+
+        // rules of the same weight should be ordered by id
+        Metadata(Map<String, AttributeDefinition> attributeDefinitions, CompactRules compactRules,
+                 EvaluationMode evaluationMode, StorageMode storageMode, AmbiguityPolicy ambiguityPolicy) {
+            this.attributeDefinitions = attributeDefinitions;
+            this.encodedRules = compactRules.getEncodedRules();
+            this.compactRules = storageMode == StorageMode.COMPACT ? compactRules : null;
+            this.rules = this.compactRules != null ? compactRules : new ArrayList<>(compactRules);
+            this.index = evaluationMode == EvaluationMode.INDEXED ? new RuleIndex(encodedRules) : null;
+            this.tree = evaluationMode == EvaluationMode.COMPILED ? new DiscriminationTree(encodedRules) : null;
+            this.ambiguityPolicy = ambiguityPolicy;
+            this.firstMatch = checkAmbiguity(ambiguityPolicy, null);
+            this.changedRules = 0;
+            this.idHashes = idHashes();
+        }
+
+        // applies the changes to the previous metadata built for the same modes and ambiguity policy
+        private Metadata(Metadata previous, RuleChanges changes) {
+            this.attributeDefinitions = previous.attributeDefinitions;
+            this.encodedRules = new EncodedRules(previous.encodedRules, changes);
+            this.compactRules = previous.compactRules != null ? previous.compactRules.update(encodedRules, changes) : null;
+            this.rules = compactRules != null ? compactRules : updateRules(previous.rules, changes);
+            this.index = previous.index != null ? RuleIndex.update(previous.index, encodedRules, changes) : null;
+            this.tree = previous.tree != null ? DiscriminationTree.update(previous.tree, encodedRules, changes) : null;
+            this.ambiguityPolicy = previous.ambiguityPolicy;
+            // rules of the previous metadata were checked already, only pairs with added rules can be ambiguous
+            this.firstMatch = checkAmbiguity(ambiguityPolicy, changes.getAddedPositions());
+            this.changedRules = previous.changedRules + changes.size();
+            this.idHashes = updateIdHashes(previous.idHashes, changes);
+        }
+
+        /**
+         * Removes rules with the given ids, unknown ids are ignored, and adds rules. A small update reuses
+         * the previous encoded rules with their dictionaries and the index or the tree, so it costs about as much as
+         * the changed rules plus copying arrays of the kept ones. Large updates, updates with a new attribute and
+         * updates of metadata built for other modes are built from all rules, which also drops values of removed
+         * rules from the dictionaries.
+         */
+        static Metadata update(Metadata previous, Set<String> removedIds, List<Rule> addedRules,
+                               EvaluationMode evaluationMode, StorageMode storageMode, AmbiguityPolicy ambiguityPolicy) {
+            boolean sameModes = (previous.index != null) == (evaluationMode == EvaluationMode.INDEXED)
+                    && (previous.tree != null) == (evaluationMode == EvaluationMode.COMPILED)
+                    && (previous.compactRules != null) == (storageMode == StorageMode.COMPACT)
+                    && previous.ambiguityPolicy == ambiguityPolicy;
+            long changed = (long) previous.changedRules + removedIds.size() + addedRules.size();
+            if (sameModes && changed <= previous.rules.size() / MAX_CHANGED_PART
+                    && previous.encodedRules.hasAttributes(addedRules)) {
+                RuleChanges changes = new RuleChanges(previous.encodedRules, previous::getRuleId,
+                        previous.rulePositions(removedIds, removedIds.size()), addedRules);
+                return new Metadata(previous, changes);
+            }
+            List<Rule> rules = previous.rulesExcept(removedIds, addedRules.size());
+            rules.addAll(addedRules);
+            return new Metadata(previous.attributeDefinitions, rules, evaluationMode, storageMode, ambiguityPolicy);
+        }
+
+        // kept rules at their new positions and added rules between them
+        private static List<Rule> updateRules(List<Rule> previous, RuleChanges changes) {
+            Rule[] rules = new Rule[changes.getRulesCount()];
+            for (int position = 0; position < previous.size(); position++) {
+                if (changes.newPosition(position) != RuleChanges.REMOVED) {
+                    rules[changes.newPosition(position)] = previous.get(position);
+                }
+            }
+            int[] addedPositions = changes.getAddedPositions();
+            for (int i = 0; i < addedPositions.length; i++) {
+                rules[addedPositions[i]] = changes.getAddedRules().get(i);
+            }
+            return new ArrayList<>(Arrays.asList(rules));
+        }
+
+        private int[] idHashes() {
+            int[] hashes = new int[rules.size()];
+            for (int position = 0; position < hashes.length; position++) {
+                hashes[position] = Objects.hashCode(getRuleId(position));
+            }
+            return hashes;
+        }
+
+        private static int[] updateIdHashes(int[] previous, RuleChanges changes) {
+            int[] hashes = new int[changes.getRulesCount()];
+            for (int position = 0; position < previous.length; position++) {
+                if (changes.newPosition(position) != RuleChanges.REMOVED) {
+                    hashes[changes.newPosition(position)] = previous[position];
+                }
+            }
+            int[] addedPositions = changes.getAddedPositions();
+            for (int i = 0; i < addedPositions.length; i++) {
+                hashes[addedPositions[i]] = Objects.hashCode(changes.getAddedRules().get(i).getId());
+            }
+            return hashes;
+        }
+
+        Metadata withAmbiguityPolicy(AmbiguityPolicy ambiguityPolicy, EvaluationMode evaluationMode,
+                                     StorageMode storageMode) {
+            return compactRules != null
+                    ? new Metadata(attributeDefinitions, compactRules, evaluationMode, storageMode, ambiguityPolicy)
+                    : new Metadata(attributeDefinitions, rules, evaluationMode, storageMode, ambiguityPolicy);
+        }
+
+        // only pairs with rules at the given positions are checked, all pairs when positions are null
+        private boolean checkAmbiguity(AmbiguityPolicy ambiguityPolicy, int[] positions) {
+            if (ambiguityPolicy == AmbiguityPolicy.REJECT_RULES) {
+                List<int[]> pairs = positions != null
+                        ? AmbiguityAnalysis.ambiguousPairs(encodedRules, positions, MAX_REPORTED_AMBIGUITIES)
+                        : AmbiguityAnalysis.ambiguousPairs(encodedRules, MAX_REPORTED_AMBIGUITIES);
+                if (!pairs.isEmpty()) {
+                    throw ambiguousRulesException(pairs);
+                }
+            }
+            return ambiguityPolicy != AmbiguityPolicy.FAIL_ON_QUERY;
+        }
+
+        private AmbiguousRulesFound ambiguousRulesException(List<int[]> pairs) {
+            List<List<String>> ids = new ArrayList<>(pairs.size());
+            StringBuilder errorMsg = new StringBuilder("Rules with the same weight can match the same query: ");
+            for (int i = 0; i < pairs.size(); i++) {
+                String first = getRuleId(pairs.get(i)[0]);
+                String second = getRuleId(pairs.get(i)[1]);
+                if (i > 0) {
+                    errorMsg.append(", ");
+                }
+                errorMsg.append(first).append(" and ").append(second);
+                ids.add(Arrays.asList(first, second));
+            }
+            return new AmbiguousRulesFound(errorMsg.toString(), ids);
+        }
+
+        private static List<Rule> sortByWeight(List<Rule> rules) {
+            List<Rule> sortedRules = new ArrayList<>(rules);
+            sortedRules.sort(RULE_ORDER);
+            return sortedRules;
+        }
+
+        static int compareIds(String id, String other) {
+            return Comparator.<String>nullsFirst(Comparator.naturalOrder()).compare(id, other);
+        }
+
+        long getVersion() {
+            return version;
         }
 
         Map<String, AttributeDefinition> getAttributeDefinitions() {
@@ -219,6 +1119,56 @@ public class RuleEngine {
         List<Rule> getRules() {
             return rules;
         }
+
+        // id and result by position don't create rules of compact storage
+        String getRuleId(int position) {
+            return compactRules != null ? compactRules.getId(position) : rules.get(position).getId();
+        }
+
+        String getResult(int position) {
+            return compactRules != null ? compactRules.getResult(position) : rules.get(position).getResult();
+        }
+
+        boolean containsRuleId(Set<String> ids) {
+            return rulePositions(ids, 1).length > 0;
+        }
+
+        // ascending positions of at most limit rules with the given ids, only ids with a matching hash code are
+        // compared, so rules of compact storage are not created
+        private int[] rulePositions(Set<String> ids, int limit) {
+            int[] hashes = new int[ids.size()];
+            int i = 0;
+            for (String id : ids) {
+                hashes[i++] = Objects.hashCode(id);
+            }
+            Arrays.sort(hashes);
+            RuleIndex.IntList positions = new RuleIndex.IntList();
+            for (int position = 0; position < idHashes.length && positions.size() < limit; position++) {
+                if (Arrays.binarySearch(hashes, idHashes[position]) >= 0 && ids.contains(getRuleId(position))) {
+                    positions.add(position);
+                }
+            }
+            return positions.toArray();
+        }
+
+        // rules without the given ids and room for extra rules, only kept rules of compact storage are created
+        List<Rule> rulesExcept(Set<String> ids, int extraCapacity) {
+            List<Rule> kept = new ArrayList<>(rules.size() + extraCapacity);
+            for (int position = 0; position < rules.size(); position++) {
+                if (!ids.contains(getRuleId(position))) {
+                    kept.add(rules.get(position));
+                }
+            }
+            return kept;
+        }
+
+        EncodedRules getEncodedRules() {
+            return encodedRules;
+        }
+
+        RuleIndex getIndex() {
+            return index;
+        }
     }
 
 }
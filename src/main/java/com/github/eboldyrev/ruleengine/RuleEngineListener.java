@@ -0,0 +1,38 @@
+package com.github.eboldyrev.ruleengine;
+
+/**
+ * Receives metrics of a {@link RuleEngine}. Methods are called synchronously on the querying or reloading thread,
+ * so implementations should be fast and thread safe. Queries aren't measured when no listener is set.
+ */
+public interface RuleEngineListener {
+
+    /**
+     * Called after every query evaluation.
+     *
+     * @param durationNanos   time spent on evaluation of the parsed query
+     * @param evaluatedRules  number of rules checked against the query, 0 when the result was taken from the cache
+     */
+    default void queryEvaluated(long durationNanos, int evaluatedRules) {
+    }
+
+    default void ruleMatched(String ruleId) {
+    }
+
+    default void noRuleMatched() {
+    }
+
+    default void multiplyRulesFound(int rulesCount) {
+    }
+
+    default void rulesReloaded(long durationNanos, int rulesCount) {
+    }
+
+    default void reloadFailed(long durationNanos, RuntimeException error) {
+    }
+
+    /**
+     * Called after a reload which skipped invalid rules according to {@link ParsePolicy#skipInvalid()}.
+     */
+    default void invalidRulesSkipped(int rulesCount) {
+    }
+}
@@ -0,0 +1,117 @@
+package com.github.eboldyrev.ruleengine;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link RuleEngineListener} which accumulates counters. Rules which are never reported by {@link #getRuleHits()}
+ * haven't matched any query.
+ */
+public class RuleEngineMetrics implements RuleEngineListener {
+
+    private final LongAdder queryCount = new LongAdder();
+    private final LongAdder queryNanos = new LongAdder();
+    private final LongAdder evaluatedRules = new LongAdder();
+    private final LongAdder noMatchCount = new LongAdder();
+    private final LongAdder multiplyRulesFoundCount = new LongAdder();
+    private final LongAdder reloadCount = new LongAdder();
+    private final LongAdder reloadNanos = new LongAdder();
+    private final LongAdder reloadErrorCount = new LongAdder();
+    private final LongAdder skippedRuleCount = new LongAdder();
+    private final ConcurrentHashMap<String, LongAdder> ruleHits = new ConcurrentHashMap<>();
+
+    @Override
+    public void queryEvaluated(long durationNanos, int evaluatedRules) {
+        this.queryCount.increment();
+        this.queryNanos.add(durationNanos);
+        this.evaluatedRules.add(evaluatedRules);
+    }
+
+    @Override
+    public void ruleMatched(String ruleId) {
+        LongAdder hits = ruleHits.get(ruleId);
+        if (hits == null) {
+            hits = ruleHits.computeIfAbsent(ruleId, id -> new LongAdder());
+        }
+        hits.increment();
+    }
+
+    @Override
+    public void noRuleMatched() {
+        noMatchCount.increment();
+    }
+
+    @Override
+    public void multiplyRulesFound(int rulesCount) {
+        multiplyRulesFoundCount.increment();
+    }
+
+    @Override
+    public void rulesReloaded(long durationNanos, int rulesCount) {
+        reloadCount.increment();
+        reloadNanos.add(durationNanos);
+    }
+
+    @Override
+    public void reloadFailed(long durationNanos, RuntimeException error) {
+        reloadErrorCount.increment();
+        reloadNanos.add(durationNanos);
+    }
+
+    @Override
+    public void invalidRulesSkipped(int rulesCount) {
+        skippedRuleCount.add(rulesCount);
+    }
+
+    public long getQueryCount() {
+        return queryCount.sum();
+    }
+
+    public long getTotalQueryNanos() {
+        return queryNanos.sum();
+    }
+
+    public long getEvaluatedRules() {
+        return evaluatedRules.sum();
+    }
+
+    public long getNoMatchCount() {
+        return noMatchCount.sum();
+    }
+
+    public long getMultiplyRulesFoundCount() {
+        return multiplyRulesFoundCount.sum();
+    }
+
+    public long getReloadCount() {
+        return reloadCount.sum();
+    }
+
+    public long getTotalReloadNanos() {
+        return reloadNanos.sum();
+    }
+
+    public long getReloadErrorCount() {
+        return reloadErrorCount.sum();
+    }
+
+    public long getSkippedRuleCount() {
+        return skippedRuleCount.sum();
+    }
+
+    public long getRuleHits(String ruleId) {
+        LongAdder hits = ruleHits.get(ruleId);
+        return hits != null ? hits.sum() : 0;
+    }
+
+    /**
+     * Returns hits by rule id of rules which matched at least once.
+     */
+    public Map<String, Long> getRuleHits() {
+        Map<String, Long> result = new HashMap<>((int) (ruleHits.size() / 0.75) + 1);
+        ruleHits.forEach((id, hits) -> result.put(id, hits.sum()));
+        return result;
+    }
+}
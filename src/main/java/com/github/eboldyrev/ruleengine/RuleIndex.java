@@ -0,0 +1,560 @@
+package com.github.eboldyrev.ruleengine;
+
+import com.github.eboldyrev.ruleengine.attributes.NumericRange;
+
+import java.util.Arrays;
+
+/**
+ * Inverted index over rule conditions. For every attribute used in a condition other than any match it keeps
+ * posting lists of rule positions. Exact values are kept by value id, a set adds the rule to the lists of its members.
+ * Starts with values are kept in a prefix trie and ends with values in a trie of reversed values.
+ * Ranges are kept in a {@link RangeIndex} and globs by value id.
+ * Rules without a condition on the attribute or with any match are kept in one more list.
+ * Posting lists keep sorted rule numbers, which are positions of the encoded rules the index was built from
+ * until the index is updated, see {@link RulePositions}.
+ */
+class RuleIndex {
+    static final int ALL_RULES = -1;
+    private static final int[] NO_POSITIONS = new int[0];
+
+    private final int[] attributeIds;
+    private final AttributeIndex[] attributeIndexes;
+    private final RulePositions positions;
+
+    RuleIndex(EncodedRules encodedRules) {
+        AttributeIndexBuilder[] builders = new AttributeIndexBuilder[encodedRules.getAttributesCount()];
+        int indexedCount = 0;
+        for (int r = 0; r < encodedRules.getRulesCount(); r++) {
+            for (int c = encodedRules.getConditionStart(r); c < encodedRules.getConditionEnd(r); c++) {
+                int attributeId = encodedRules.getConditionAttribute(c);
+                if (encodedRules.getConditionType(c) != EncodedRules.ANY && builders[attributeId] == null) {
+                    builders[attributeId] = new AttributeIndexBuilder(encodedRules.getValuesCount(attributeId));
+                    indexedCount++;
+                }
+            }
+        }
+
+        this.attributeIds = new int[indexedCount];
+        for (int attributeId = 0, i = 0; attributeId < builders.length; attributeId++) {
+            if (builders[attributeId] != null) {
+                attributeIds[i++] = attributeId;
+            }
+        }
+
+        for (int r = 0; r < encodedRules.getRulesCount(); r++) {
+            addRule(encodedRules, r, r, attributeIds, builders);
+        }
+
+        this.attributeIndexes = new AttributeIndex[indexedCount];
+        for (int i = 0; i < indexedCount; i++) {
+            attributeIndexes[i] = builders[attributeIds[i]].build();
+        }
+        this.positions = new RulePositions(encodedRules.getRulesCount());
+    }
+
+    private RuleIndex(int[] attributeIds, AttributeIndex[] attributeIndexes, RulePositions positions) {
+        this.attributeIds = attributeIds;
+        this.attributeIndexes = attributeIndexes;
+        this.positions = positions;
+    }
+
+    /**
+     * Applies the changes to the index of the previous rules, the encoded rules should be the changed ones.
+     * Numbers of added rules are appended to the lists of their conditions, other lists are shared with
+     * the previous index, and removed rules stay in the lists until the index is built again. The index is built
+     * again when an added rule has a condition on an attribute which isn't indexed yet.
+     */
+    static RuleIndex update(RuleIndex previous, EncodedRules encodedRules, RuleChanges changes) {
+        RulePositions positions = previous.positions.update(changes);
+        AttributeIndexBuilder[] added = new AttributeIndexBuilder[encodedRules.getAttributesCount()];
+        for (int attributeId : previous.attributeIds) {
+            added[attributeId] = new AttributeIndexBuilder(encodedRules.getValuesCount(attributeId));
+        }
+        int[] addedPositions = changes.getAddedPositions();
+        for (int i = 0; i < addedPositions.length; i++) {
+            int r = addedPositions[i];
+            for (int c = encodedRules.getConditionStart(r); c < encodedRules.getConditionEnd(r); c++) {
+                if (encodedRules.getConditionType(c) != EncodedRules.ANY
+                        && added[encodedRules.getConditionAttribute(c)] == null) {
+                    return new RuleIndex(encodedRules);
+                }
+            }
+            addRule(encodedRules, r, previous.positions.size() + i, previous.attributeIds, added);
+        }
+
+        AttributeIndex[] attributeIndexes = new AttributeIndex[previous.attributeIds.length];
+        for (int i = 0; i < attributeIndexes.length; i++) {
+            attributeIndexes[i] = previous.attributeIndexes[i].with(added[previous.attributeIds[i]]);
+        }
+        return new RuleIndex(previous.attributeIds, attributeIndexes, positions);
+    }
+
+    // adds the number of the rule at position r to the builders
+    private static void addRule(EncodedRules encodedRules, int r, int number, int[] attributeIds,
+                                AttributeIndexBuilder[] builders) {
+        for (int attributeId : attributeIds) {
+            builders[attributeId].constrained = false;
+        }
+        for (int c = encodedRules.getConditionStart(r); c < encodedRules.getConditionEnd(r); c++) {
+            int attributeId = encodedRules.getConditionAttribute(c);
+            int valueId = encodedRules.getConditionValue(c);
+            switch (encodedRules.getConditionType(c)) {
+                case EncodedRules.EXACT:
+                    builders[attributeId].addExact(valueId, number);
+                    break;
+                case EncodedRules.PREFIX:
+                    builders[attributeId].addPrefix(encodedRules.getValue(attributeId, valueId), number);
+                    break;
+                case EncodedRules.SUFFIX:
+                    builders[attributeId].addSuffix(encodedRules.getValue(attributeId, valueId), number);
+                    break;
+                case EncodedRules.RANGE:
+                    builders[attributeId].addRange(encodedRules.getRange(attributeId, valueId), number);
+                    break;
+                case EncodedRules.GLOB:
+                    builders[attributeId].addGlob(valueId, number);
+                    break;
+                case EncodedRules.SET:
+                    for (int memberId : encodedRules.getSetMembers(attributeId, valueId)) {
+                        builders[attributeId].addExact(memberId, number);
+                    }
+                    break;
+                default:
+            }
+        }
+        for (int attributeId : attributeIds) {
+            if (!builders[attributeId].constrained) {
+                builders[attributeId].unconstrained.add(number);
+            }
+        }
+    }
+
+    /**
+     * Puts sorted positions of rules which can match the query encoded by {@link EncodedRules#encodeQuery} into
+     * {@link QueryScratch#candidates} and returns their count, or returns {@link #ALL_RULES} when the index can't
+     * narrow the search and all rules have to be evaluated.
+     * Nothing is allocated once the scratch buffers have grown to the needed size.
+     */
+    int candidates(QueryScratch scratch) {
+        if (attributeIds.length == 0) {
+            return ALL_RULES;
+        }
+
+        PostingLists lists = scratch.postingLists;
+        lists.clear();
+        int[] starts = scratch.attributeStarts(attributeIds.length + 1);
+        int driver = 0;
+        int driverSize = Integer.MAX_VALUE;
+        for (int i = 0; i < attributeIds.length; i++) {
+            starts[i] = lists.size();
+            attributeIndexes[i].collect(attributeIds[i], scratch, lists);
+            int size = lists.totalLength(starts[i], lists.size());
+            if (size < driverSize) {
+                driver = i;
+                driverSize = size;
+            }
+        }
+        starts[attributeIds.length] = lists.size();
+
+        int count = union(lists, starts[driver], starts[driver + 1], scratch);
+        int[] candidates = scratch.candidates;
+        for (int i = 0; i < attributeIds.length && count > 0; i++) {
+            if (i == driver) {
+                continue;
+            }
+            int retained = 0;
+            for (int j = 0; j < count; j++) {
+                if (lists.contains(starts[i], starts[i + 1], candidates[j])) {
+                    candidates[retained++] = candidates[j];
+                }
+            }
+            count = retained;
+        }
+        return toPositions(count, scratch);
+    }
+
+    // replaces rule numbers of the candidates with ascending positions and drops removed rules
+    private int toPositions(int count, QueryScratch scratch) {
+        if (!positions.isRenumbered()) {
+            return count;
+        }
+        int[] candidates = scratch.candidates;
+        int kept = 0;
+        // numbers of the built rules keep position order, positions of added rules are sorted and merged with them
+        int built = -1;
+        for (int i = 0; i < count; i++) {
+            if (built < 0 && candidates[i] >= positions.getBuiltCount()) {
+                built = kept;
+            }
+            int position = positions.position(candidates[i]);
+            if (position != RulePositions.REMOVED) {
+                candidates[kept++] = position;
+            }
+        }
+        if (built < 0 || built == kept) {
+            return kept;
+        }
+        Arrays.sort(candidates, built, kept);
+        int[] merged = scratch.mergeBuffer(kept);
+        int i = 0;
+        int j = built;
+        int k = 0;
+        while (i < built || j < kept) {
+            merged[k++] = j == kept || (i < built && candidates[i] < candidates[j]) ? candidates[i++] : candidates[j++];
+        }
+        scratch.swapCandidatesAndMergeBuffer();
+        return kept;
+    }
+
+    // merges sorted lists [from, to) into scratch candidates without duplicates
+    private static int union(PostingLists lists, int from, int to, QueryScratch scratch) {
+        int[] first = lists.get(from);
+        int[] result = scratch.candidates(lists.totalLength(from, to));
+        System.arraycopy(first, 0, result, 0, first.length);
+        int count = first.length;
+
+        for (int l = from + 1; l < to; l++) {
+            int[] list = lists.get(l);
+            if (list.length == 0) {
+                continue;
+            }
+            int[] merged = scratch.mergeBuffer(count + list.length);
+            int i = 0;
+            int j = 0;
+            int k = 0;
+            while (i < count || j < list.length) {
+                int next;
+                if (j == list.length || (i < count && result[i] <= list[j])) {
+                    next = result[i++];
+                } else {
+                    next = list[j++];
+                }
+                if (k == 0 || merged[k - 1] != next) {
+                    merged[k++] = next;
+                }
+            }
+            scratch.swapCandidatesAndMergeBuffer();
+            result = merged;
+            count = k;
+        }
+        return count;
+    }
+
+    private static class AttributeIndex {
+        private final int[][] exact;
+        private final PrefixTrie prefixes;
+        private final PrefixTrie suffixes;
+        private final RangeIndex ranges;
+        // by value id, null when the attribute has no glob conditions
+        private final int[][] globs;
+        private final int[] unconstrained;
+
+        AttributeIndex(int[][] exact, PrefixTrie prefixes, PrefixTrie suffixes, RangeIndex ranges, int[][] globs,
+                       int[] unconstrained) {
+            this.exact = exact;
+            this.prefixes = prefixes;
+            this.suffixes = suffixes;
+            this.ranges = ranges;
+            this.globs = globs;
+            this.unconstrained = unconstrained;
+        }
+
+        // null value means that query doesn't have the attribute, so only rules without a condition on it can match
+        void collect(int attributeId, QueryScratch scratch, PostingLists postings) {
+            String value = scratch.queryValues[attributeId];
+            if (value != null) {
+                int valueId = scratch.queryValueIds[attributeId];
+                // values added by updates without an exact condition have no list
+                if (valueId != EncodedRules.UNKNOWN_VALUE && valueId < exact.length && exact[valueId] != null) {
+                    postings.add(exact[valueId]);
+                }
+                if (prefixes != null) {
+                    prefixes.collect(value, postings);
+                }
+                if (suffixes != null) {
+                    suffixes.collect(value, postings);
+                }
+                if (ranges != null) {
+                    ranges.collect(scratch.queryNumbers[attributeId], postings);
+                }
+                if (globs != null) {
+                    for (int i = scratch.globMatchStarts[attributeId]; i < scratch.globMatchEnds[attributeId]; i++) {
+                        postings.add(globs[scratch.globMatches[i]]);
+                    }
+                }
+            }
+            postings.add(unconstrained);
+        }
+
+        // index with the added rules, lists without them are shared
+        AttributeIndex with(AttributeIndexBuilder added) {
+            RangeIndex updatedRanges = ranges;
+            if (added.ranges != null) {
+                updatedRanges = ranges != null ? ranges.with(added.ranges) : added.ranges.build();
+            }
+            return new AttributeIndex(with(exact, added.exact, added.valuesCount),
+                    merge(prefixes, added.prefixes),
+                    merge(suffixes, added.suffixes),
+                    updatedRanges,
+                    added.globs != null ? with(globs, added.globs, added.valuesCount) : globs,
+                    RuleChanges.merge(unconstrained, added.unconstrained.toArray()));
+        }
+
+        // lists by value id with numbers of added rules appended
+        private static int[][] with(int[][] lists, IntList[] added, int valuesCount) {
+            if (added == null) {
+                return lists;
+            }
+            int[][] updated = lists == null ? new int[valuesCount][]
+                    : lists.length < valuesCount ? Arrays.copyOf(lists, valuesCount) : lists.clone();
+            for (int valueId = 0; valueId < added.length; valueId++) {
+                if (added[valueId] != null) {
+                    updated[valueId] = RuleChanges.merge(updated[valueId] != null ? updated[valueId] : NO_POSITIONS,
+                            added[valueId].toArray());
+                }
+            }
+            return updated;
+        }
+
+        private static PrefixTrie merge(PrefixTrie trie, PrefixTrie.Builder added) {
+            if (added == null) {
+                return trie;
+            }
+            return trie != null ? trie.merge(added.build()) : added.build();
+        }
+    }
+
+    private static class AttributeIndexBuilder {
+        private final int valuesCount;
+        // by value id, created with the first exact condition
+        private IntList[] exact;
+        private PrefixTrie.Builder prefixes;
+        private PrefixTrie.Builder suffixes;
+        private RangeIndex.Builder ranges;
+        private IntList[] globs;
+        private final IntList unconstrained = new IntList();
+        private boolean constrained;
+
+        AttributeIndexBuilder(int valuesCount) {
+            this.valuesCount = valuesCount;
+        }
+
+        void addExact(int valueId, int position) {
+            if (exact == null) {
+                exact = new IntList[valuesCount];
+            }
+            if (exact[valueId] == null) {
+                exact[valueId] = new IntList();
+            }
+            exact[valueId].add(position);
+            constrained = true;
+        }
+
+        void addPrefix(String value, int position) {
+            if (prefixes == null) {
+                prefixes = new PrefixTrie.Builder();
+            }
+            prefixes.add(value, position);
+            constrained = true;
+        }
+
+        void addSuffix(String value, int position) {
+            if (suffixes == null) {
+                suffixes = new PrefixTrie.Builder(true);
+            }
+            suffixes.add(value, position);
+            constrained = true;
+        }
+
+        void addRange(NumericRange range, int position) {
+            if (ranges == null) {
+                ranges = new RangeIndex.Builder();
+            }
+            ranges.add(range, position);
+            constrained = true;
+        }
+
+        void addGlob(int valueId, int position) {
+            if (globs == null) {
+                globs = new IntList[valuesCount];
+            }
+            if (globs[valueId] == null) {
+                globs[valueId] = new IntList();
+            }
+            globs[valueId].add(position);
+            constrained = true;
+        }
+
+        AttributeIndex build() {
+            return new AttributeIndex(exact != null ? toArrays(exact) : new int[valuesCount][],
+                    prefixes != null ? prefixes.build() : null,
+                    suffixes != null ? suffixes.build() : null,
+                    ranges != null ? ranges.build() : null,
+                    globs != null ? toArrays(globs) : null,
+                    unconstrained.toArray());
+        }
+
+        private static int[][] toArrays(IntList[] postings) {
+            int[][] arrays = new int[postings.length][];
+            for (int valueId = 0; valueId < postings.length; valueId++) {
+                if (postings[valueId] != null) {
+                    arrays[valueId] = postings[valueId].toArray();
+                }
+            }
+            return arrays;
+        }
+    }
+
+    static class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            // the same rule can have several conditions on one attribute
+            if (size > 0 && values[size - 1] == value) {
+                return;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int get(int i) {
+            return values[i];
+        }
+
+        // backing array, valid up to size
+        int[] array() {
+            return values;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        void sort() {
+            Arrays.sort(values, 0, size);
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    /**
+     * Max heap which keeps the smallest offered positions up to a limit. Positions follow descending weight
+     * order, so these are positions of the heaviest rules.
+     */
+    static class BoundedHeap {
+        private int[] heap = new int[16];
+        private int size;
+        private int limit;
+
+        void reset(int limit) {
+            this.limit = limit;
+            this.size = 0;
+        }
+
+        boolean accepts(int position) {
+            return size < limit || position < heap[0];
+        }
+
+        void offer(int position) {
+            if (size < limit) {
+                if (size == heap.length) {
+                    heap = Arrays.copyOf(heap, size * 2);
+                }
+                int i = size++;
+                while (i > 0 && heap[(i - 1) / 2] < position) {
+                    heap[i] = heap[(i - 1) / 2];
+                    i = (i - 1) / 2;
+                }
+                heap[i] = position;
+            } else if (position < heap[0]) {
+                int i = 0;
+                while (2 * i + 1 < size) {
+                    int child = 2 * i + 1;
+                    if (child + 1 < size && heap[child + 1] > heap[child]) {
+                        child++;
+                    }
+                    if (heap[child] <= position) {
+                        break;
+                    }
+                    heap[i] = heap[child];
+                    i = child;
+                }
+                heap[i] = position;
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        // moves kept positions to the list in ascending order and empties the heap
+        void drainSorted(IntList list) {
+            Arrays.sort(heap, 0, size);
+            list.clear();
+            for (int i = 0; i < size; i++) {
+                list.add(heap[i]);
+            }
+            size = 0;
+        }
+    }
+
+    /**
+     * Reusable list of sorted posting lists.
+     */
+    static class PostingLists {
+        private int[][] lists = new int[8][];
+        private int size;
+
+        void add(int[] list) {
+            if (size == lists.length) {
+                lists = Arrays.copyOf(lists, size * 2);
+            }
+            lists[size++] = list;
+        }
+
+        int[] get(int i) {
+            return lists[i];
+        }
+
+        int size() {
+            return size;
+        }
+
+        void truncate(int newSize) {
+            for (int i = newSize; i < size; i++) {
+                lists[i] = null;
+            }
+            size = newSize;
+        }
+
+        void clear() {
+            truncate(0);
+        }
+
+        int totalLength(int from, int to) {
+            int length = 0;
+            for (int i = from; i < to; i++) {
+                length += lists[i].length;
+            }
+            return length;
+        }
+
+        boolean contains(int from, int to, int position) {
+            for (int i = from; i < to; i++) {
+                if (Arrays.binarySearch(lists[i], position) >= 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.github.eboldyrev.ruleengine;
+
+/**
+ * Positions of rules by the numbers an index or a tree keeps instead of positions. Rules are numbered by their
+ * positions when the index is built and rules added by updates get next numbers, so an update changes only
+ * the lists of added rules and never renumbers kept ones. Numbers of the built rules follow position order,
+ * numbers of added rules don't. A removed rule keeps its number until the index is built again.
+ */
+class RulePositions {
+    static final int REMOVED = -1;
+
+    // numbers given when the index was built
+    private final int builtCount;
+    // position by number, -(number of rules before the removed rule) - 1 for removed rules, null when numbers are
+    // positions
+    private final int[] positions;
+
+    RulePositions(int rulesCount) {
+        this.builtCount = rulesCount;
+        this.positions = null;
+    }
+
+    private RulePositions(int builtCount, int[] positions) {
+        this.builtCount = builtCount;
+        this.positions = positions;
+    }
+
+    /**
+     * Returns positions after the changes, added rules get numbers from {@link #size()} on in the order of
+     * {@link RuleChanges#getAddedPositions()}.
+     */
+    RulePositions update(RuleChanges changes) {
+        int[] addedPositions = changes.getAddedPositions();
+        int count = size();
+        int[] updated = new int[count + addedPositions.length];
+        for (int number = 0; number < count; number++) {
+            int previous = positions != null ? positions[number] : number;
+            if (previous >= 0 && changes.newPosition(previous) != RuleChanges.REMOVED) {
+                updated[number] = changes.newPosition(previous);
+            } else {
+                updated[number] = -changes.newBound(previous >= 0 ? previous : -previous - 1) - 1;
+            }
+        }
+        System.arraycopy(addedPositions, 0, updated, count, addedPositions.length);
+        return new RulePositions(builtCount, updated);
+    }
+
+    // numbers of all rules, removed ones included
+    int size() {
+        return positions != null ? positions.length : builtCount;
+    }
+
+    boolean isRenumbered() {
+        return positions != null;
+    }
+
+    // numbers from this one on were given to added rules and don't follow position order
+    int getBuiltCount() {
+        return builtCount;
+    }
+
+    /**
+     * Returns the position of the rule or {@link #REMOVED}.
+     */
+    int position(int number) {
+        if (positions == null) {
+            return number;
+        }
+        return positions[number] >= 0 ? positions[number] : REMOVED;
+    }
+
+    /**
+     * Returns the position of the rule, for a removed rule the position the rules after it start from,
+     * so it bounds positions of rules which were lighter than the removed rule.
+     */
+    int bound(int number) {
+        if (positions == null) {
+            return number;
+        }
+        return positions[number] >= 0 ? positions[number] : -positions[number] - 1;
+    }
+}
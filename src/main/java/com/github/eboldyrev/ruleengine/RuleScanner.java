@@ -0,0 +1,225 @@
+package com.github.eboldyrev.ruleengine;
+
+import com.github.eboldyrev.ruleengine.attributes.RuleAttribute;
+import com.github.eboldyrev.ruleengine.exception.InvalidRuleStructure;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Parses rule strings {@code name1:value1#name2:value2=result} and query strings {@code name1:value1#name2:value2}
+ * in one pass over the characters. Only names, values and results are copied out of the string. Accepted strings
+ * and error messages are the same as of splitting the string by '=', '#' and ':'.
+ */
+class RuleScanner {
+    private static final char ATTRIBUTES_DIVIDER = Rule.divider.charAt(0);
+    private static final char NAME_VALUE_DIVIDER = RuleAttribute.divider.charAt(0);
+    private static final char RESULT_DIVIDER = Rule.equalityDivider.charAt(0);
+    private static final int NO_POSITION = -1;
+
+    private static final Comparator<RuleAttribute> BY_NAME = Comparator.comparing(RuleAttribute::getName);
+
+    // positions of attribute dividers and of the first name value divider of every attribute
+    private int[] attributeDividers = new int[8];
+    private int[] nameValueDividers = new int[8];
+    private int attributesCount;
+    private int nameValueDividersCount;
+
+    private RuleScanner() {
+        nameValueDividers[0] = NO_POSITION;
+        attributesCount = 1;
+    }
+
+    static Rule rule(String id, String rule,
+                     Map<String, AttributeDefinition> attributeDefinitions,
+                     Function<String, String> nameTransformator,
+                     Function<String, String> valueTransformator,
+                     Function<String, AttributeDefinition> unknownAttributePolicy,
+                     Consumer<RuleAttribute> validateAttributeType) {
+        // trailing dividers don't produce parts, like in String.split
+        int end = rule.length();
+        while (end > 0 && rule.charAt(end - 1) == RESULT_DIVIDER) {
+            end--;
+        }
+
+        RuleScanner scanner = new RuleScanner();
+        int resultDivider = NO_POSITION;
+        for (int i = 0; i < end; i++) {
+            char c = rule.charAt(i);
+            if (c == RESULT_DIVIDER) {
+                if (resultDivider != NO_POSITION) {
+                    throw noRuleResult(rule);
+                }
+                resultDivider = i;
+            } else if (resultDivider == NO_POSITION) {
+                scanner.scan(c, i);
+            }
+        }
+        if (resultDivider == NO_POSITION) {
+            throw noRuleResult(rule);
+        }
+
+        List<RuleAttribute> attributes = scanner.attributes(rule, resultDivider, attributeDefinitions,
+                nameTransformator, valueTransformator, unknownAttributePolicy, validateAttributeType);
+        return new Rule(id, attributes, rule.substring(resultDivider + 1, end));
+    }
+
+    static List<RuleAttribute> attributes(String str,
+                                          Map<String, AttributeDefinition> attributeDefinitions,
+                                          Function<String, String> nameTransformator,
+                                          Function<String, String> valueTransformator,
+                                          Function<String, AttributeDefinition> unknownAttributePolicy,
+                                          Consumer<RuleAttribute> validateAttributeType) {
+        RuleScanner scanner = new RuleScanner();
+        for (int i = 0; i < str.length(); i++) {
+            scanner.scan(str.charAt(i), i);
+        }
+        return scanner.attributes(str, str.length(), attributeDefinitions,
+                nameTransformator, valueTransformator, unknownAttributePolicy, validateAttributeType);
+    }
+
+    /**
+     * Builds query attribute of a value which is not a part of a string, the value is trimmed and validated like
+     * values of query strings.
+     */
+    static RuleAttribute queryAttribute(AttributeDefinition attributeDefinition, String value,
+                                        Function<String, String> valueTransformator) {
+        String trimmed = value == null ? "" : value.trim();
+        if (trimmed.isEmpty()) {
+            throw new InvalidRuleStructure("Empty value for attribute '" + attributeDefinition.getName() + "'");
+        }
+        return attribute(attributeDefinition, trimmed, valueTransformator, Rule.queryAttributeType);
+    }
+
+    private static InvalidRuleStructure noRuleResult(String rule) {
+        return new InvalidRuleStructure("No rule result found: " + rule);
+    }
+
+    private void scan(char c, int position) {
+        if (c == ATTRIBUTES_DIVIDER) {
+            if (attributesCount == nameValueDividers.length) {
+                nameValueDividers = Arrays.copyOf(nameValueDividers, attributesCount * 2);
+                attributeDividers = Arrays.copyOf(attributeDividers, attributesCount * 2);
+            }
+            attributeDividers[attributesCount - 1] = position;
+            nameValueDividers[attributesCount++] = NO_POSITION;
+        } else if (c == NAME_VALUE_DIVIDER) {
+            if (nameValueDividers[attributesCount - 1] == NO_POSITION) {
+                nameValueDividers[attributesCount - 1] = position;
+            }
+            nameValueDividersCount++;
+        }
+    }
+
+    // builds attributes from the scanned part [0, end) of the string
+    private List<RuleAttribute> attributes(String str, int end,
+                                           Map<String, AttributeDefinition> attributeDefinitions,
+                                           Function<String, String> nameTransformator,
+                                           Function<String, String> valueTransformator,
+                                           Function<String, AttributeDefinition> unknownAttributePolicy,
+                                           Consumer<RuleAttribute> validateAttributeType) {
+        // trailing attribute dividers don't produce attributes, a string of dividers only has no attributes at all
+        int count = attributesCount;
+        while (count > 1 && attributeDividers[count - 2] == (count == attributesCount ? end : attributeDividers[count - 1]) - 1) {
+            count--;
+        }
+        if (count == 1 && attributesCount > 1 && attributeDividers[0] == 0) {
+            throw new InvalidRuleStructure("No attributes found!");
+        }
+        int attributesEnd = count == attributesCount ? end : attributeDividers[count - 1];
+
+        if (nameValueDividersCount != count && !(count == 1 && nameValueDividersCount == 0)) {
+            String missedPart = Rule.divider;
+            if (nameValueDividersCount < count) {
+                missedPart = RuleAttribute.divider;
+            }
+            throw new InvalidRuleStructure("Incorrect query structure. Missed '" + missedPart + "' in " + str.substring(0, end));
+        }
+
+        List<RuleAttribute> attributes = new ArrayList<>(count);
+        for (int a = 0; a < count; a++) {
+            int from = a == 0 ? 0 : attributeDividers[a - 1] + 1;
+            int to = a == count - 1 ? attributesEnd : attributeDividers[a];
+            RuleAttribute attribute = attribute(str, from, to, nameValueDividers[a], attributeDefinitions,
+                    nameTransformator, valueTransformator, unknownAttributePolicy, validateAttributeType);
+            if (attribute != null) {
+                attributes.add(attribute);
+            }
+        }
+
+        if (attributes.size() > 1) {
+            attributes.sort(BY_NAME);
+        }
+        return attributes;
+    }
+
+    private static RuleAttribute attribute(String str, int from, int to, int divider,
+                                           Map<String, AttributeDefinition> attributeDefinitions,
+                                           Function<String, String> nameTransformator,
+                                           Function<String, String> valueTransformator,
+                                           Function<String, AttributeDefinition> unknownAttributePolicy,
+                                           Consumer<RuleAttribute> validateAttributeType) {
+        if (divider == NO_POSITION) {
+            throw new InvalidRuleStructure("Can't parse " + str.substring(from, to) + ". Missing '" + RuleAttribute.divider + "'.");
+        }
+
+        int nameFrom = trimStart(str, from, divider);
+        int nameTo = trimEnd(str, nameFrom, divider);
+        if (nameFrom == nameTo) {
+            throw new InvalidRuleStructure("Empty name in '" + str.substring(from, to) + "'");
+        }
+        String name = str.substring(nameFrom, nameTo);
+        if (nameTransformator != null) {
+            name = nameTransformator.apply(name);
+        }
+        AttributeDefinition attributeDefinition = attributeDefinitions.get(name);
+        if (attributeDefinition == null) {
+            attributeDefinition = unknownAttributePolicy.apply(name);
+            if (attributeDefinition == null) {
+                return null;
+            }
+        }
+
+        int valueFrom = trimStart(str, divider + 1, to);
+        int valueTo = trimEnd(str, valueFrom, to);
+        if (valueFrom == valueTo) {
+            throw new InvalidRuleStructure("Empty value in '" + str.substring(from, to) + "'");
+        }
+        return attribute(attributeDefinition, str.substring(valueFrom, valueTo), valueTransformator,
+                validateAttributeType);
+    }
+
+    private static RuleAttribute attribute(AttributeDefinition attributeDefinition, String value,
+                                           Function<String, String> valueTransformator,
+                                           Consumer<RuleAttribute> validateAttributeType) {
+        if (valueTransformator != null) {
+            value = valueTransformator.apply(value);
+        }
+
+        RuleAttribute attribute = RuleAttribute.of(attributeDefinition, value);
+        if (validateAttributeType != null) {
+            validateAttributeType.accept(attribute);
+        }
+        return attribute;
+    }
+
+    // the same whitespace as String.trim
+    private static int trimStart(String str, int from, int to) {
+        while (from < to && str.charAt(from) <= ' ') {
+            from++;
+        }
+        return from;
+    }
+
+    private static int trimEnd(String str, int from, int to) {
+        while (to > from && str.charAt(to - 1) <= ' ') {
+            to--;
+        }
+        return to;
+    }
+}
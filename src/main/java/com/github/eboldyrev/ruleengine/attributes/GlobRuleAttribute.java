@@ -0,0 +1,65 @@
+package com.github.eboldyrev.ruleengine.attributes;
+
+import com.github.eboldyrev.ruleengine.AttributeDefinition;
+
+public class GlobRuleAttribute extends BasicRuleAttribute {
+
+    GlobRuleAttribute(AttributeDefinition attributeDefinition, String value) {
+        super(attributeDefinition, value);
+    }
+
+    // '*' inside the value or on both ends of it, a single '*' on one end is a starts with or ends with value
+    static boolean isGlob(String value) {
+        int inner = value.indexOf(anyValue, 1);
+        return (inner >= 0 && inner < value.length() - 1)
+                || (value.length() > 1 && value.charAt(0) == anyValue && value.charAt(value.length() - 1) == anyValue);
+    }
+
+    /**
+     * Checks the value against the pattern where '*' matches any chars, including none.
+     */
+    public static boolean matches(String pattern, String value) {
+        int first = pattern.indexOf(anyValue);
+        if (first < 0) {
+            return pattern.equals(value);
+        }
+        int last = pattern.lastIndexOf(anyValue);
+        int suffixLength = pattern.length() - last - 1;
+        int limit = value.length() - suffixLength;
+        if (limit < first || !value.regionMatches(0, pattern, 0, first)
+                || !value.regionMatches(limit, pattern, last + 1, suffixLength)) {
+            return false;
+        }
+        int position = first;
+        for (int from = first + 1; from < last; ) {
+            int to = pattern.indexOf(anyValue, from);
+            if (to > from) {
+                int idx = value.indexOf(pattern.substring(from, to), position);
+                if (idx < 0 || idx + to - from > limit) {
+                    return false;
+                }
+                position = idx + to - from;
+            }
+            from = to + 1;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean calculate(RuleAttribute other) {
+        return this.definition.getName().equals(other.getName()) && matches(value, other.getValue());
+    }
+
+    @Override
+    public int getWeight() {
+        return (int) Math.pow(weightBase, PARTIAL_MATCH_COEFFICIENT + definition.getWeight());
+    }
+
+    @Override
+    public String toString() {
+        return "GlobRuleAttribute{" +
+                "attributeDefinition='" + definition + '\'' +
+                ", value='" + value + '\'' +
+                '}';
+    }
+}
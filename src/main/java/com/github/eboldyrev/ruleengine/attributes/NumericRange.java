@@ -0,0 +1,143 @@
+package com.github.eboldyrev.ruleengine.attributes;
+
+import com.github.eboldyrev.ruleengine.exception.InvalidRuleStructure;
+
+/**
+ * Interval of numbers written as {@code [low..high]}, {@code (low..high)} or a mix of them, square bracket includes
+ * the bound and round bracket excludes it. An empty bound means that the interval is not bounded from that side,
+ * e.g. {@code [100..)}.
+ */
+public final class NumericRange {
+    static final String boundsDivider = "..";
+
+    private final double low;
+    private final boolean lowInclusive;
+    private final double high;
+    private final boolean highInclusive;
+
+    public NumericRange(double low, boolean lowInclusive, double high, boolean highInclusive) {
+        this.low = low;
+        this.lowInclusive = lowInclusive;
+        this.high = high;
+        this.highInclusive = highInclusive;
+    }
+
+    static boolean isRange(String value) {
+        int length = value.length();
+        if (length < 4) {
+            return false;
+        }
+        char first = value.charAt(0);
+        char last = value.charAt(length - 1);
+        return (first == '[' || first == '(') && (last == ']' || last == ')') && value.contains(boundsDivider);
+    }
+
+    public static NumericRange parse(String value) {
+        if (!isRange(value)) {
+            throw new InvalidRuleStructure("Can't parse range " + value);
+        }
+        int divider = value.indexOf(boundsDivider);
+        String lowStr = value.substring(1, divider).trim();
+        String highStr = value.substring(divider + boundsDivider.length(), value.length() - 1).trim();
+        if (lowStr.isEmpty() && highStr.isEmpty()) {
+            throw new InvalidRuleStructure("Range " + value + " has no bounds");
+        }
+        double low = lowStr.isEmpty() ? Double.NEGATIVE_INFINITY : parseNumber(lowStr);
+        double high = highStr.isEmpty() ? Double.POSITIVE_INFINITY : parseNumber(highStr);
+        if (Double.isNaN(low) || Double.isNaN(high)) {
+            throw new InvalidRuleStructure("Range " + value + " has not a number bound");
+        }
+        if (low > high) {
+            throw new InvalidRuleStructure("Range " + value + " has low bound greater than high bound");
+        }
+        return new NumericRange(low, value.charAt(0) == '[', high, value.charAt(value.length() - 1) == ']');
+    }
+
+    /**
+     * Parses a decimal number like {@code -12}, {@code 0.5} or {@code 1e3}, returns NaN if the value is not
+     * a finite number. Values which are not numbers are rejected without throwing an exception.
+     */
+    public static double parseNumber(String value) {
+        int length = value.length();
+        int i = 0;
+        if (i < length && (value.charAt(i) == '-' || value.charAt(i) == '+')) {
+            i++;
+        }
+        int digits = 0;
+        while (i < length && isDigit(value.charAt(i))) {
+            i++;
+            digits++;
+        }
+        if (i < length && value.charAt(i) == '.') {
+            i++;
+            while (i < length && isDigit(value.charAt(i))) {
+                i++;
+                digits++;
+            }
+        }
+        if (digits == 0) {
+            return Double.NaN;
+        }
+        if (i < length && (value.charAt(i) == 'e' || value.charAt(i) == 'E')) {
+            i++;
+            if (i < length && (value.charAt(i) == '-' || value.charAt(i) == '+')) {
+                i++;
+            }
+            int exponentDigits = 0;
+            while (i < length && isDigit(value.charAt(i))) {
+                i++;
+                exponentDigits++;
+            }
+            if (exponentDigits == 0) {
+                return Double.NaN;
+            }
+        }
+        if (i != length) {
+            return Double.NaN;
+        }
+        double number = Double.parseDouble(value);
+        // -0.0 is the same number as 0.0, so it is searched among sorted bounds as 0.0
+        return Double.isInfinite(number) ? Double.NaN : number + 0.0;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    public boolean contains(double number) {
+        return (lowInclusive ? number >= low : number > low) && (highInclusive ? number <= high : number < high);
+    }
+
+    // true when some number is in both ranges
+    public boolean overlaps(NumericRange other) {
+        return endsAfterStartOf(this, other) && endsAfterStartOf(other, this);
+    }
+
+    private static boolean endsAfterStartOf(NumericRange first, NumericRange second) {
+        if (first.high != second.low) {
+            return first.high > second.low;
+        }
+        return first.highInclusive && second.lowInclusive;
+    }
+
+    public double getLow() {
+        return low;
+    }
+
+    public boolean isLowInclusive() {
+        return lowInclusive;
+    }
+
+    public double getHigh() {
+        return high;
+    }
+
+    public boolean isHighInclusive() {
+        return highInclusive;
+    }
+
+    @Override
+    public String toString() {
+        return (lowInclusive ? "[" : "(") + low + boundsDivider + high + (highInclusive ? "]" : ")");
+    }
+}
@@ -0,0 +1,36 @@
+package com.github.eboldyrev.ruleengine.attributes;
+
+import com.github.eboldyrev.ruleengine.AttributeDefinition;
+
+public class RangeRuleAttribute extends BasicRuleAttribute {
+
+    private final NumericRange range;
+
+    RangeRuleAttribute(AttributeDefinition attributeDefinition, String value) {
+        super(attributeDefinition, value);
+        this.range = NumericRange.parse(value);
+    }
+
+    public NumericRange getRange() {
+        return range;
+    }
+
+    @Override
+    public boolean calculate(RuleAttribute other){
+        return this.definition.getName().equals(other.getName())
+                && range.contains(NumericRange.parseNumber(other.getValue()));
+    }
+
+    @Override
+    public int getWeight() {
+        return (int) Math.pow(weightBase, RANGE_MATCH_COEFFICIENT + definition.getWeight());
+    }
+
+    @Override
+    public String toString() {
+        return "RangeRuleAttribute{" +
+                "attributeDefinition='" + definition + '\'' +
+                ", value='" + value + '\'' +
+                '}';
+    }
+}
@@ -9,6 +9,7 @@ import java.util.function.Function;
 
 public interface RuleAttribute {
     int EXACT_MATCH_COEFFICIENT = 3;
+    int RANGE_MATCH_COEFFICIENT = 2;
     int PARTIAL_MATCH_COEFFICIENT = 1;
     int ANY_MATCH_COEFFICIENT = 0;
 
@@ -43,16 +44,7 @@ public interface RuleAttribute {
         if (attributeDefinition != null) {
             String value = validateAndGetValue(ruleAttr, valueTransformator, idx);
 
-            RuleAttribute result;
-            if (value.length() == 1 && value.charAt(0) == anyValue) {
-                result = new AnyRuleAttribute(attributeDefinition, value);
-            } else if (value.endsWith(anyCharsValue)) {
-                result = new StartsWithRuleAttribute(attributeDefinition, value.substring(0, value.length() - 1));
-            } else if (value.startsWith(anyCharsValue)) {
-                result = new EndsWithRuleAttribute(attributeDefinition, value.substring(1));
-            } else {
-                result = new ExactMatchAttribute(attributeDefinition, value);
-            }
+            RuleAttribute result = of(attributeDefinition, value);
             if (validateAttributeType != null) {
                 validateAttributeType.accept(result);
             }
@@ -63,6 +55,28 @@ public interface RuleAttribute {
         return null;
     }
 
+    // attribute type is defined by '*' in the value, by range brackets, e.g. [100..500), or by set braces, e.g. {DE|FR}
+    static RuleAttribute of(AttributeDefinition attributeDefinition, String value) {
+        if (SetRuleAttribute.isSet(value)) {
+            return new SetRuleAttribute(attributeDefinition, value);
+        } else if (NumericRange.isRange(value)) {
+            return new RangeRuleAttribute(attributeDefinition, value);
+        } else if (value.length() == 1 && value.charAt(0) == anyValue) {
+            return new AnyRuleAttribute(attributeDefinition, value);
+        } else if (GlobRuleAttribute.isGlob(value)) {
+            return new GlobRuleAttribute(attributeDefinition, value);
+        } else if (value.endsWith(anyCharsValue)) {
+            return new StartsWithRuleAttribute(attributeDefinition, value.substring(0, value.length() - 1));
+        } else if (value.startsWith(anyCharsValue)) {
+            return new EndsWithRuleAttribute(attributeDefinition, value.substring(1));
+        }
+        return new ExactMatchAttribute(attributeDefinition, value);
+    }
+
+    static RuleAttribute exactMatch(AttributeDefinition attributeDefinition, String value) {
+        return new ExactMatchAttribute(attributeDefinition, value);
+    }
+
     static String validateAndGetValue(String ruleAttr, Function<String, String> valueTransformator, int idx) {
         String value = ruleAttr.substring(idx+1).trim();
         if (value.length() == 0) {
@@ -0,0 +1,73 @@
+package com.github.eboldyrev.ruleengine.attributes;
+
+import com.github.eboldyrev.ruleengine.AttributeDefinition;
+import com.github.eboldyrev.ruleengine.exception.InvalidRuleStructure;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Attribute which matches any value of a set written as {@code {DE|FR|IT}}, it weighs as an exact match.
+ */
+public class SetRuleAttribute extends BasicRuleAttribute {
+    static final char setStart = '{';
+    static final char setEnd = '}';
+    static final char membersDivider = '|';
+
+    private final Set<String> members;
+
+    SetRuleAttribute(AttributeDefinition attributeDefinition, String value) {
+        super(attributeDefinition, value);
+        this.members = Collections.unmodifiableSet(parseMembers(value));
+    }
+
+    static boolean isSet(String value) {
+        return value.length() >= 2 && value.charAt(0) == setStart && value.charAt(value.length() - 1) == setEnd;
+    }
+
+    /**
+     * Returns distinct members of the set value in the written order.
+     */
+    public static Set<String> parseMembers(String value) {
+        if (!isSet(value)) {
+            throw new InvalidRuleStructure("Can't parse set " + value);
+        }
+        Set<String> members = new LinkedHashSet<>();
+        for (int from = 1; from < value.length(); ) {
+            int to = value.indexOf(membersDivider, from);
+            if (to < 0) {
+                to = value.length() - 1;
+            }
+            String member = value.substring(from, to).trim();
+            if (member.isEmpty()) {
+                throw new InvalidRuleStructure("Set " + value + " has an empty value");
+            }
+            members.add(member);
+            from = to + 1;
+        }
+        return members;
+    }
+
+    public Set<String> getMembers() {
+        return members;
+    }
+
+    @Override
+    public boolean calculate(RuleAttribute other) {
+        return this.definition.getName().equals(other.getName()) && members.contains(other.getValue());
+    }
+
+    @Override
+    public int getWeight() {
+        return (int) Math.pow(weightBase, EXACT_MATCH_COEFFICIENT + definition.getWeight());
+    }
+
+    @Override
+    public String toString() {
+        return "SetRuleAttribute{" +
+                "attributeDefinition='" + definition + '\'' +
+                ", value='" + value + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,21 @@
+package com.github.eboldyrev.ruleengine.exception;
+
+import java.util.Collections;
+import java.util.List;
+
+public class AmbiguousRulesFound extends RuleEngineException {
+
+    private List<List<String>> ambiguousRuleIds;
+
+    public AmbiguousRulesFound(String message, List<List<String>> ambiguousRuleIds) {
+        super(message);
+        this.ambiguousRuleIds = Collections.unmodifiableList(ambiguousRuleIds);
+    }
+
+    /**
+     * Pairs of ids of rules with the same weight which can match the same query.
+     */
+    public List<List<String>> getAmbiguousRuleIds() {
+        return ambiguousRuleIds;
+    }
+}
@@ -0,0 +1,157 @@
+package com.github.eboldyrev.ruleengine;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AmbiguityAnalysisTest {
+
+    private Map<String, AttributeDefinition> attributeDefinitions;
+
+    @Before
+    public void setUp() {
+        RuleEngine ruleEngine = new RuleEngine(null, null);
+        Map<String, Integer> attributesWithWeight = new HashMap<>();
+        attributesWithWeight.put("Brand", 1);
+        attributesWithWeight.put("Country", 1);
+        attributeDefinitions = ruleEngine.createAttributeDefinitions(attributesWithWeight);
+    }
+
+    @Test
+    public void canMatchSameQuery__conditionsOnSameAttribute__matchedByOneValue() {
+        assertTrue(canMatchSameQuery("Brand:Puma=1", "Brand:Puma=2"));
+        assertFalse(canMatchSameQuery("Brand:Puma=1", "Brand:Nike=2"));
+        assertTrue(canMatchSameQuery("Brand:Puma=1", "Brand:Pu*=2"));
+        assertFalse(canMatchSameQuery("Brand:Puma=1", "Brand:Ni*=2"));
+        assertTrue(canMatchSameQuery("Brand:Puma=1", "Brand:*ma=2"));
+        assertFalse(canMatchSameQuery("Brand:Puma=1", "Brand:*ke=2"));
+        assertTrue(canMatchSameQuery("Brand:Pu*=1", "Brand:P*=2"));
+        assertFalse(canMatchSameQuery("Brand:Pu*=1", "Brand:Ni*=2"));
+        assertTrue(canMatchSameQuery("Brand:*ma=1", "Brand:*uma=2"));
+        assertFalse(canMatchSameQuery("Brand:*ma=1", "Brand:*ke=2"));
+        assertTrue(canMatchSameQuery("Brand:Ni*=1", "Brand:*ma=2"));
+        assertTrue(canMatchSameQuery("Brand:Puma=1", "Brand:*=2"));
+    }
+
+    @Test
+    public void canMatchSameQuery__differentAttributes__matchedByOneQuery() {
+        assertTrue(canMatchSameQuery("Brand:Puma=1", "Country:Russia=2"));
+        assertFalse(canMatchSameQuery("Brand:Puma#Country:Russia=1", "Brand:Nike#Country:Russia=2"));
+    }
+
+    @Test
+    public void ambiguousPairs__sameWeightRules__onlyPairsMatchingOneQueryFound() {
+        // setup
+        EncodedRules encodedRules = new EncodedRules(rules(
+                "Brand:Puma#Country:Russia=1",
+                "Brand:Puma#Country:Germany=2",
+                "Brand:Nike#Country:Russia=3",
+                "Brand:Puma#Country:Russia=4",
+                "Brand:Puma=5",
+                "Country:Russia=6"));
+
+        // act
+        List<int[]> pairs = AmbiguityAnalysis.ambiguousPairs(encodedRules, 100);
+
+        // verify
+        assertEquals(2, pairs.size());
+        assertEquals(0, pairs.get(0)[0]);
+        assertEquals(3, pairs.get(0)[1]);
+        assertEquals(4, pairs.get(1)[0]);
+        assertEquals(5, pairs.get(1)[1]);
+    }
+
+    @Test
+    public void ambiguousPairs__limit__atMostLimitPairsFound() {
+        // setup
+        EncodedRules encodedRules = new EncodedRules(rules("Brand:Puma=1", "Brand:Puma=2", "Brand:Puma=3", "Brand:Puma=4"));
+
+        // act
+        List<int[]> pairs = AmbiguityAnalysis.ambiguousPairs(encodedRules, 2);
+
+        // verify
+        assertEquals(2, pairs.size());
+    }
+
+    @Test
+    public void ambiguousPairs__sameSets__everyPairFound() {
+        // setup
+        EncodedRules encodedRules = new EncodedRules(rules(
+                "Brand:{Puma|Nike|Adidas}=1", "Brand:{Puma|Nike|Adidas}=2", "Brand:{Puma|Nike|Adidas}=3"));
+
+        // act
+        List<int[]> pairs = AmbiguityAnalysis.ambiguousPairs(encodedRules, 100);
+
+        // verify
+        assertEquals(3, pairs.size());
+    }
+
+    @Test
+    public void ambiguousPairs__randomRules__samePairsAsComparingEveryPair() {
+        // setup
+        RuleEngine ruleEngine = new RuleEngine(null, null);
+        Map<String, AttributeDefinition> definitions = ruleEngine.createAttributeDefinitions(RandomRules.attributeDefinitions());
+        List<Rule> rules = new ArrayList<>();
+        for (Map.Entry<String, String> rule : new RandomRules(11).rules(400).entrySet()) {
+            rules.add(Rule.ruleFromString(rule.getKey(), rule.getValue(), definitions, null, null));
+        }
+        rules.sort(Comparator.comparingLong(Rule::getWeight).reversed());
+        EncodedRules encodedRules = new EncodedRules(rules);
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < rules.size(); i++) {
+            for (int j = i + 1; j < rules.size() && rules.get(j).getWeight() == rules.get(i).getWeight(); j++) {
+                if (AmbiguityAnalysis.canMatchSameQuery(encodedRules, i, j)) {
+                    expected.add(i + "," + j);
+                }
+            }
+        }
+
+        // act
+        List<int[]> pairs = AmbiguityAnalysis.ambiguousPairs(encodedRules, Integer.MAX_VALUE);
+
+        // verify
+        List<String> actual = new ArrayList<>();
+        for (int[] pair : pairs) {
+            actual.add(pair[0] + "," + pair[1]);
+        }
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, actual);
+    }
+
+    @Test(timeout = 10_000)
+    public void ambiguousPairs__manyDistinctPrefixes__notAllPairsCompared() {
+        // setup
+        String[] ruleStrs = new String[40_000];
+        for (int i = 0; i < ruleStrs.length; i++) {
+            ruleStrs[i] = "Brand:P" + i + "X*=" + i;
+        }
+        EncodedRules encodedRules = new EncodedRules(rules(ruleStrs));
+
+        // act
+        List<int[]> pairs = AmbiguityAnalysis.ambiguousPairs(encodedRules, 100);
+
+        // verify
+        assertTrue(pairs.isEmpty());
+    }
+
+    private boolean canMatchSameQuery(String first, String second) {
+        return AmbiguityAnalysis.canMatchSameQuery(new EncodedRules(rules(first, second)), 0, 1);
+    }
+
+    private List<Rule> rules(String... ruleStrs) {
+        List<Rule> rules = new ArrayList<>(ruleStrs.length);
+        for (int i = 0; i < ruleStrs.length; i++) {
+            rules.add(Rule.ruleFromString(String.valueOf(i), ruleStrs[i], attributeDefinitions, null, null));
+        }
+        return rules;
+    }
+}
@@ -0,0 +1,78 @@
+package com.github.eboldyrev.ruleengine;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EncodedRulesTest {
+
+    private Map<String, AttributeDefinition> attributeDefinitions;
+
+    @Before
+    public void setUp() {
+        RuleEngine ruleEngine = new RuleEngine(null, null);
+        Map<String, Integer> attributesWithWeight = new HashMap<>();
+        attributesWithWeight.put("Brand", 1);
+        attributesWithWeight.put("Country", 1);
+        attributesWithWeight.put("OldClient", 1);
+        attributeDefinitions = ruleEngine.createAttributeDefinitions(attributesWithWeight);
+    }
+
+    @Test
+    public void new__rulesWithSharedValues__attributesAndValuesInterned() {
+        EncodedRules encodedRules = new EncodedRules(rules("Brand:Puma#Country:Russia=1", "Brand:Puma=2", "Brand:Pu*=3"));
+
+        assertEquals(2, encodedRules.getAttributesCount());
+        assertEquals("Brand", encodedRules.getAttributeName(0));
+        assertEquals("Country", encodedRules.getAttributeName(1));
+        assertEquals(2, encodedRules.getValuesCount(0));
+        assertEquals(encodedRules.getConditionValue(encodedRules.getConditionStart(0)),
+                encodedRules.getConditionValue(encodedRules.getConditionStart(1)));
+    }
+
+    @Test
+    public void matches__queryWithoutRuleAttribute__notMatched() {
+        EncodedRules encodedRules = new EncodedRules(rules("Brand:Puma#Country:*=1"));
+
+        assertFalse(matches(encodedRules, 0, "Brand:Puma#OldClient:Yes"));
+        assertTrue(matches(encodedRules, 0, "Brand:Puma#Country:Russia#OldClient:Yes"));
+    }
+
+    @Test
+    public void matches__partialConditions__matchedByQueryValue() {
+        EncodedRules encodedRules = new EncodedRules(rules("Brand:Pu*#Country:*ussia=1"));
+
+        assertTrue(matches(encodedRules, 0, "Brand:Puma#Country:Belorussia"));
+        assertFalse(matches(encodedRules, 0, "Brand:Adidas#Country:Belorussia"));
+        assertFalse(matches(encodedRules, 0, "Brand:Puma#Country:Germany"));
+    }
+
+    @Test
+    public void matches__queryValueNotUsedByAnyRule__notMatched() {
+        EncodedRules encodedRules = new EncodedRules(rules("Brand:Puma=1"));
+
+        assertFalse(matches(encodedRules, 0, "Brand:Adidas"));
+    }
+
+    private boolean matches(EncodedRules encodedRules, int rule, String query) {
+        QueryScratch scratch = new QueryScratch();
+        encodedRules.encodeQuery(Rule.queryFromString(query, attributeDefinitions, null, null), scratch);
+        return encodedRules.matches(rule, scratch);
+    }
+
+    private List<Rule> rules(String... ruleStrs) {
+        List<Rule> rules = new ArrayList<>(ruleStrs.length);
+        for (int i = 0; i < ruleStrs.length; i++) {
+            rules.add(Rule.ruleFromString(String.valueOf(i), ruleStrs[i], attributeDefinitions, null, null));
+        }
+        return rules;
+    }
+}
@@ -0,0 +1,96 @@
+package com.github.eboldyrev.ruleengine;
+
+import com.github.eboldyrev.ruleengine.attributes.GlobRuleAttribute;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+public class GlobAutomatonTest {
+
+    @Test
+    public void scan__severalPatterns__allMatchedPatternsReported() {
+        // setup
+        GlobAutomaton automaton = new GlobAutomaton(new String[]{"*foo*", "ab*cd", null, "*o*o*", "**", "f*x"});
+        QueryScratch scratch = new QueryScratch();
+        scratch.resetGlobs(1, automaton.getPatternsCount());
+
+        // act
+        automaton.scan("abfoocd", 0, scratch);
+
+        // verify
+        Set<Integer> matched = new TreeSet<>();
+        for (int i = 0; i < scratch.globMatchesCount; i++) {
+            matched.add(scratch.globMatches[i]);
+        }
+        assertEquals(new TreeSet<>(Arrays.asList(0, 1, 3, 4)), matched);
+        assertTrue(automaton.isMatched(1, 0, scratch));
+        assertFalse(automaton.isMatched(2, 0, scratch));
+        assertFalse(automaton.isMatched(5, 0, scratch));
+    }
+
+    @Test
+    public void scan__overlappingParts__partsMustNotOverlap() {
+        // setup
+        GlobAutomaton automaton = new GlobAutomaton(new String[]{"ab*ba", "*aa*aa*"});
+        QueryScratch scratch = new QueryScratch();
+        scratch.resetGlobs(1, automaton.getPatternsCount());
+
+        // act
+        automaton.scan("aba", 0, scratch);
+        boolean first = automaton.isMatched(0, 0, scratch);
+        automaton.scan("aaa", 0, scratch);
+        boolean second = automaton.isMatched(1, 0, scratch);
+
+        // verify
+        assertFalse(first);
+        assertFalse(second);
+    }
+
+    @Test
+    public void scan__randomPatterns__sameResultAsRegex() {
+        Random random = new Random(7);
+        for (int attempt = 0; attempt < 200; attempt++) {
+            // setup
+            String[] patterns = new String[20];
+            for (int p = 0; p < patterns.length; p++) {
+                patterns[p] = randomString(random, "ab*", 1 + random.nextInt(6));
+            }
+            GlobAutomaton automaton = new GlobAutomaton(patterns);
+            QueryScratch scratch = new QueryScratch();
+            scratch.resetGlobs(2, 5 + automaton.getPatternsCount());
+
+            for (int v = 0; v < 20; v++) {
+                String value = randomString(random, "ab", random.nextInt(8));
+
+                // act
+                automaton.scan(value, 5, scratch);
+
+                // verify
+                for (int p = 0; p < patterns.length; p++) {
+                    boolean expected = toRegex(patterns[p]).matcher(value).matches();
+                    assertEquals(patterns[p] + " " + value, expected, automaton.isMatched(p, 5, scratch));
+                    assertEquals(patterns[p] + " " + value, expected, GlobRuleAttribute.matches(patterns[p], value));
+                }
+            }
+        }
+    }
+
+    private static String randomString(Random random, String chars, int length) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            sb.append(chars.charAt(random.nextInt(chars.length())));
+        }
+        return sb.toString();
+    }
+
+    private static Pattern toRegex(String glob) {
+        StringBuilder regex = new StringBuilder();
+        for (char c : glob.toCharArray()) {
+            regex.append(c == '*' ? ".*" : Pattern.quote(String.valueOf(c)));
+        }
+        return Pattern.compile(regex.toString());
+    }
+}
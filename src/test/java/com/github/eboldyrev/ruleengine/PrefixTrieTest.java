@@ -0,0 +1,56 @@
+package com.github.eboldyrev.ruleengine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class PrefixTrieTest {
+
+    @Test
+    public void collect__severalPrefixesOfValue__allPrefixPostingsCollectedFromShortestToLongest() {
+        PrefixTrie.Builder builder = new PrefixTrie.Builder();
+        builder.add("A", 0);
+        builder.add("ABC", 1);
+        builder.add("AB", 2);
+        builder.add("ABD", 3);
+        builder.add("AB", 4);
+        PrefixTrie trie = builder.build();
+
+        RuleIndex.PostingLists postings = new RuleIndex.PostingLists();
+        trie.collect("ABCX", postings);
+
+        assertEquals(3, postings.size());
+        assertArrayEquals(new int[]{0}, postings.get(0));
+        assertArrayEquals(new int[]{2, 4}, postings.get(1));
+        assertArrayEquals(new int[]{1}, postings.get(2));
+    }
+
+    @Test
+    public void collect__valueShorterThanPrefix__nothingCollected() {
+        PrefixTrie.Builder builder = new PrefixTrie.Builder();
+        builder.add("ABC", 0);
+        PrefixTrie trie = builder.build();
+
+        RuleIndex.PostingLists postings = new RuleIndex.PostingLists();
+        trie.collect("AB", postings);
+
+        assertEquals(0, postings.size());
+    }
+
+    @Test
+    public void collect__reversedTrie__suffixPostingsCollected() {
+        PrefixTrie.Builder builder = new PrefixTrie.Builder(true);
+        builder.add("@corp.com", 0);
+        builder.add(".com", 1);
+        builder.add(".org", 2);
+        PrefixTrie trie = builder.build();
+
+        RuleIndex.PostingLists postings = new RuleIndex.PostingLists();
+        trie.collect("john@corp.com", postings);
+
+        assertEquals(2, postings.size());
+        assertArrayEquals(new int[]{1}, postings.get(0));
+        assertArrayEquals(new int[]{0}, postings.get(1));
+    }
+}
@@ -0,0 +1,111 @@
+package com.github.eboldyrev.ruleengine;
+
+import com.github.eboldyrev.ruleengine.exception.MultiplyRulesFound;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Random rules and queries for tests which compare engines with each other or with a full scan. Rules have
+ * conditions of every type, some of them have several conditions on one attribute.
+ */
+class RandomRules {
+    static final String[] NAMES = {"Brand", "Country", "OldClient", "Size"};
+    static final String MULTIPLY = "MULTIPLY";
+
+    private static final String[] VALUES = {"a", "ab", "abc", "b", "ba", "bab", "c", "ca", "ягода", "1", "5", "12"};
+    private static final String[] RANGES = {"[1..5]", "(1..12)", "[5..)", "(..5)", "[12..12]"};
+
+    private final Random random;
+
+    RandomRules(long seed) {
+        this.random = new Random(seed);
+    }
+
+    static Map<String, Integer> attributeDefinitions() {
+        Map<String, Integer> attributeDefinitions = new HashMap<>();
+        for (int i = 0; i < NAMES.length; i++) {
+            attributeDefinitions.put(NAMES[i], i % 3);
+        }
+        return attributeDefinitions;
+    }
+
+    int nextInt(int bound) {
+        return random.nextInt(bound);
+    }
+
+    /**
+     * Returns rules with ids and results from 0 to count - 1.
+     */
+    Map<String, String> rules(int count) {
+        Map<String, String> rules = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            List<String> conditions = new ArrayList<>();
+            for (String name : NAMES) {
+                if (random.nextInt(3) == 0) {
+                    continue;
+                }
+                conditions.add(name + ":" + condition());
+                // several conditions on one attribute
+                if (random.nextInt(8) == 0) {
+                    conditions.add(name + ":" + condition());
+                }
+            }
+            if (conditions.isEmpty()) {
+                conditions.add(NAMES[0] + ":*");
+            }
+            rules.put(String.valueOf(i), String.join("#", conditions) + "=" + i);
+        }
+        return rules;
+    }
+
+    private String condition() {
+        String value = VALUES[random.nextInt(VALUES.length)];
+        switch (random.nextInt(9)) {
+            case 0:
+                return "*";
+            case 1:
+                return value + "*";
+            case 2:
+                return "*" + value;
+            case 3:
+                return RANGES[random.nextInt(RANGES.length)];
+            case 4:
+                return "*" + value + "*";
+            case 5:
+                return value + "*" + VALUES[random.nextInt(VALUES.length)];
+            case 6:
+                return "{" + value + "|" + VALUES[random.nextInt(VALUES.length)] + "}";
+            default:
+                return value;
+        }
+    }
+
+    String query() {
+        List<String> attributes = new ArrayList<>();
+        for (String name : NAMES) {
+            if (random.nextInt(4) != 0) {
+                attributes.add(name + ":" + VALUES[random.nextInt(VALUES.length)]);
+            }
+        }
+        if (attributes.isEmpty()) {
+            attributes.add(NAMES[1] + ":" + VALUES[0]);
+        }
+        return String.join("#", attributes);
+    }
+
+    /**
+     * Returns result of the query or {@link #MULTIPLY} followed by ids of the found rules.
+     */
+    static String queryOrMultiply(RuleEngine engine, String query) {
+        try {
+            return engine.query(query);
+        } catch (MultiplyRulesFound e) {
+            return MULTIPLY + ruleIds(e.getRulesResults());
+        }
+    }
+
+    static List<String> ruleIds(List<RuleResult> results) {
+        return results.stream().map(result -> result.getRule().getId()).collect(Collectors.toList());
+    }
+}
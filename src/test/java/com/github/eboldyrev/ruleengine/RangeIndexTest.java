@@ -0,0 +1,96 @@
+package com.github.eboldyrev.ruleengine;
+
+import com.github.eboldyrev.ruleengine.attributes.NumericRange;
+import org.junit.Test;
+
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RangeIndexTest {
+
+    @Test
+    public void collect__overlappingRanges__rulesContainingNumberCollected() {
+        RangeIndex.Builder builder = new RangeIndex.Builder();
+        builder.add(NumericRange.parse("[0..10)"), 0);
+        builder.add(NumericRange.parse("[5..20]"), 1);
+        builder.add(NumericRange.parse("(10..)"), 2);
+        builder.add(NumericRange.parse("(..0]"), 3);
+        RangeIndex index = builder.build();
+
+        assertArrayEquals(new int[]{0, 3}, collect(index, 0));
+        assertArrayEquals(new int[]{0}, collect(index, 4.5));
+        assertArrayEquals(new int[]{0, 1}, collect(index, 5));
+        assertArrayEquals(new int[]{1}, collect(index, 10));
+        assertArrayEquals(new int[]{1, 2}, collect(index, 20));
+        assertArrayEquals(new int[]{2}, collect(index, 1e9));
+        assertArrayEquals(new int[]{3}, collect(index, -1e9));
+    }
+
+    @Test
+    public void collect__numberOutsideRangesOrNaN__nothingCollected() {
+        RangeIndex.Builder builder = new RangeIndex.Builder();
+        builder.add(NumericRange.parse("(1..2)"), 0);
+        RangeIndex index = builder.build();
+
+        RuleIndex.PostingLists postings = new RuleIndex.PostingLists();
+        index.collect(1, postings);
+        index.collect(2, postings);
+        index.collect(Double.NaN, postings);
+
+        assertEquals(0, postings.size());
+    }
+
+    @Test
+    public void build__nestedRanges__positionsLinearInRangesCount() {
+        RangeIndex.Builder builder = new RangeIndex.Builder();
+        int rangesCount = 4096;
+        for (int i = 0; i < rangesCount; i++) {
+            builder.add(NumericRange.parse("[" + -i + ".." + i + "]"), i);
+        }
+        RangeIndex index = builder.build();
+
+        // every range is kept in at most two nodes of every tree level
+        assertTrue(index.positionsCount() <= rangesCount * 2 * 16);
+        assertEquals(rangesCount, collect(index, 0).length);
+        assertArrayEquals(new int[]{4094, 4095}, collect(index, -4094));
+        assertArrayEquals(new int[]{4095}, collect(index, 4094.5));
+    }
+
+    @Test
+    public void with__knownAndNewBounds__addedRangesCollected() {
+        RangeIndex.Builder builder = new RangeIndex.Builder();
+        builder.add(NumericRange.parse("[0..10)"), 0);
+        builder.add(NumericRange.parse("[5..20]"), 1);
+        RangeIndex index = builder.build();
+        RangeIndex.Builder knownBounds = new RangeIndex.Builder();
+        knownBounds.add(NumericRange.parse("(5..10]"), 2);
+        RangeIndex.Builder newBounds = new RangeIndex.Builder();
+        newBounds.add(NumericRange.parse("[7..)"), 3);
+
+        RangeIndex withKnown = index.with(knownBounds);
+        RangeIndex withBoth = withKnown.with(newBounds);
+
+        assertArrayEquals(new int[]{0, 1}, collect(index, 7));
+        assertArrayEquals(new int[]{0, 1, 2}, collect(withKnown, 7));
+        assertArrayEquals(new int[]{1, 2}, collect(withKnown, 10));
+        assertArrayEquals(new int[]{0, 1, 2, 3}, collect(withBoth, 7));
+        assertArrayEquals(new int[]{1, 2, 3}, collect(withBoth, 10));
+        assertArrayEquals(new int[]{0, 1}, collect(withBoth, 5));
+    }
+
+    // union of collected posting lists
+    private static int[] collect(RangeIndex index, double number) {
+        RuleIndex.PostingLists postings = new RuleIndex.PostingLists();
+        index.collect(number, postings);
+        TreeSet<Integer> positions = new TreeSet<>();
+        for (int i = 0; i < postings.size(); i++) {
+            for (int position : postings.get(i)) {
+                positions.add(position);
+            }
+        }
+        return positions.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
@@ -0,0 +1,106 @@
+package com.github.eboldyrev.ruleengine;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RuleEngine_allocationTest {
+
+    private com.sun.management.ThreadMXBean threadMXBean;
+
+    @Before
+    public void setUp() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        threadMXBean = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @Test
+    public void query__preparedQueryWithoutAmbiguity__nothingAllocated() {
+        for (RuleEngine.EvaluationMode mode : RuleEngine.EvaluationMode.values()) {
+            // setup
+            Map<String, Integer> attributeDefinitions = new HashMap<>();
+            attributeDefinitions.put("Brand", 1);
+            attributeDefinitions.put("Country", 1);
+            Map<String, String> rules = new HashMap<>();
+            for (int i = 0; i < 100; i++) {
+                rules.put(String.valueOf(i), "Brand:Brand" + i + "#Country:C" + (i % 7) + "*=" + i);
+            }
+            rules.put("any", "Country:*=any");
+            RuleEngine ruleEngine = new RuleEngine(null, null, mode);
+            ruleEngine.setRulesAndAttributeDefinitions(attributeDefinitions, rules);
+            AttributeHandle brand = ruleEngine.attributeHandle("Brand");
+            AttributeHandle country = ruleEngine.attributeHandle("Country");
+            PreparedQuery hit = ruleEngine.newQueryBuilder().set(brand, "Brand15").set(country, "C1x").build();
+            PreparedQuery miss = ruleEngine.newQueryBuilder().set(brand, "Unknown").build();
+            for (int i = 0; i < 10_000; i++) {
+                ruleEngine.query(hit);
+                ruleEngine.query(miss);
+            }
+
+            // act
+            long threadId = Thread.currentThread().getId();
+            long before = threadMXBean.getThreadAllocatedBytes(threadId);
+            String hitResult = null;
+            String missResult = null;
+            for (int i = 0; i < 1000; i++) {
+                hitResult = ruleEngine.query(hit);
+                missResult = ruleEngine.query(miss);
+            }
+            long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+
+            // verify
+            assertEquals("15", hitResult);
+            assertNull(missResult);
+            // 2000 queries, so any per query allocation would be far above the measurement noise
+            assertTrue(mode + " allocated " + allocated + " bytes", allocated < 1024);
+        }
+    }
+
+    @Test
+    public void queryOutcome__reusedOutcomeAndAmbiguousQuery__nothingAllocated() {
+        for (RuleEngine.EvaluationMode mode : RuleEngine.EvaluationMode.values()) {
+            // setup
+            Map<String, Integer> attributeDefinitions = new HashMap<>();
+            attributeDefinitions.put("Brand", 1);
+            attributeDefinitions.put("Country", 1);
+            Map<String, String> rules = new HashMap<>();
+            for (int i = 0; i < 100; i++) {
+                rules.put(String.valueOf(i), "Brand:Brand" + i + "=" + i);
+                rules.put("c" + i, "Country:C" + i + "=" + i);
+            }
+            RuleEngine ruleEngine = new RuleEngine(null, null, mode);
+            ruleEngine.setRulesAndAttributeDefinitions(attributeDefinitions, rules);
+            AttributeHandle brand = ruleEngine.attributeHandle("Brand");
+            AttributeHandle country = ruleEngine.attributeHandle("Country");
+            PreparedQuery ambiguous = ruleEngine.newQueryBuilder().set(brand, "Brand15").set(country, "C15").build();
+            QueryOutcome outcome = new QueryOutcome();
+            for (int i = 0; i < 10_000; i++) {
+                ruleEngine.queryOutcome(ambiguous, outcome);
+            }
+
+            // act
+            long threadId = Thread.currentThread().getId();
+            long before = threadMXBean.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < 2000; i++) {
+                ruleEngine.queryOutcome(ambiguous, outcome);
+            }
+            long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+
+            // verify
+            assertEquals(QueryOutcome.Status.AMBIGUOUS, outcome.getStatus());
+            assertTrue(mode + " allocated " + allocated + " bytes", allocated < 1024);
+        }
+    }
+
+}
@@ -0,0 +1,226 @@
+package com.github.eboldyrev.ruleengine;
+
+import com.github.eboldyrev.ruleengine.exception.AmbiguousRulesFound;
+import com.github.eboldyrev.ruleengine.exception.MultiplyRulesFound;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class RuleEngine_ambiguityTest {
+
+    private static final String[] NAMES = {"Brand", "Country", "OldClient"};
+    private static final String[] VALUES = {"a", "ab", "abc", "b", "ba", "bab", "c"};
+
+    private Map<String, Integer> attributeDefinitions;
+    private RuleEngine ruleEngine;
+
+    @Before
+    public void setUp() {
+        attributeDefinitions = new HashMap<>();
+        attributeDefinitions.put("Brand", 1);
+        attributeDefinitions.put("Country", 1);
+        attributeDefinitions.put("OldClient", 1);
+
+        ruleEngine = new RuleEngine(null, null);
+        ruleEngine.setAttributesDefinitions(attributeDefinitions);
+    }
+
+    @Test
+    public void setRules__rejectRulesAndAmbiguousRules__exceptionThrownAndRulesNotChanged() {
+        // setup
+        ruleEngine.setAmbiguityPolicy(RuleEngine.AmbiguityPolicy.REJECT_RULES);
+        ruleEngine.setRules(Collections.singletonMap("1", "Brand:Puma=5%"));
+        Map<String, String> rules = new HashMap<>();
+        rules.put("1", "Brand:Puma=5%");
+        rules.put("2", "Country:Russia=1%");
+        rules.put("3", "Brand:Puma#Country:Russia=10%");
+
+        // act
+        try {
+            ruleEngine.setRules(rules);
+            fail("AmbiguousRulesFound expected");
+        } catch (AmbiguousRulesFound e) {
+            // verify
+            assertEquals(Collections.singletonList(Arrays.asList("1", "2")), e.getAmbiguousRuleIds());
+        }
+        assertEquals(1, ruleEngine.getRules().size());
+    }
+
+    @Test
+    public void setAmbiguityPolicy__concurrentAdds__policyNotLost() throws InterruptedException {
+        // setup
+        ruleEngine.setRules(Collections.singletonMap("0", "Brand:Puma=5%"));
+        Thread adder = new Thread(() -> {
+            for (int i = 1; i < 200; i++) {
+                ruleEngine.addRule(String.valueOf(i), "Country:C" + i + "=" + i);
+            }
+        });
+
+        // act
+        adder.start();
+        ruleEngine.setAmbiguityPolicy(RuleEngine.AmbiguityPolicy.TIE_BREAK_BY_ID);
+        adder.join();
+        ruleEngine.addRule("tie", "Country:Russia=1%");
+
+        // verify
+        assertEquals(RuleEngine.AmbiguityPolicy.TIE_BREAK_BY_ID, ruleEngine.getAmbiguityPolicy());
+        assertEquals("5%", ruleEngine.query("Brand:Puma#Country:Russia"));
+    }
+
+    @Test
+    public void setAmbiguityPolicy__pinnedRules__pinnedRulesKeepTheirPolicy() {
+        // setup
+        Map<String, String> rules = new HashMap<>();
+        rules.put("1", "Brand:Puma=5%");
+        rules.put("2", "Country:Russia=1%");
+        ruleEngine.setRules(rules);
+        PinnedRules pinned = ruleEngine.pinRules();
+
+        // act
+        ruleEngine.setAmbiguityPolicy(RuleEngine.AmbiguityPolicy.TIE_BREAK_BY_ID);
+
+        // verify
+        assertEquals("5%", ruleEngine.query("Brand:Puma#Country:Russia"));
+        try {
+            pinned.query("Brand:Puma#Country:Russia");
+            fail("MultiplyRulesFound expected");
+        } catch (MultiplyRulesFound e) {
+            assertEquals(2, e.getRulesResults().size());
+        }
+    }
+
+    @Test
+    public void setRules__rejectRulesAndNotAmbiguousRules__rulesSet() {
+        // setup
+        ruleEngine.setAmbiguityPolicy(RuleEngine.AmbiguityPolicy.REJECT_RULES);
+        Map<String, String> rules = new HashMap<>();
+        rules.put("1", "Brand:Puma=5%");
+        rules.put("2", "Brand:Nike=3%");
+        rules.put("3", "Country:Ru*=1%");
+        rules.put("4", "Country:Ge*=2%");
+
+        // act
+        ruleEngine.setRules(rules);
+
+        // verify
+        assertEquals("5%", ruleEngine.query("Brand:Puma#Country:Germany"));
+        assertEquals("1%", ruleEngine.query("Country:Russia"));
+    }
+
+    @Test
+    public void setAmbiguityPolicy__rejectRulesAndCurrentRulesAmbiguous__exceptionThrownAndPolicyNotChanged() {
+        // setup
+        Map<String, String> rules = new HashMap<>();
+        rules.put("1", "Brand:Puma=5%");
+        rules.put("2", "Country:Russia=1%");
+        ruleEngine.setRules(rules);
+
+        // act
+        try {
+            ruleEngine.setAmbiguityPolicy(RuleEngine.AmbiguityPolicy.REJECT_RULES);
+            fail("AmbiguousRulesFound expected");
+        } catch (AmbiguousRulesFound e) {
+            // verify
+            assertEquals(RuleEngine.AmbiguityPolicy.FAIL_ON_QUERY, ruleEngine.getAmbiguityPolicy());
+        }
+    }
+
+    @Test
+    public void query__tieBreakById__ruleWithSmallestIdWins() {
+        for (RuleEngine.EvaluationMode mode : RuleEngine.EvaluationMode.values()) {
+            // setup
+            RuleEngine ruleEngine = new RuleEngine(null, null, mode);
+            ruleEngine.setAmbiguityPolicy(RuleEngine.AmbiguityPolicy.TIE_BREAK_BY_ID);
+            Map<String, String> rules = new HashMap<>();
+            rules.put("b", "Brand:Puma=5%");
+            rules.put("a", "Country:Russia=1%");
+            rules.put("c", "OldClient:Yes=2%");
+            ruleEngine.setRulesAndAttributeDefinitions(attributeDefinitions, rules);
+
+            // act
+            String result = ruleEngine.query("Brand:Puma#Country:Russia#OldClient:Yes");
+
+            // verify
+            assertEquals(mode.toString(), "1%", result);
+            assertEquals(mode.toString(), "5%", ruleEngine.query("Brand:Puma#OldClient:Yes"));
+        }
+    }
+
+    @Test
+    public void query__rulesAcceptedByRejectRules__noMultiplyRulesFound() {
+        Random random = new Random(3);
+        int accepted = 0;
+        for (int attempt = 0; attempt < 200; attempt++) {
+            // setup
+            Map<String, String> rules = randomRules(random, 6);
+            RuleEngine rejecting = new RuleEngine(null, null);
+            rejecting.setAmbiguityPolicy(RuleEngine.AmbiguityPolicy.REJECT_RULES);
+            RuleEngine failing = new RuleEngine(null, null);
+            failing.setRulesAndAttributeDefinitions(attributeDefinitions, rules);
+            try {
+                rejecting.setRulesAndAttributeDefinitions(attributeDefinitions, rules);
+                accepted++;
+            } catch (AmbiguousRulesFound e) {
+                continue;
+            }
+
+            for (int i = 0; i < 200; i++) {
+                String query = randomQuery(random);
+                try {
+                    // act
+                    String result = failing.query(query);
+
+                    // verify
+                    assertEquals(query, result, rejecting.query(query));
+                } catch (MultiplyRulesFound e) {
+                    fail(rules + " accepted, but " + query + " is ambiguous");
+                }
+            }
+        }
+        assertTrue(accepted > 0);
+    }
+
+    private static Map<String, String> randomRules(Random random, int count) {
+        Map<String, String> rules = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            List<String> conditions = new ArrayList<>();
+            for (String name : NAMES) {
+                if (random.nextInt(2) == 0) {
+                    continue;
+                }
+                String value = VALUES[random.nextInt(VALUES.length)];
+                switch (random.nextInt(4)) {
+                    case 0:
+                        conditions.add(name + ":" + value + "*");
+                        break;
+                    case 1:
+                        conditions.add(name + ":*" + value);
+                        break;
+                    default:
+                        conditions.add(name + ":" + value);
+                }
+            }
+            if (conditions.isEmpty()) {
+                conditions.add(NAMES[0] + ":" + VALUES[random.nextInt(VALUES.length)]);
+            }
+            rules.put(String.valueOf(i), String.join("#", conditions) + "=" + i);
+        }
+        return rules;
+    }
+
+    private static String randomQuery(Random random) {
+        List<String> attributes = new ArrayList<>();
+        for (String name : NAMES) {
+            if (random.nextInt(4) != 0) {
+                attributes.add(name + ":" + VALUES[random.nextInt(VALUES.length)] + VALUES[random.nextInt(VALUES.length)]);
+            }
+        }
+        if (attributes.isEmpty()) {
+            attributes.add(NAMES[1] + ":" + VALUES[0]);
+        }
+        return String.join("#", attributes);
+    }
+}
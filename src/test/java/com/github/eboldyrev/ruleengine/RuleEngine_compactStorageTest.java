@@ -0,0 +1,124 @@
+package com.github.eboldyrev.ruleengine;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+
+import static com.github.eboldyrev.ruleengine.RandomRules.queryOrMultiply;
+import static org.junit.Assert.*;
+
+public class RuleEngine_compactStorageTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private RandomRules random;
+    private Map<String, Integer> attributeDefinitions;
+    private Map<String, String> rules;
+    private RuleEngine objects;
+
+    @Before
+    public void setUp() {
+        random = new RandomRules(7);
+        attributeDefinitions = RandomRules.attributeDefinitions();
+        rules = random.rules(300);
+
+        objects = new RuleEngine(null, null);
+        objects.setRulesAndAttributeDefinitions(attributeDefinitions, rules);
+    }
+
+    @Test
+    public void query__compactStorage__sameResultsAsObjectStorage() {
+        for (RuleEngine.EvaluationMode mode : RuleEngine.EvaluationMode.values()) {
+            // setup
+            RuleEngine compact = new RuleEngine(null, null, mode, RuleEngine.StorageMode.COMPACT);
+            compact.setRulesAndAttributeDefinitions(attributeDefinitions, rules);
+
+            for (int i = 0; i < 500; i++) {
+                String query = random.query();
+
+                // act
+                String result = queryOrMultiply(compact, query);
+
+                // verify
+                assertEquals(mode + " " + query, queryOrMultiply(objects, query), result);
+            }
+        }
+    }
+
+    @Test
+    public void getRules__compactStorage__rulesAreRestored() {
+        // setup
+        RuleEngine compact = new RuleEngine(null, null, RuleEngine.EvaluationMode.INDEXED, RuleEngine.StorageMode.COMPACT);
+        compact.setRulesAndAttributeDefinitions(attributeDefinitions, rules);
+
+        // act
+        List<com.github.eboldyrev.ruleengine.Rule> compactRules = compact.getRules();
+
+        // verify
+        List<com.github.eboldyrev.ruleengine.Rule> objectRules = objects.getRules();
+        assertEquals(objectRules.size(), compactRules.size());
+        for (int i = 0; i < objectRules.size(); i++) {
+            assertEquals(objectRules.get(i).getId(), compactRules.get(i).getId());
+            assertEquals(objectRules.get(i).asString(), compactRules.get(i).asString());
+            assertEquals(objectRules.get(i).getWeight(), compactRules.get(i).getWeight());
+        }
+        assertEquals(objects.getRulesAsStrings(), compact.getRulesAsStrings());
+    }
+
+    @Test
+    public void getRules__compactStorage__equalResultsAreShared() {
+        // setup
+        Map<String, String> rules = new HashMap<>();
+        rules.put("1", "Brand:Puma=" + new String("10%"));
+        rules.put("2", "Brand:Nike=" + new String("10%"));
+        RuleEngine compact = new RuleEngine(null, null, RuleEngine.EvaluationMode.INDEXED, RuleEngine.StorageMode.COMPACT);
+        compact.setRulesAndAttributeDefinitions(attributeDefinitions, rules);
+
+        // act
+        String puma = compact.query("Brand:Puma");
+        String nike = compact.query("Brand:Nike");
+
+        // verify
+        assertEquals("10%", puma);
+        assertSame(puma, nike);
+    }
+
+    @Test
+    public void addRule__compactStorage__ruleIsQueried() {
+        // setup
+        RuleEngine compact = new RuleEngine(null, null, RuleEngine.EvaluationMode.INDEXED, RuleEngine.StorageMode.COMPACT);
+        compact.setRulesAndAttributeDefinitions(attributeDefinitions, Collections.singletonMap("1", "Brand:Puma=5%"));
+
+        // act
+        compact.addRule("2", "Brand:Puma#Country:Russia=10%");
+
+        // verify
+        assertEquals("10%", compact.query("Brand:Puma#Country:Russia"));
+        assertEquals("5%", compact.query("Brand:Puma"));
+        assertEquals(2, compact.getRules().size());
+    }
+
+    @Test
+    public void loadSnapshot__compactStorage__sameQueryResults() throws IOException {
+        // setup
+        Path path = folder.newFile("rules.snapshot").toPath();
+        objects.writeSnapshot(path);
+        RuleEngine compact = new RuleEngine(null, null, RuleEngine.EvaluationMode.COMPILED, RuleEngine.StorageMode.COMPACT);
+
+        // act
+        compact.loadSnapshot(path);
+
+        // verify
+        assertEquals(objects.getRulesAsStrings(), compact.getRulesAsStrings());
+        for (int i = 0; i < 500; i++) {
+            String query = random.query();
+            assertEquals(query, queryOrMultiply(objects, query), queryOrMultiply(compact, query));
+        }
+    }
+}
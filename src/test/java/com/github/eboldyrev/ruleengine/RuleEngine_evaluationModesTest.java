@@ -0,0 +1,132 @@
+package com.github.eboldyrev.ruleengine;
+
+import com.github.eboldyrev.ruleengine.attributes.RuleAttribute;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static com.github.eboldyrev.ruleengine.RandomRules.MULTIPLY;
+import static com.github.eboldyrev.ruleengine.RandomRules.queryOrMultiply;
+import static com.github.eboldyrev.ruleengine.RandomRules.ruleIds;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares every evaluation mode with a plain scan over all rules on randomly generated rules and queries.
+ */
+public class RuleEngine_evaluationModesTest {
+
+    private RandomRules random;
+    private Map<String, Integer> attributeDefinitions;
+
+    @Before
+    public void setUp() {
+        random = new RandomRules(42);
+        attributeDefinitions = RandomRules.attributeDefinitions();
+    }
+
+    @Test
+    public void query__randomRulesAndQueries__allModesReturnSameResultAsFullScan() {
+        for (int round = 0; round < 20; round++) {
+            Map<String, String> rules = random.rules(50 + random.nextInt(200));
+            Map<RuleEngine.EvaluationMode, RuleEngine> engines = new EnumMap<>(RuleEngine.EvaluationMode.class);
+            for (RuleEngine.EvaluationMode mode : RuleEngine.EvaluationMode.values()) {
+                RuleEngine engine = new RuleEngine(null, null, mode);
+                engine.setRulesAndAttributeDefinitions(attributeDefinitions, rules);
+                engines.put(mode, engine);
+            }
+            RuleEngine reference = engines.get(RuleEngine.EvaluationMode.INDEXED);
+
+            for (int i = 0; i < 200; i++) {
+                String query = random.query();
+                String expected = fullScan(reference, query);
+                for (Map.Entry<RuleEngine.EvaluationMode, RuleEngine> entry : engines.entrySet()) {
+                    assertEquals(entry.getKey() + " " + query, expected, queryOrMultiply(entry.getValue(), query));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void query__tiedRulesFromDifferentBranches__allModesReportRulesInSameOrder() {
+        // setup
+        Map<String, Integer> definitions = new HashMap<>();
+        definitions.put("a", 1);
+        definitions.put("b", 1);
+        Map<String, String> rules = new HashMap<>();
+        rules.put("1", "a:x*#b:y=1");
+        rules.put("2", "a:x#b:*y=2");
+        rules.put("3", "a:*#b:y=3");
+
+        for (RuleEngine.EvaluationMode mode : RuleEngine.EvaluationMode.values()) {
+            RuleEngine engine = new RuleEngine(null, null, mode);
+            engine.setRulesAndAttributeDefinitions(definitions, rules);
+
+            // act
+            String result = queryOrMultiply(engine, "a:x#b:y");
+
+            // verify
+            assertEquals(mode.toString(), MULTIPLY + Arrays.asList("1", "2"), result);
+        }
+    }
+
+    @Test
+    public void queryTopK__randomRulesAndQueries__allModesReturnSameRulesAsFullScan() {
+        for (int round = 0; round < 10; round++) {
+            Map<String, String> rules = random.rules(50 + random.nextInt(200));
+            List<RuleEngine> engines = new ArrayList<>();
+            for (RuleEngine.EvaluationMode mode : RuleEngine.EvaluationMode.values()) {
+                RuleEngine engine = new RuleEngine(null, null, mode);
+                engine.setRulesAndAttributeDefinitions(attributeDefinitions, rules);
+                engines.add(engine);
+            }
+
+            for (int i = 0; i < 100; i++) {
+                String query = random.query();
+                List<String> expected = allMatches(engines.get(0), query);
+                for (RuleEngine engine : engines) {
+                    String message = engine.getEvaluationMode() + " " + query;
+                    assertEquals(message, expected, ruleIds(engine.queryAllMatches(query)));
+                    assertEquals(message, expected.subList(0, Math.min(3, expected.size())), ruleIds(engine.queryTopK(query, 3)));
+                }
+            }
+        }
+    }
+
+    private static List<String> allMatches(RuleEngine engine, String query) {
+        List<RuleAttribute> queryAttributes = Rule.queryFromString(query, engine.getMetadata().getAttributeDefinitions(), null, null);
+        Set<String> queryAttributeNames = queryAttributes.stream().map(RuleAttribute::getName).collect(Collectors.toSet());
+        // rules are already sorted by descending weight
+        return engine.getRules().stream()
+                .filter(rule -> rule.execute(queryAttributes, queryAttributeNames).getStatus() == RuleResult.Status.EQUAL)
+                .map(Rule::getId)
+                .collect(Collectors.toList());
+    }
+
+    private static String fullScan(RuleEngine engine, String query) {
+        List<RuleAttribute> queryAttributes = Rule.queryFromString(query, engine.getMetadata().getAttributeDefinitions(), null, null);
+        Set<String> queryAttributeNames = queryAttributes.stream().map(RuleAttribute::getName).collect(Collectors.toSet());
+
+        long bestWeight = -1;
+        List<Rule> best = new ArrayList<>();
+        for (Rule rule : engine.getRules()) {
+            if (rule.execute(queryAttributes, queryAttributeNames).getStatus() != RuleResult.Status.EQUAL) {
+                continue;
+            }
+            if (rule.getWeight() > bestWeight) {
+                bestWeight = rule.getWeight();
+                best.clear();
+            }
+            if (rule.getWeight() == bestWeight) {
+                best.add(rule);
+            }
+        }
+
+        if (best.isEmpty()) {
+            return null;
+        }
+        return best.size() > 1 ? MULTIPLY + best.stream().map(Rule::getId).collect(Collectors.toList())
+                : best.get(0).getResult();
+    }
+}
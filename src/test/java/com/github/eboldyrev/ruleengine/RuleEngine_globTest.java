@@ -0,0 +1,136 @@
+package com.github.eboldyrev.ruleengine;
+
+import com.github.eboldyrev.ruleengine.attributes.GlobRuleAttribute;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class RuleEngine_globTest {
+
+    private Map<String, Integer> attributeDefinitions;
+    private Map<String, String> rules;
+
+    @Before
+    public void setUp() {
+        attributeDefinitions = new HashMap<>();
+        attributeDefinitions.put("Domain", 1);
+        attributeDefinitions.put("Brand", 1);
+
+        rules = new HashMap<>();
+        rules.put("1", "Domain:*shop*=1%");
+        rules.put("2", "Domain:www.*.com=2%");
+        rules.put("3", "Domain:www.shop.com=3%");
+        rules.put("4", "Domain:*shop*#Brand:Puma=4%");
+    }
+
+    @Test
+    public void query__globRules__ruleWithMatchingPatternFound() {
+        for (RuleEngine.EvaluationMode mode : RuleEngine.EvaluationMode.values()) {
+            // setup
+            RuleEngine ruleEngine = new RuleEngine(null, null, mode);
+            ruleEngine.setRulesAndAttributeDefinitions(attributeDefinitions, rules);
+
+            // act & verify
+            assertEquals(mode.toString(), "1%", ruleEngine.query("Domain:myshop.org"));
+            assertEquals(mode.toString(), "2%", ruleEngine.query("Domain:www.puma.com"));
+            assertEquals(mode.toString(), "3%", ruleEngine.query("Domain:www.shop.com"));
+            assertEquals(mode.toString(), "4%", ruleEngine.query("Domain:shop#Brand:Puma"));
+            assertNull(mode.toString(), ruleEngine.query("Domain:www.puma.org"));
+        }
+    }
+
+    @Test
+    public void query__cachedGlobQuery__differentValuesNotShared() {
+        // setup
+        RuleEngine ruleEngine = new RuleEngine(null, null);
+        ruleEngine.setRulesAndAttributeDefinitions(attributeDefinitions, rules);
+        ruleEngine.enableQueryCache(16);
+
+        // act
+        String first = ruleEngine.query("Domain:shopping");
+        String second = ruleEngine.query("Domain:www.nike.com");
+
+        // verify
+        assertEquals("1%", first);
+        assertEquals("2%", second);
+    }
+
+    @Test
+    public void getRules__compactStorage__globRulesRestored() {
+        // setup
+        RuleEngine ruleEngine = new RuleEngine(null, null, RuleEngine.EvaluationMode.INDEXED,
+                RuleEngine.StorageMode.COMPACT);
+
+        // act
+        ruleEngine.setRulesAndAttributeDefinitions(attributeDefinitions, rules);
+
+        // verify
+        Set<String> restored = new TreeSet<>();
+        for (Rule rule : ruleEngine.getRules()) {
+            restored.add(rule.asString());
+        }
+        assertTrue(restored.contains("Domain:www.*.com=2%"));
+        assertEquals("1%", ruleEngine.query("Domain:shop"));
+    }
+
+    @Test
+    public void query__randomGlobRules__sameResultAsPatternMatching() {
+        Random random = new Random(5);
+        for (int attempt = 0; attempt < 20; attempt++) {
+            // setup
+            Map<String, String> rules = new HashMap<>();
+            for (int i = 0; i < 50; i++) {
+                String pattern = randomString(random, "ab*", 1 + random.nextInt(5)) + "*"
+                        + randomString(random, "ab*", random.nextInt(4));
+                String rule = "Domain:" + pattern;
+                if (random.nextBoolean()) {
+                    rule += "#Brand:" + (random.nextBoolean() ? "Puma" : "Nike");
+                }
+                rules.put(String.valueOf(i), rule + "=" + i);
+            }
+            List<RuleEngine> engines = new ArrayList<>();
+            for (RuleEngine.EvaluationMode mode : RuleEngine.EvaluationMode.values()) {
+                RuleEngine ruleEngine = new RuleEngine(null, null, mode);
+                ruleEngine.setRulesAndAttributeDefinitions(attributeDefinitions, rules);
+                engines.add(ruleEngine);
+            }
+
+            for (int q = 0; q < 200; q++) {
+                String value = randomString(random, "ab", 1 + random.nextInt(7));
+                boolean puma = random.nextBoolean();
+                String query = "Domain:" + value + (puma ? "#Brand:Puma" : "");
+                Set<String> expected = new TreeSet<>();
+                for (Map.Entry<String, String> rule : rules.entrySet()) {
+                    String conditions = rule.getValue().substring(0, rule.getValue().lastIndexOf('='));
+                    String[] parts = conditions.split("#");
+                    if (GlobRuleAttribute.matches(parts[0].substring("Domain:".length()), value)
+                            && (parts.length == 1 || (puma && parts[1].equals("Brand:Puma")))) {
+                        expected.add(rule.getKey());
+                    }
+                }
+
+                // act
+                for (RuleEngine ruleEngine : engines) {
+                    Set<String> ids = new TreeSet<>();
+                    for (RuleResult result : ruleEngine.queryAllMatches(query)) {
+                        ids.add(result.getRule().getId());
+                    }
+
+                    // verify
+                    assertEquals(query, expected, ids);
+                }
+            }
+        }
+    }
+
+    private static String randomString(Random random, String chars, int length) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            sb.append(chars.charAt(random.nextInt(chars.length())));
+        }
+        return sb.toString();
+    }
+}
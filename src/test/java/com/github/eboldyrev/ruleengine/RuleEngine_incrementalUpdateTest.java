@@ -0,0 +1,286 @@
+package com.github.eboldyrev.ruleengine;
+
+import com.github.eboldyrev.ruleengine.exception.RuleEngineException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static com.github.eboldyrev.ruleengine.RandomRules.queryOrMultiply;
+import static org.junit.Assert.*;
+
+public class RuleEngine_incrementalUpdateTest {
+
+    private RuleEngine ruleEngine;
+
+    @Before
+    public void setUp() {
+        Map<String, Integer> attributeDefinitions = new HashMap<>();
+        attributeDefinitions.put("Brand", 1);
+        attributeDefinitions.put("Country", 1);
+
+        Map<String, String> rules = new HashMap<>();
+        rules.put("1", "Brand:Puma#Country:Russia=10%");
+        rules.put("2", "Brand:Puma=5%");
+
+        ruleEngine = new RuleEngine(null, null);
+        ruleEngine.setRulesAndAttributeDefinitions(attributeDefinitions, rules);
+    }
+
+    @Test
+    public void addRule__newRule__ruleFoundAndOtherRulesNotParsedAgain() {
+        // setup
+        Rule existing = findRule("1");
+
+        // act
+        ruleEngine.addRule("3", "Country:Germany=3%");
+
+        // verify
+        assertEquals("3%", ruleEngine.query("Country:Germany"));
+        assertEquals(3, ruleEngine.getRules().size());
+        assertSame(existing, findRule("1"));
+    }
+
+    @Test(expected = RuleEngineException.class)
+    public void addRule__existingId__exceptionThrown() {
+        ruleEngine.addRule("1", "Country:Germany=3%");
+    }
+
+    @Test
+    public void upsertRules__existingAndNewRules__replacedAndAdded() {
+        // setup
+        Map<String, String> rules = new HashMap<>();
+        rules.put("2", "Brand:Puma=7%");
+        rules.put("3", "Country:Germany=3%");
+
+        // act
+        ruleEngine.upsertRules(rules);
+
+        // verify
+        assertEquals("7%", ruleEngine.query("Brand:Puma"));
+        assertEquals("3%", ruleEngine.query("Country:Germany"));
+        assertEquals("10%", ruleEngine.query("Brand:Puma#Country:Russia"));
+        assertEquals(3, ruleEngine.getRules().size());
+    }
+
+    @Test
+    public void upsertRules__invalidRule__rulesNotChanged() {
+        // setup
+        Map<String, String> rules = new HashMap<>();
+        rules.put("2", "Brand:Puma=7%");
+        rules.put("3", "Size:XL=3%");
+
+        // act
+        try {
+            ruleEngine.upsertRules(rules);
+            fail("RuleEngineException expected");
+        } catch (RuleEngineException e) {
+            // expected
+        }
+
+        // verify
+        assertEquals("5%", ruleEngine.query("Brand:Puma"));
+    }
+
+    @Test
+    public void upsertRules__invalidReplacementSkipped__existingRuleKept() {
+        // setup
+        ruleEngine.setParsePolicy(ParsePolicy.skipInvalid());
+        Map<String, String> rules = new HashMap<>();
+        rules.put("1", "Brand:Puma#Unknown:x=1%");
+        rules.put("3", "Country:Germany=3%");
+
+        // act
+        ruleEngine.upsertRules(rules);
+
+        // verify
+        assertEquals("10%", ruleEngine.query("Brand:Puma#Country:Russia"));
+        assertEquals("3%", ruleEngine.query("Country:Germany"));
+        assertEquals(3, ruleEngine.getRules().size());
+    }
+
+    @Test
+    public void incrementalUpdates__compactStorage__rulesUpdated() {
+        // setup
+        RuleEngine compact = new RuleEngine(null, null, RuleEngine.EvaluationMode.INDEXED, RuleEngine.StorageMode.COMPACT);
+        compact.setRulesAndAttributeDefinitions(ruleEngine.getAttributesDefinitions(), ruleEngine.getRulesAsStrings());
+        long version = compact.getRulesVersion();
+
+        // act
+        compact.addRule("3", "Country:Germany=3%");
+        compact.upsertRules(Collections.singletonMap("2", "Brand:Puma=7%"));
+        compact.removeRules(Arrays.asList("1", "unknown"));
+        compact.removeRule("unknown");
+
+        // verify
+        assertEquals(version + 3, compact.getRulesVersion());
+        assertEquals("7%", compact.query("Brand:Puma#Country:Russia"));
+        assertEquals("3%", compact.query("Country:Germany"));
+        assertEquals(2, compact.getRules().size());
+    }
+
+    @Test
+    public void removeRules__existingAndUnknownIds__existingRemoved() {
+        // act
+        ruleEngine.removeRules(Arrays.asList("1", "42"));
+
+        // verify
+        assertEquals(1, ruleEngine.getRules().size());
+        assertEquals("5%", ruleEngine.query("Brand:Puma#Country:Russia"));
+    }
+
+    @Test
+    public void removeRule__cachedResult__cacheInvalidated() {
+        // setup
+        ruleEngine.enableQueryCache(16);
+        ruleEngine.query("Brand:Puma");
+
+        // act
+        ruleEngine.removeRule("2");
+
+        // verify
+        assertNull(ruleEngine.query("Brand:Puma"));
+    }
+
+    @Test
+    public void addRule__concurrentAdds__noRuleLost() throws InterruptedException {
+        // setup
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int thread = t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 50; i++) {
+                    ruleEngine.addRule(thread + "-" + i, "Country:C" + thread + "-" + i + "=" + i);
+                }
+            }));
+        }
+
+        // act
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // verify
+        assertEquals(202, ruleEngine.getRules().size());
+    }
+
+    @Test
+    public void incrementalUpdates__randomChanges__sameRulesAndResultsAsRulesSetAgain() {
+        for (RuleEngine.EvaluationMode mode : RuleEngine.EvaluationMode.values()) {
+            for (RuleEngine.StorageMode storage : RuleEngine.StorageMode.values()) {
+                // setup
+                RandomRules random = new RandomRules(17);
+                List<String> pool = new ArrayList<>(random.rules(400).values());
+                Map<String, String> expected = new HashMap<>(random.rules(400));
+                RuleEngine engine = new RuleEngine(String::toLowerCase, null, mode, storage);
+                engine.setRulesAndAttributeDefinitions(RandomRules.attributeDefinitions(), expected);
+
+                for (int step = 0; step < 60; step++) {
+                    // act
+                    String id = String.valueOf(random.nextInt(500));
+                    String ruleStr = pool.get(random.nextInt(pool.size()));
+                    switch (random.nextInt(3)) {
+                        case 0:
+                            if (!expected.containsKey(id)) {
+                                engine.addRule(id, ruleStr);
+                                expected.put(id, ruleStr);
+                            }
+                            break;
+                        case 1:
+                            Map<String, String> upserted = new HashMap<>();
+                            upserted.put(id, ruleStr);
+                            upserted.put(String.valueOf(random.nextInt(500)), pool.get(random.nextInt(pool.size())));
+                            engine.upsertRules(upserted);
+                            expected.putAll(upserted);
+                            break;
+                        default:
+                            List<String> removed = Arrays.asList(id, String.valueOf(random.nextInt(500)));
+                            engine.removeRules(removed);
+                            expected.keySet().removeAll(removed);
+                    }
+
+                    // verify
+                    RuleEngine rebuilt = new RuleEngine(String::toLowerCase, null, mode, storage);
+                    rebuilt.setRulesAndAttributeDefinitions(RandomRules.attributeDefinitions(), expected);
+                    assertEquals(rebuilt.getRulesAsStrings(), engine.getRulesAsStrings());
+                    for (int i = 0; i < 50; i++) {
+                        String query = random.query();
+                        assertEquals(mode + " " + storage + " " + step + " " + query,
+                                queryOrMultiply(rebuilt, query), queryOrMultiply(engine, query));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void removeRuleAndAddRule__smallUpdates__dictionariesOfPreviousRulesReused() {
+        // setup
+        Map<String, String> rules = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            rules.put(String.valueOf(i), "Brand:B" + i + "=" + i);
+        }
+        ruleEngine.setRules(rules);
+
+        // act
+        ruleEngine.removeRule("0");
+        ruleEngine.addRule("new", "Brand:New=new");
+
+        // verify
+        EncodedRules encodedRules = ruleEngine.getMetadata().getEncodedRules();
+        // the value of the removed rule stays in the dictionary, the new value is appended
+        assertEquals(101, encodedRules.getValuesCount(0));
+        assertEquals("New", encodedRules.getValue(0, 100));
+        assertEquals("new", ruleEngine.query("Brand:New"));
+        assertNull(ruleEngine.query("Brand:B0"));
+        assertEquals("1", ruleEngine.query("Brand:B1"));
+    }
+
+    @Test
+    public void removeRules__manyRemovedRules__rulesBuiltAgainWithoutRemovedValues() {
+        // setup
+        Map<String, String> rules = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            rules.put(String.valueOf(i), "Brand:B" + i + "=" + i);
+        }
+        ruleEngine.setRules(rules);
+
+        // act
+        for (int i = 0; i < 50; i++) {
+            ruleEngine.removeRule(String.valueOf(i));
+        }
+
+        // verify
+        assertTrue(ruleEngine.getMetadata().getEncodedRules().getValuesCount(0) < 100);
+        assertEquals("99", ruleEngine.query("Brand:B99"));
+    }
+
+    @Test(timeout = 20_000)
+    public void addRule__manyRules__costsLessThanSettingAllRules() {
+        for (RuleEngine.EvaluationMode mode : RuleEngine.EvaluationMode.values()) {
+            // setup
+            RuleEngine engine = new RuleEngine(null, null, mode, RuleEngine.StorageMode.COMPACT);
+            engine.setAmbiguityPolicy(RuleEngine.AmbiguityPolicy.REJECT_RULES);
+            Map<String, String> rules = new HashMap<>();
+            for (int i = 0; i < 100_000; i++) {
+                rules.put(String.valueOf(i), "Brand:P" + i + "X*#Country:C" + (i % 100) + "=" + i);
+            }
+            engine.setRulesAndAttributeDefinitions(ruleEngine.getAttributesDefinitions(), rules);
+
+            // act
+            for (int i = 0; i < 300; i++) {
+                engine.addRule("new" + i, "Brand:N" + i + "#Country:C1=" + i);
+            }
+
+            // verify
+            assertEquals(100_300, engine.getRules().size());
+            assertEquals("7", engine.query("Brand:N7#Country:C1"));
+            assertEquals("12", engine.query("Brand:P12Xa#Country:C12"));
+        }
+    }
+
+    private Rule findRule(String id) {
+        return ruleEngine.getRules().stream().filter(rule -> rule.getId().equals(id)).findFirst().orElse(null);
+    }
+}
@@ -0,0 +1,153 @@
+package com.github.eboldyrev.ruleengine;
+
+import com.github.eboldyrev.ruleengine.exception.MultiplyRulesFound;
+import com.github.eboldyrev.ruleengine.exception.RuleEngineException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class RuleEngine_metricsTest {
+
+    private RuleEngine ruleEngine;
+    private RuleEngineMetrics metrics;
+
+    @Before
+    public void setUp() {
+        Map<String, Integer> attributeDefinitions = new HashMap<>();
+        attributeDefinitions.put("Brand", 1);
+        attributeDefinitions.put("Country", 1);
+
+        Map<String, String> rules = new HashMap<>();
+        rules.put("1", "Brand:Puma#Country:Russia=10%");
+        rules.put("2", "Brand:Puma=5%");
+        rules.put("3", "Country:Germany=3%");
+
+        metrics = new RuleEngineMetrics();
+        ruleEngine = new RuleEngine(null, null);
+        ruleEngine.setListener(metrics);
+        ruleEngine.setRulesAndAttributeDefinitions(attributeDefinitions, rules);
+    }
+
+    @Test
+    public void query__matchedNotMatchedAndMultiply__countersUpdated() {
+        // act
+        ruleEngine.query("Brand:Puma#Country:Russia");
+        ruleEngine.query("Brand:Puma");
+        ruleEngine.query("Brand:Puma");
+        ruleEngine.query("Brand:Adidas");
+        try {
+            ruleEngine.query("Brand:Puma#Country:Germany");
+            fail("MultiplyRulesFound expected");
+        } catch (MultiplyRulesFound e) {
+            // expected
+        }
+
+        // verify
+        assertEquals(5, metrics.getQueryCount());
+        assertEquals(1, metrics.getNoMatchCount());
+        assertEquals(1, metrics.getMultiplyRulesFoundCount());
+        assertEquals(1, metrics.getRuleHits("1"));
+        assertEquals(2, metrics.getRuleHits("2"));
+        assertEquals(0, metrics.getRuleHits("3"));
+        assertFalse(metrics.getRuleHits().containsKey("3"));
+        assertTrue(metrics.getEvaluatedRules() > 0);
+        assertTrue(metrics.getTotalQueryNanos() > 0);
+    }
+
+    @Test
+    public void query__compiledMode__evaluatedRulesReported() {
+        // setup
+        RuleEngine compiled = new RuleEngine(null, null, RuleEngine.EvaluationMode.COMPILED);
+        compiled.setRulesAndAttributeDefinitions(ruleEngine.getAttributesDefinitions(), ruleEngine.getRulesAsStrings());
+        compiled.setListener(metrics);
+
+        // act
+        compiled.query("Brand:Puma#Country:Russia");
+
+        // verify
+        assertEquals(1, metrics.getRuleHits("1"));
+        assertTrue(metrics.getEvaluatedRules() > 0);
+    }
+
+    @Test
+    public void queryTopKAndQueryAllMatches__everyMode__countersUpdated() {
+        for (RuleEngine.EvaluationMode mode : RuleEngine.EvaluationMode.values()) {
+            // setup
+            RuleEngineMetrics modeMetrics = new RuleEngineMetrics();
+            RuleEngine engine = new RuleEngine(null, null, mode);
+            engine.setRulesAndAttributeDefinitions(ruleEngine.getAttributesDefinitions(), ruleEngine.getRulesAsStrings());
+            engine.setListener(modeMetrics);
+
+            // act
+            engine.queryAllMatches("Brand:Puma#Country:Russia");
+            engine.queryTopK("Brand:Puma#Country:Germany", 1);
+            engine.queryAllMatches("Brand:Adidas");
+
+            // verify
+            assertEquals(mode.toString(), 3, modeMetrics.getQueryCount());
+            assertEquals(mode.toString(), 1, modeMetrics.getNoMatchCount());
+            assertEquals(mode.toString(), 0, modeMetrics.getMultiplyRulesFoundCount());
+            assertEquals(mode.toString(), 1, modeMetrics.getRuleHits("1"));
+            assertEquals(mode.toString(), 2, modeMetrics.getRuleHits("2"));
+            assertEquals(mode.toString(), 0, modeMetrics.getRuleHits("3"));
+            assertTrue(mode.toString(), modeMetrics.getEvaluatedRules() > 0);
+        }
+    }
+
+    @Test
+    public void setRules__validAndInvalidRules__reloadsAndErrorsCounted() {
+        // setup
+        Map<String, String> invalidRules = new HashMap<>();
+        invalidRules.put("1", "Size:XL=10%");
+
+        // act
+        ruleEngine.setRules(ruleEngine.getRulesAsStrings());
+        try {
+            ruleEngine.setRules(invalidRules);
+            fail("RuleEngineException expected");
+        } catch (RuleEngineException e) {
+            // expected
+        }
+
+        // verify
+        assertEquals(2, metrics.getReloadCount());
+        assertEquals(1, metrics.getReloadErrorCount());
+        assertEquals(3, ruleEngine.getRules().size());
+    }
+
+    @Test
+    public void setRulesAndUpsertRules__skipInvalid__skippedRulesCounted() {
+        // setup
+        ruleEngine.setParsePolicy(ParsePolicy.skipInvalid());
+        Map<String, String> rules = new HashMap<>();
+        rules.put("1", "Size:XL=10%");
+        rules.put("2", "Brand:Puma=5%");
+        rules.put("3", "Brand:=3%");
+
+        // act
+        ruleEngine.setRules(rules);
+        ruleEngine.upsertRules(rules);
+
+        // verify
+        assertEquals(4, metrics.getSkippedRuleCount());
+        assertEquals(0, metrics.getReloadErrorCount());
+        assertEquals(1, ruleEngine.getRules().size());
+    }
+
+    @Test
+    public void query__listenerRemoved__nothingReported() {
+        // setup
+        ruleEngine.setListener(null);
+
+        // act
+        ruleEngine.query("Brand:Puma");
+
+        // verify
+        assertEquals(0, metrics.getQueryCount());
+        assertEquals(0, metrics.getRuleHits("2"));
+    }
+}
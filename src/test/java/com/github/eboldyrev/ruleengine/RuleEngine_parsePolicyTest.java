@@ -0,0 +1,116 @@
+package com.github.eboldyrev.ruleengine;
+
+import com.github.eboldyrev.ruleengine.exception.RuleEngineException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class RuleEngine_parsePolicyTest {
+
+    private RuleEngine ruleEngine;
+    private Map<String, Integer> attributeDefinitions;
+    private Map<String, String> rules;
+
+    @Before
+    public void setUp() {
+        attributeDefinitions = new HashMap<>();
+        attributeDefinitions.put("Brand", 1);
+        attributeDefinitions.put("Country", 1);
+
+        rules = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            rules.put("valid" + i, "Brand:B" + i + "=" + i);
+        }
+        for (int i = 0; i < 10; i++) {
+            rules.put("invalid" + i, "Size:XL=" + i);
+        }
+
+        ruleEngine = new RuleEngine(null, null);
+    }
+
+    @Test
+    public void setRulesAndAttributeDefinitions__defaultPolicy__allErrorsReported() {
+        // act
+        RuleEngineException exception = setRulesAndAttributeDefinitions();
+
+        // verify
+        assertEquals(10, errorsCount(exception));
+        assertTrue(ruleEngine.getRules().isEmpty());
+    }
+
+    @Test
+    public void setRulesAndAttributeDefinitions__failFast__oneErrorReported() {
+        // setup
+        ruleEngine.setParsePolicy(ParsePolicy.failFast());
+
+        // act
+        RuleEngineException exception = setRulesAndAttributeDefinitions();
+
+        // verify
+        assertEquals(1, errorsCount(exception));
+        assertTrue(exception.getMessage().startsWith("The following rules has errors: rule id: invalid"));
+    }
+
+    @Test
+    public void setRulesAndAttributeDefinitions__collectErrorsInParallel__atMostMaxErrorsReported() {
+        // setup
+        ForkJoinPool pool = new ForkJoinPool(4);
+        ruleEngine.setParsePolicy(ParsePolicy.collectErrors(3).inParallel(pool));
+
+        // act
+        RuleEngineException exception = setRulesAndAttributeDefinitions();
+        pool.shutdown();
+
+        // verify
+        assertEquals(3, errorsCount(exception));
+    }
+
+    @Test
+    public void setRulesAndAttributeDefinitions__skipInvalidInParallel__validRulesLoaded() {
+        // setup
+        ForkJoinPool pool = new ForkJoinPool(4);
+        ruleEngine.setParsePolicy(ParsePolicy.skipInvalid().inParallel(pool));
+
+        // act
+        ruleEngine.setRulesAndAttributeDefinitions(attributeDefinitions, rules);
+        pool.shutdown();
+
+        // verify
+        assertEquals(100, ruleEngine.getRules().size());
+        assertEquals("42", ruleEngine.query("Brand:B42"));
+    }
+
+    @Test
+    public void parseRules__parallelPolicy__allRulesAndErrorsReturned() {
+        // setup
+        ForkJoinPool pool = new ForkJoinPool(4);
+        ruleEngine.setAttributesDefinitions(attributeDefinitions);
+        ruleEngine.setParsePolicy(ParsePolicy.failFast().inParallel(pool));
+
+        // act
+        long errors = ruleEngine.parseRules(rules).stream().filter(RuleOrError::isError).count();
+        pool.shutdown();
+
+        // verify
+        assertEquals(10, errors);
+    }
+
+    private RuleEngineException setRulesAndAttributeDefinitions() {
+        try {
+            ruleEngine.setRulesAndAttributeDefinitions(attributeDefinitions, rules);
+        } catch (RuleEngineException e) {
+            return e;
+        }
+        fail("RuleEngineException expected");
+        return null;
+    }
+
+    private static int errorsCount(RuleEngineException exception) {
+        return exception.getMessage().split("rule id: ").length - 1;
+    }
+}
@@ -0,0 +1,136 @@
+package com.github.eboldyrev.ruleengine;
+
+import com.github.eboldyrev.ruleengine.exception.InvalidRuleStructure;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class RuleEngine_preparedQueryTest {
+
+    private RuleEngine ruleEngine;
+
+    @Before
+    public void setUp() {
+        Map<String, Integer> attributeDefinitions = new HashMap<>();
+        attributeDefinitions.put("Brand", 1);
+        attributeDefinitions.put("Country", 1);
+        attributeDefinitions.put("OldClient", 1);
+
+        Map<String, String> rules = new HashMap<>();
+        rules.put("1", "brand:puma#country:russia=10%");
+        rules.put("2", "brand:puma=5%");
+        rules.put("3", "country:*ussia=1%");
+
+        ruleEngine = new RuleEngine(String::toLowerCase, String::toLowerCase);
+        ruleEngine.setRulesAndAttributeDefinitions(attributeDefinitions, rules);
+    }
+
+    @Test
+    public void query__preparedQueryWithSameValuesAsInRule__ruleFound() {
+        // setup
+        AttributeHandle brand = ruleEngine.attributeHandle("Brand");
+        AttributeHandle country = ruleEngine.attributeHandle("Country");
+
+        // act
+        String result = ruleEngine.query(ruleEngine.newQueryBuilder()
+                .set(country, "Russia")
+                .set(brand, "Puma")
+                .build());
+
+        // verify
+        assertEquals("10%", result);
+    }
+
+    @Test
+    public void query__reusedBuilderWithOverwrittenValue__sameResultAsStringQuery() {
+        // setup
+        AttributeHandle brand = ruleEngine.attributeHandle("Brand");
+        AttributeHandle country = ruleEngine.attributeHandle("Country");
+        QueryBuilder builder = ruleEngine.newQueryBuilder();
+        builder.set(brand, "Puma").set(country, "Russia").build();
+
+        // act
+        String result = ruleEngine.query(builder.clear().set(country, "Russia").set(country, "Belorussia").build());
+
+        // verify
+        assertEquals(ruleEngine.query("Country:Belorussia"), result);
+        assertEquals("1%", result);
+    }
+
+    @Test
+    public void attributeHandle__unknownAttribute__throwsInvalidRuleStructure() {
+        try {
+            ruleEngine.attributeHandle("Unknown");
+            fail("Should throw InvalidRuleStructure");
+        } catch (InvalidRuleStructure e) {
+            assertEquals("Unknown rule attribute: unknown", e.getMessage());
+        }
+    }
+
+    @Test
+    public void set__emptyValue__throwsInvalidRuleStructure() {
+        AttributeHandle brand = ruleEngine.attributeHandle("Brand");
+
+        try {
+            ruleEngine.newQueryBuilder().set(brand, "");
+            fail("Should throw InvalidRuleStructure");
+        } catch (InvalidRuleStructure e) {
+            assertEquals("Empty value for attribute 'brand'", e.getMessage());
+        }
+    }
+
+    @Test
+    public void query__valuesWithSpaces__sameResultAsStringQuery() {
+        // setup
+        AttributeHandle brand = ruleEngine.attributeHandle("Brand");
+        AttributeHandle country = ruleEngine.attributeHandle("Country");
+
+        // act
+        String result = ruleEngine.query(ruleEngine.newQueryBuilder()
+                .set(brand, " Puma\t")
+                .set(country, "  Russia ")
+                .build());
+
+        // verify
+        assertEquals(ruleEngine.query("Brand: Puma\t#Country:  Russia "), result);
+        assertEquals("10%", result);
+    }
+
+    @Test
+    public void set__blankValue__throwsInvalidRuleStructure() {
+        AttributeHandle brand = ruleEngine.attributeHandle("Brand");
+
+        try {
+            ruleEngine.newQueryBuilder().set(brand, " \t");
+            fail("Should throw InvalidRuleStructure");
+        } catch (InvalidRuleStructure e) {
+            assertEquals("Empty value for attribute 'brand'", e.getMessage());
+        }
+    }
+
+    @Test
+    public void set__notExactValue__throwsSameExceptionAsStringQuery() {
+        AttributeHandle brand = ruleEngine.attributeHandle("Brand");
+        for (String value : new String[]{"*", "Pu*", "*ma", "{Puma|Nike}"}) {
+            String expected = null;
+            try {
+                ruleEngine.query("Brand:" + value);
+                fail("Should throw InvalidRuleStructure for " + value);
+            } catch (InvalidRuleStructure e) {
+                expected = e.getMessage();
+            }
+
+            try {
+                ruleEngine.newQueryBuilder().set(brand, value);
+                fail("Should throw InvalidRuleStructure for " + value);
+            } catch (InvalidRuleStructure e) {
+                assertEquals(expected, e.getMessage());
+            }
+        }
+    }
+
+}
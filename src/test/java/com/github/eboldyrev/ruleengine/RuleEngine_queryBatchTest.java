@@ -0,0 +1,119 @@
+package com.github.eboldyrev.ruleengine;
+
+import com.github.eboldyrev.ruleengine.exception.InvalidRuleStructure;
+import com.github.eboldyrev.ruleengine.exception.MultiplyRulesFound;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class RuleEngine_queryBatchTest {
+
+    private RuleEngine ruleEngine;
+
+    @Before
+    public void setUp() {
+        Map<String, Integer> attributeDefinitions = new HashMap<>();
+        attributeDefinitions.put("Brand", 1);
+        attributeDefinitions.put("Country", 1);
+
+        Map<String, String> rules = new HashMap<>();
+        rules.put("1", "Brand:Puma#Country:Russia=10%");
+        rules.put("2", "Brand:Puma=5%");
+        rules.put("3", "Country:Germany=3%");
+
+        ruleEngine = new RuleEngine(null, null);
+        ruleEngine.setRulesAndAttributeDefinitions(attributeDefinitions, rules);
+    }
+
+    @Test
+    public void queryBatch__differentQueries__resultsInInputOrder() {
+        // setup
+        List<Map<String, String>> queries = Arrays.asList(
+                query("Brand", "Puma", "Country", "Russia"),
+                query("Brand", "Adidas"),
+                query("Brand", "Puma"));
+
+        // act
+        List<QueryResultOrError> results = ruleEngine.queryBatch(queries);
+
+        // verify
+        assertEquals(3, results.size());
+        assertEquals("10%", results.get(0).getResult());
+        assertNull(results.get(1).getResult());
+        assertFalse(results.get(1).isError());
+        assertEquals("5%", results.get(2).getResult());
+    }
+
+    @Test
+    public void queryBatch__failedQueries__errorsPerQuery() {
+        // setup
+        List<Map<String, String>> queries = Arrays.asList(
+                query("Brand", "Puma", "Country", "Germany"),
+                query("Brand", ""),
+                query("Brand", "Puma"));
+
+        // act
+        List<QueryResultOrError> results = ruleEngine.queryBatch(queries);
+
+        // verify
+        assertTrue(results.get(0).getError() instanceof MultiplyRulesFound);
+        assertTrue(results.get(1).getError() instanceof InvalidRuleStructure);
+        assertEquals("5%", results.get(2).getResult());
+    }
+
+    @Test
+    public void queryBatch__duplicatedQueries__evaluatedOnce() {
+        // setup
+        ruleEngine.enableQueryCache(16);
+        List<Map<String, String>> queries = Arrays.asList(
+                query("Brand", "Puma"),
+                query("Brand", "Puma"),
+                query("Brand", "Puma"));
+
+        // act
+        List<QueryResultOrError> results = ruleEngine.queryBatch(queries);
+
+        // verify
+        for (QueryResultOrError result : results) {
+            assertEquals("5%", result.getResult());
+        }
+        assertEquals(1, ruleEngine.getQueryCacheStats().getMissCount());
+        assertEquals(0, ruleEngine.getQueryCacheStats().getHitCount());
+    }
+
+    @Test
+    public void queryBatch__forkJoinPool__sameResultsAsSequential() {
+        // setup
+        String[] brands = {"Puma", "Adidas", "Nike"};
+        String[] countries = {"Russia", "Germany", "France"};
+        List<Map<String, String>> queries = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            queries.add(query("Brand", brands[i % 3], "Country", countries[i % 7 % 3]));
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        // act
+        List<QueryResultOrError> parallel = ruleEngine.queryBatch(queries, pool);
+        List<QueryResultOrError> sequential = ruleEngine.queryBatch(queries);
+        pool.shutdown();
+
+        // verify
+        assertEquals(sequential.size(), parallel.size());
+        for (int i = 0; i < sequential.size(); i++) {
+            assertEquals(sequential.get(i).getResult(), parallel.get(i).getResult());
+            assertEquals(sequential.get(i).isError(), parallel.get(i).isError());
+        }
+    }
+
+    private static Map<String, String> query(String... nameValues) {
+        Map<String, String> query = new HashMap<>();
+        for (int i = 0; i < nameValues.length; i += 2) {
+            query.put(nameValues[i], nameValues[i + 1]);
+        }
+        return query;
+    }
+}
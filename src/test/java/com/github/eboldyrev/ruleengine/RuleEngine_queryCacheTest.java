@@ -0,0 +1,160 @@
+package com.github.eboldyrev.ruleengine;
+
+import com.github.eboldyrev.ruleengine.exception.MultiplyRulesFound;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class RuleEngine_queryCacheTest {
+
+    private RuleEngine ruleEngine;
+    private Map<String, Integer> attributeDefinitions;
+
+    @Before
+    public void setUp() {
+        attributeDefinitions = new HashMap<>();
+        attributeDefinitions.put("Brand", 1);
+        attributeDefinitions.put("Country", 1);
+        attributeDefinitions.put("OldClient", 1);
+
+        Map<String, String> rules = new HashMap<>();
+        rules.put("1", "Brand:Puma#Country:Russia=10%");
+        rules.put("2", "Brand:Puma=5%");
+        rules.put("3", "Country:*ussia=1%");
+
+        ruleEngine = new RuleEngine(null, null);
+        ruleEngine.setRulesAndAttributeDefinitions(attributeDefinitions, rules);
+        ruleEngine.enableQueryCache(1024);
+    }
+
+    @Test
+    public void query__sameQueryTwice__secondQueryIsCacheHit() {
+        // act
+        String first = ruleEngine.query("Brand:Puma#Country:Russia");
+        String second = ruleEngine.query("Brand:Puma#Country:Russia");
+
+        // verify
+        assertEquals("10%", first);
+        assertEquals("10%", second);
+        QueryCacheStats stats = ruleEngine.getQueryCacheStats();
+        assertEquals(1, stats.getHitCount());
+        assertEquals(1, stats.getMissCount());
+        assertEquals(1, stats.getSize());
+    }
+
+    @Test
+    public void query__differentValuesUnknownToExactRules__shareCacheEntry() {
+        // act
+        String first = ruleEngine.query("Brand:Adidas#OldClient:true");
+        String second = ruleEngine.query("Brand:Nike#OldClient:false");
+
+        // verify
+        assertNull(first);
+        assertNull(second);
+        QueryCacheStats stats = ruleEngine.getQueryCacheStats();
+        assertEquals(1, stats.getHitCount());
+        assertEquals(1, stats.getSize());
+    }
+
+    @Test
+    public void query__differentValuesOfAttributeWithSuffixRule__notSharedCacheEntry() {
+        // act
+        String first = ruleEngine.query("Country:Russia");
+        String second = ruleEngine.query("Country:Belorussia");
+        String third = ruleEngine.query("Country:Germany");
+
+        // verify
+        assertEquals("1%", first);
+        assertEquals("1%", second);
+        assertNull(third);
+        assertEquals(0, ruleEngine.getQueryCacheStats().getHitCount());
+        assertEquals(3, ruleEngine.getQueryCacheStats().getSize());
+    }
+
+    @Test
+    public void query__rulesChanged__cachedResultIsNotReturned() {
+        // setup
+        ruleEngine.query("Brand:Puma");
+        Map<String, String> rules = new HashMap<>();
+        rules.put("1", "Brand:Puma=7%");
+
+        // act
+        ruleEngine.setRules(rules);
+        String result = ruleEngine.query("Brand:Puma");
+
+        // verify
+        assertEquals("7%", result);
+        assertEquals(0, ruleEngine.getQueryCacheStats().getHitCount());
+    }
+
+    @Test
+    public void query__moreQueriesThanCacheSize__cacheSizeIsBounded() {
+        // setup
+        ruleEngine.enableQueryCache(16);
+
+        // act
+        for (int i = 0; i < 200; i++) {
+            ruleEngine.query("Country:Country" + i);
+        }
+
+        // verify
+        QueryCacheStats stats = ruleEngine.getQueryCacheStats();
+        assertTrue(stats.getSize() <= 16);
+        assertEquals(200, stats.getSize() + stats.getEvictionCount());
+    }
+
+    @Test
+    public void query__cacheSizeNotMultipleOfSegments__cacheFilledToExactSize() {
+        for (int maximumSize : new int[]{1, 3, 15, 17, 100}) {
+            // setup
+            ruleEngine.enableQueryCache(maximumSize);
+
+            // act
+            for (int i = 0; i < 1000; i++) {
+                ruleEngine.query("Country:Country" + i);
+            }
+
+            // verify
+            QueryCacheStats stats = ruleEngine.getQueryCacheStats();
+            assertEquals("cache size " + maximumSize, maximumSize, stats.getSize());
+            assertEquals(1000, stats.getSize() + stats.getEvictionCount());
+        }
+    }
+
+    @Test
+    public void query__cachedAmbiguousQuery__multiplyRulesFoundIsThrownAgain() {
+        // setup
+        Map<String, String> rules = new HashMap<>();
+        rules.put("1", "Brand:Puma=5%");
+        rules.put("2", "Country:Russia=1%");
+        ruleEngine.setRules(rules);
+
+        for (int i = 0; i < 2; i++) {
+            // act
+            try {
+                ruleEngine.query("Brand:Puma#Country:Russia");
+                fail("MultiplyRulesFound expected");
+            } catch (MultiplyRulesFound e) {
+                // verify
+                assertEquals(2, e.getRulesResults().size());
+            }
+        }
+        assertEquals(1, ruleEngine.getQueryCacheStats().getHitCount());
+    }
+
+    @Test
+    public void getQueryCacheStats__cacheDisabled__zeroStats() {
+        // setup
+        ruleEngine.disableQueryCache();
+
+        // act
+        ruleEngine.query("Brand:Puma");
+
+        // verify
+        assertEquals(0, ruleEngine.getQueryCacheStats().getMissCount());
+    }
+}
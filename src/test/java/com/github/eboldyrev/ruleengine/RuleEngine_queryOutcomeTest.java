@@ -0,0 +1,150 @@
+package com.github.eboldyrev.ruleengine;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class RuleEngine_queryOutcomeTest {
+
+    private RuleEngine ruleEngine;
+
+    @Before
+    public void setUp() {
+        Map<String, Integer> attributeDefinitions = new HashMap<>();
+        attributeDefinitions.put("Brand", 1);
+        attributeDefinitions.put("Country", 1);
+        attributeDefinitions.put("OldClient", 1);
+
+        Map<String, String> rules = new HashMap<>();
+        rules.put("1", "Brand:Puma#Country:Russia=10%");
+        rules.put("2", "Brand:Puma=5%");
+        rules.put("3", "Country:Russia=1%");
+
+        ruleEngine = new RuleEngine(null, null);
+        ruleEngine.setRulesAndAttributeDefinitions(attributeDefinitions, rules);
+    }
+
+    @Test
+    public void queryOutcome__oneHeaviestRuleMatched__matchedWithRuleAndResult() {
+        // act
+        QueryOutcome outcome = ruleEngine.queryOutcome("Brand:Puma#Country:Russia");
+
+        // verify
+        assertEquals(QueryOutcome.Status.MATCHED, outcome.getStatus());
+        assertTrue(outcome.isMatched());
+        assertEquals("10%", outcome.getResult());
+        assertEquals("1", outcome.getRule().getId());
+        assertEquals(Arrays.asList("1"), outcome.getRuleIds());
+    }
+
+    @Test
+    public void queryOutcome__noRuleMatched__noMatch() {
+        // act
+        QueryOutcome outcome = ruleEngine.queryOutcome("Brand:Nike");
+
+        // verify
+        assertEquals(QueryOutcome.Status.NO_MATCH, outcome.getStatus());
+        assertNull(outcome.getResult());
+        assertNull(outcome.getRule());
+        assertEquals(0, outcome.getRulesCount());
+    }
+
+    @Test
+    public void queryOutcome__sameWeightRulesMatched__ambiguousWithTiedRuleIds() {
+        // setup
+        Map<String, String> query = new HashMap<>();
+        query.put("Brand", "Puma");
+        query.put("Country", "Germany");
+        query.put("OldClient", "Yes");
+        ruleEngine.addRule("4", "OldClient:Yes=3%");
+
+        // act
+        QueryOutcome outcome = ruleEngine.queryOutcome(query);
+
+        // verify
+        assertEquals(QueryOutcome.Status.AMBIGUOUS, outcome.getStatus());
+        assertNull(outcome.getResult());
+        assertNull(outcome.getRule());
+        assertEquals(2, outcome.getRulesCount());
+        assertEquals(Arrays.asList("2", "4"), outcome.getRuleIds());
+        assertEquals("4", outcome.getRuleId(1));
+    }
+
+    @Test
+    public void getRuleIds__tiedRulesInEveryMode__orderOfQueryAllMatches() {
+        // setup
+        Map<String, Integer> attributeDefinitions = new HashMap<>();
+        attributeDefinitions.put("Brand", 1);
+        attributeDefinitions.put("Country", 1);
+        Map<String, String> rules = new HashMap<>();
+        rules.put("1", "Brand:P*#Country:Russia=1%");
+        rules.put("2", "Brand:Puma#Country:*ussia=2%");
+
+        for (RuleEngine.EvaluationMode mode : RuleEngine.EvaluationMode.values()) {
+            RuleEngine engine = new RuleEngine(null, null, mode);
+            engine.setRulesAndAttributeDefinitions(attributeDefinitions, rules);
+
+            // act
+            QueryOutcome outcome = engine.queryOutcome("Brand:Puma#Country:Russia");
+
+            // verify
+            List<String> allMatches = new ArrayList<>();
+            for (RuleResult result : engine.queryAllMatches("Brand:Puma#Country:Russia")) {
+                allMatches.add(result.getRule().getId());
+            }
+            assertEquals(mode.toString(), Arrays.asList("1", "2"), outcome.getRuleIds());
+            assertEquals(mode.toString(), allMatches, outcome.getRuleIds());
+        }
+    }
+
+    @Test
+    public void queryOutcome__reusedOutcome__outcomeOfLastQuery() {
+        // setup
+        AttributeHandle brand = ruleEngine.attributeHandle("Brand");
+        AttributeHandle country = ruleEngine.attributeHandle("Country");
+        PreparedQuery ambiguous = ruleEngine.newQueryBuilder().set(brand, "Puma").set(country, "Russia").build();
+        PreparedQuery puma = ruleEngine.newQueryBuilder().set(brand, "Puma").build();
+        QueryOutcome outcome = new QueryOutcome();
+
+        // act
+        QueryOutcome first = ruleEngine.queryOutcome(ambiguous, outcome);
+        String firstResult = first.getResult();
+        QueryOutcome second = ruleEngine.queryOutcome(puma, outcome);
+
+        // verify
+        assertSame(outcome, first);
+        assertSame(outcome, second);
+        assertEquals("10%", firstResult);
+        assertEquals("5%", outcome.getResult());
+    }
+
+    @Test
+    public void queryOutcome__cachedQuery__sameOutcome() {
+        // setup
+        ruleEngine.enableQueryCache(16);
+        ruleEngine.query("Brand:Puma");
+
+        for (int i = 0; i < 2; i++) {
+            // act
+            QueryOutcome outcome = ruleEngine.queryOutcome("Brand:Puma#Country:Germany#OldClient:No");
+
+            // verify
+            assertEquals(QueryOutcome.Status.MATCHED, outcome.getStatus());
+            assertEquals("5%", outcome.getResult());
+        }
+        assertEquals(1, ruleEngine.getQueryCacheStats().getHitCount());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void getRuleId__indexOutOfMatchedRules__exceptionThrown() {
+        // act
+        ruleEngine.queryOutcome("Brand:Nike").getRuleId(0);
+    }
+}
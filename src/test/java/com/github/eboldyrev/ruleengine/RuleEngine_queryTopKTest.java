@@ -0,0 +1,79 @@
+package com.github.eboldyrev.ruleengine;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RuleEngine_queryTopKTest {
+
+    private RuleEngine ruleEngine;
+
+    @Before
+    public void setUp() {
+        Map<String, Integer> attributeDefinitions = new HashMap<>();
+        attributeDefinitions.put("Brand", 1);
+        attributeDefinitions.put("Country", 1);
+
+        Map<String, String> rules = new HashMap<>();
+        rules.put("1", "Brand:Puma#Country:Russia=10%");
+        rules.put("2", "Brand:Puma=5%");
+        rules.put("3", "Country:Russia=3%");
+        rules.put("4", "Country:*=1%");
+
+        ruleEngine = new RuleEngine(null, null);
+        ruleEngine.setRulesAndAttributeDefinitions(attributeDefinitions, rules);
+    }
+
+    @Test
+    public void queryAllMatches__severalRulesMatch__allRulesByDescendingWeight() {
+        // act
+        List<RuleResult> results = ruleEngine.queryAllMatches("Brand:Puma#Country:Russia");
+
+        // verify
+        assertEquals(4, results.size());
+        assertEquals("10%", results.get(0).getResultValue());
+        assertEquals(results.get(1).getRuleWeight(), results.get(2).getRuleWeight());
+        assertEquals("1%", results.get(3).getResultValue());
+        assertEquals(RuleResult.Status.EQUAL, results.get(3).getStatus());
+    }
+
+    @Test
+    public void queryTopK__moreMatchesThanK__onlyHeaviestKReturned() {
+        // act
+        List<RuleResult> results = ruleEngine.queryTopK("Brand:Puma#Country:Russia", 1);
+
+        // verify
+        assertEquals(1, results.size());
+        assertEquals("10%", results.get(0).getResultValue());
+    }
+
+    @Test
+    public void queryTopK__tiedRules__noExceptionThrown() {
+        // act
+        List<RuleResult> results = ruleEngine.queryTopK("Brand:Puma#Country:Russia", 3);
+
+        // verify
+        assertEquals(3, results.size());
+        assertEquals(results.get(1).getRuleWeight(), results.get(2).getRuleWeight());
+    }
+
+    @Test
+    public void queryAllMatches__noRuleMatches__emptyList() {
+        // act
+        List<RuleResult> results = ruleEngine.queryAllMatches("Brand:Adidas");
+
+        // verify
+        assertTrue(results.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void queryTopK__zeroK__exceptionThrown() {
+        ruleEngine.queryTopK("Brand:Puma", 0);
+    }
+}
@@ -0,0 +1,196 @@
+package com.github.eboldyrev.ruleengine;
+
+import com.github.eboldyrev.ruleengine.attributes.RuleAttribute;
+import com.github.eboldyrev.ruleengine.exception.InvalidRuleStructure;
+import com.github.eboldyrev.ruleengine.exception.RuleEngineException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class RuleEngine_rangeTest {
+
+    private Map<String, Integer> attributeDefinitions;
+    private Map<String, String> rules;
+
+    @Before
+    public void setUp() {
+        attributeDefinitions = new HashMap<>();
+        attributeDefinitions.put("Amount", 1);
+        attributeDefinitions.put("Brand", 1);
+
+        rules = new HashMap<>();
+        rules.put("1", "Amount:[0..100)=1%");
+        rules.put("2", "Amount:[100..500)=2%");
+        rules.put("3", "Amount:[500..)=3%");
+        rules.put("4", "Amount:1000=4%");
+        rules.put("5", "Amount:10*=5%");
+        rules.put("6", "Amount:[100..500)#Brand:Puma=6%");
+    }
+
+    @Test
+    public void query__rangeRules__ruleWithRangeContainingValueMatched() {
+        for (RuleEngine.EvaluationMode mode : RuleEngine.EvaluationMode.values()) {
+            // setup
+            RuleEngine ruleEngine = new RuleEngine(null, null, mode);
+            ruleEngine.setRulesAndAttributeDefinitions(attributeDefinitions, rules);
+
+            // act & verify
+            assertEquals(mode.toString(), "1%", ruleEngine.query("Amount:99.5"));
+            assertEquals(mode.toString(), "2%", ruleEngine.query("Amount:100"));
+            assertEquals(mode.toString(), "6%", ruleEngine.query("Amount:499#Brand:Puma"));
+            assertEquals(mode.toString(), "3%", ruleEngine.query("Amount:7e2"));
+            // exact beats range, range beats prefix
+            assertEquals(mode.toString(), "4%", ruleEngine.query("Amount:1000"));
+            assertEquals(mode.toString(), "3%", ruleEngine.query("Amount:1001"));
+            assertEquals(mode.toString(), "5%", ruleEngine.query("Amount:10abc"));
+            assertNull(mode.toString(), ruleEngine.query("Amount:-1"));
+        }
+    }
+
+    @Test
+    public void setRules__invalidRange__ruleHasError() {
+        // setup
+        RuleEngine ruleEngine = new RuleEngine(null, null);
+        ruleEngine.setAttributesDefinitions(attributeDefinitions);
+
+        // act
+        try {
+            ruleEngine.setRules(Collections.singletonMap("1", "Amount:[500..100)=1%"));
+            fail("RuleEngineException expected");
+        } catch (RuleEngineException e) {
+            // verify
+            assertTrue(e.getMessage().endsWith("Range [500..100) has low bound greater than high bound"));
+        }
+    }
+
+    @Test(expected = InvalidRuleStructure.class)
+    public void query__rangeInQuery__throwsInvalidRuleStructure() {
+        // setup
+        RuleEngine ruleEngine = new RuleEngine(null, null);
+        ruleEngine.setRulesAndAttributeDefinitions(attributeDefinitions, rules);
+
+        // act
+        ruleEngine.query("Amount:[1..2]");
+    }
+
+    @Test
+    public void query__cachedRangeQuery__differentNumbersNotShared() {
+        // setup
+        RuleEngine ruleEngine = new RuleEngine(null, null);
+        ruleEngine.setRulesAndAttributeDefinitions(attributeDefinitions, rules);
+        ruleEngine.enableQueryCache(16);
+
+        // act
+        String first = ruleEngine.query("Amount:50");
+        String second = ruleEngine.query("Amount:150");
+
+        // verify
+        assertEquals("1%", first);
+        assertEquals("2%", second);
+    }
+
+    @Test
+    public void setAmbiguityPolicy__rejectRulesAndOverlappingRanges__onlyOverlappingRangesRejected() {
+        // setup
+        RuleEngine ruleEngine = new RuleEngine(null, null);
+        ruleEngine.setAmbiguityPolicy(RuleEngine.AmbiguityPolicy.REJECT_RULES);
+        ruleEngine.setRulesAndAttributeDefinitions(attributeDefinitions, Collections.singletonMap("1", "Amount:[0..100)=1%"));
+        Map<String, String> overlapping = new HashMap<>();
+        overlapping.put("1", "Amount:[0..100]=1%");
+        overlapping.put("2", "Amount:[100..500)=2%");
+
+        // act
+        ruleEngine.upsertRules(Collections.singletonMap("2", "Amount:[100..500)=2%"));
+        try {
+            ruleEngine.setRules(overlapping);
+            fail("overlapping ranges should be rejected");
+        } catch (RuntimeException e) {
+            // verify
+            assertEquals(2, ruleEngine.getRules().size());
+        }
+    }
+
+    @Test
+    public void query__severalRangesOnOneAttribute__allModesFindSameRule() {
+        // setup
+        Map<String, String> rules = new HashMap<>();
+        rules.put("1", "Amount:[1..5]#Amount:[2..6]=x");
+        rules.put("2", "Amount:[7..9]=y");
+        rules.put("3", "Amount:*#Amount:[1..3]#Amount:[4..6]=z");
+        rules.put("4", "Amount:[1..3]=w");
+
+        for (RuleEngine.EvaluationMode mode : RuleEngine.EvaluationMode.values()) {
+            RuleEngine ruleEngine = new RuleEngine(null, null, mode);
+
+            // act
+            ruleEngine.setRulesAndAttributeDefinitions(attributeDefinitions, rules);
+
+            // verify
+            assertEquals(mode.toString(), "y", ruleEngine.query("Amount:8"));
+            assertEquals(mode.toString(), "x", ruleEngine.query("Amount:4.5"));
+            assertEquals(mode.toString(), "w", ruleEngine.query("Amount:1"));
+        }
+    }
+
+    @Test
+    public void query__randomRangeRules__sameResultAsRuleAttributes() {
+        Random random = new Random(11);
+        for (int attempt = 0; attempt < 20; attempt++) {
+            // setup
+            Map<String, String> rules = new HashMap<>();
+            for (int i = 0; i < 50; i++) {
+                int low = random.nextInt(100);
+                int high = low + random.nextInt(50);
+                int unbounded = random.nextInt(10);
+                String range = (random.nextBoolean() ? "[" : "(") + (unbounded == 0 ? "" : low) + ".."
+                        + (unbounded == 1 ? "" : high) + (random.nextBoolean() ? "]" : ")");
+                String rule = "Amount:" + range;
+                if (random.nextBoolean()) {
+                    rule += "#Brand:" + (random.nextBoolean() ? "Puma" : "Nike");
+                }
+                rules.put(String.valueOf(i), rule + "=" + i);
+            }
+            rules.put("exact", "Amount:42=exact");
+            List<RuleEngine> engines = new ArrayList<>();
+            for (RuleEngine.EvaluationMode mode : RuleEngine.EvaluationMode.values()) {
+                RuleEngine ruleEngine = new RuleEngine(null, null, mode);
+                ruleEngine.setRulesAndAttributeDefinitions(attributeDefinitions, rules);
+                engines.add(ruleEngine);
+            }
+
+            for (int q = 0; q < 200; q++) {
+                String query = "Amount:" + (random.nextInt(170) - 10) + (random.nextBoolean() ? "#Brand:Puma" : "");
+
+                // act
+                for (RuleEngine ruleEngine : engines) {
+                    Set<String> ids = new TreeSet<>();
+                    for (RuleResult result : ruleEngine.queryAllMatches(query)) {
+                        ids.add(result.getRule().getId());
+                    }
+
+                    // verify
+                    assertEquals(query, expectedMatches(ruleEngine, query), ids);
+                }
+            }
+        }
+    }
+
+    private static Set<String> expectedMatches(RuleEngine ruleEngine, String query) {
+        List<RuleAttribute> queryAttributes = Rule.queryFromString(query,
+                ruleEngine.getMetadata().getAttributeDefinitions(), null, null);
+        Set<String> names = new HashSet<>();
+        for (RuleAttribute attribute : queryAttributes) {
+            names.add(attribute.getName());
+        }
+        Set<String> ids = new TreeSet<>();
+        for (Rule rule : ruleEngine.getRules()) {
+            if (rule.execute(queryAttributes, names).getStatus() == RuleResult.Status.EQUAL) {
+                ids.add(rule.getId());
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,10 @@
+package com.github.eboldyrev.ruleengine;
+
+public class RuleEngine_rulesTest_compiled extends RuleEngine_rulesTest_withNameTransformator {
+
+    @Override
+    protected RuleEngine createRuleEngine() {
+        return new RuleEngine(null, null, RuleEngine.EvaluationMode.COMPILED);
+    }
+
+}
@@ -4,16 +4,19 @@ import com.github.eboldyrev.ruleengine.exception.MultiplyRulesFound;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.*;
 
 public class RuleEngine_rulesTest_withNameTransformator {
 
-    private RuleEngine ruleEngine;
-    private Map<String, Integer> attributeDefinitions;
+    protected RuleEngine ruleEngine;
+    protected Map<String, Integer> attributeDefinitions;
 
     @Before
     public void setUp() {
@@ -21,7 +24,11 @@ public class RuleEngine_rulesTest_withNameTransformator {
         attributeDefinitions.put("Brand", 1);
         attributeDefinitions.put("Country", 1);
         attributeDefinitions.put("OldClient", 1);
-        ruleEngine = new RuleEngine(null, null);
+        ruleEngine = createRuleEngine();
+    }
+
+    protected RuleEngine createRuleEngine() {
+        return new RuleEngine(null, null);
     }
 
     @Test
@@ -205,4 +212,42 @@ public class RuleEngine_rulesTest_withNameTransformator {
         assertNull(result);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void query__3RulesWithSameWeightAndLighterRules_querySuitsAll__multiplyRulesFoundWithAllHeaviestRules() {
+        // setup
+        Map<String, String> rulesStrs = new HashMap<>();
+        rulesStrs.put("1", "Brand:Puma=1%");
+        rulesStrs.put("2", "Country:Russia=2%");
+        rulesStrs.put("3", "OldClient:Yes=3%");
+        rulesStrs.put("4", "Brand:*=4%");
+        rulesStrs.put("5", "Country:*ussia=5%");
+        ruleEngine.setRulesAndAttributeDefinitions(attributeDefinitions, rulesStrs);
+
+        // act
+        try {
+            ruleEngine.query("Brand:Puma#Country:Russia#OldClient:Yes");
+            fail("Should throw MultiplyRulesFound exception");
+        } catch (MultiplyRulesFound e) {
+            // verify
+            assertEquals(3, e.getRulesResults().size());
+        }
+    }
+
+    @Test
+    public void setRules__rulesWithDifferentWeights__rulesOrderedByDescendingWeight() {
+        // setup
+        Map<String, String> rulesStrs = new HashMap<>();
+        rulesStrs.put("1", "Brand:*=1%");
+        rulesStrs.put("2", "Brand:Puma#Country:Russia=2%");
+        rulesStrs.put("3", "Brand:Pu*=3%");
+        rulesStrs.put("4", "Brand:Puma=4%");
+
+        // act
+        ruleEngine.setRulesAndAttributeDefinitions(attributeDefinitions, rulesStrs);
+
+        // verify
+        List<String> actualIds = ruleEngine.getRules().stream().map(Rule::getId).collect(Collectors.toList());
+        assertEquals(Arrays.asList("2", "4", "3", "1"), actualIds);
+    }
+
+}
@@ -0,0 +1,106 @@
+package com.github.eboldyrev.ruleengine;
+
+import com.github.eboldyrev.ruleengine.exception.AmbiguousRulesFound;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class RuleEngine_setTest {
+
+    private Map<String, Integer> attributeDefinitions;
+    private Map<String, String> rules;
+
+    @Before
+    public void setUp() {
+        attributeDefinitions = new HashMap<>();
+        attributeDefinitions.put("Country", 1);
+        attributeDefinitions.put("Brand", 1);
+
+        rules = new HashMap<>();
+        rules.put("1", "Country:{DE|FR|IT}=1%");
+        rules.put("2", "Country:{DE|FR}#Brand:Puma=2%");
+        rules.put("3", "Country:E*=3%");
+        rules.put("4", "Brand:Nike=4%");
+    }
+
+    @Test
+    public void query__setRules__ruleWithValueInSetFound() {
+        for (RuleEngine.EvaluationMode mode : RuleEngine.EvaluationMode.values()) {
+            // setup
+            RuleEngine ruleEngine = new RuleEngine(null, null, mode);
+            ruleEngine.setRulesAndAttributeDefinitions(attributeDefinitions, rules);
+
+            // act & verify
+            assertEquals(mode.toString(), "1%", ruleEngine.query("Country:IT"));
+            assertEquals(mode.toString(), "2%", ruleEngine.query("Country:FR#Brand:Puma"));
+            assertEquals(mode.toString(), "1%", ruleEngine.query("Country:IT#Brand:Puma"));
+            // set weighs as exact value, so it beats starts with
+            assertEquals(mode.toString(), "3%", ruleEngine.query("Country:ES"));
+            assertNull(mode.toString(), ruleEngine.query("Country:RU"));
+        }
+    }
+
+    @Test
+    public void query__cachedSetQuery__membersAreNotSharedWithUnknownValues() {
+        // setup
+        RuleEngine ruleEngine = new RuleEngine(null, null);
+        ruleEngine.setRulesAndAttributeDefinitions(attributeDefinitions, Collections.singletonMap("1", "Country:{DE|FR}=1%"));
+        ruleEngine.enableQueryCache(16);
+
+        // act
+        String first = ruleEngine.query("Country:RU");
+        String second = ruleEngine.query("Country:DE");
+        String third = ruleEngine.query("Country:US");
+
+        // verify
+        assertNull(first);
+        assertEquals("1%", second);
+        assertNull(third);
+        assertEquals(1, ruleEngine.getQueryCacheStats().getHitCount());
+    }
+
+    @Test
+    public void setRules__rejectRulesAndIntersectingSets__onlyIntersectingSetsRejected() {
+        // setup
+        RuleEngine ruleEngine = new RuleEngine(null, null);
+        ruleEngine.setAmbiguityPolicy(RuleEngine.AmbiguityPolicy.REJECT_RULES);
+        ruleEngine.setAttributesDefinitions(attributeDefinitions);
+        Map<String, String> disjoint = new HashMap<>();
+        disjoint.put("1", "Country:{DE|FR}=1%");
+        disjoint.put("2", "Country:{IT|ES}=2%");
+        disjoint.put("3", "Country:RU=3%");
+        Map<String, String> intersecting = new HashMap<>(disjoint);
+        intersecting.put("3", "Country:ES=3%");
+
+        // act
+        ruleEngine.setRules(disjoint);
+        try {
+            ruleEngine.setRules(intersecting);
+            fail("AmbiguousRulesFound expected");
+        } catch (AmbiguousRulesFound e) {
+            // verify
+            assertEquals(Collections.singletonList(Arrays.asList("2", "3")), e.getAmbiguousRuleIds());
+        }
+    }
+
+    @Test
+    public void getRules__compactStorage__setRulesRestored() {
+        // setup
+        RuleEngine ruleEngine = new RuleEngine(null, null, RuleEngine.EvaluationMode.COMPILED,
+                RuleEngine.StorageMode.COMPACT);
+        ruleEngine.setRulesAndAttributeDefinitions(attributeDefinitions, rules);
+
+        // act
+        Set<String> restored = new TreeSet<>();
+        for (Rule rule : ruleEngine.getRules()) {
+            restored.add(rule.asString());
+        }
+
+        // verify
+        assertTrue(restored.contains("Country:{DE|FR|IT}=1%"));
+        assertEquals("2%", ruleEngine.query("Country:DE#Brand:Puma"));
+    }
+}
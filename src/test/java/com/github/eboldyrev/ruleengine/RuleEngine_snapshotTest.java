@@ -0,0 +1,168 @@
+package com.github.eboldyrev.ruleengine;
+
+import com.github.eboldyrev.ruleengine.exception.RuleEngineException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static com.github.eboldyrev.ruleengine.RandomRules.queryOrMultiply;
+import static org.junit.Assert.*;
+
+public class RuleEngine_snapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private RandomRules random;
+    private RuleEngine ruleEngine;
+
+    @Before
+    public void setUp() {
+        random = new RandomRules(42);
+        Map<String, Integer> attributeDefinitions = RandomRules.attributeDefinitions();
+        attributeDefinitions.put("Unused", 5);
+
+        ruleEngine = new RuleEngine(String::toLowerCase, null);
+        ruleEngine.setRulesAndAttributeDefinitions(attributeDefinitions, random.rules(300));
+    }
+
+    @Test
+    public void loadSnapshot__writtenSnapshot__sameRulesAndQueryResults() throws IOException {
+        // setup
+        Path path = folder.newFile("rules.snapshot").toPath();
+        ruleEngine.writeSnapshot(path);
+
+        for (RuleEngine.EvaluationMode mode : RuleEngine.EvaluationMode.values()) {
+            RuleEngine loaded = new RuleEngine(String::toLowerCase, null, mode);
+
+            // act
+            loaded.loadSnapshot(path);
+
+            // verify
+            assertEquals(ruleEngine.getRulesAsStrings(), loaded.getRulesAsStrings());
+            assertEquals(ruleEngine.getAttributesDefinitions(), loaded.getAttributesDefinitions());
+            for (int i = 0; i < 500; i++) {
+                String query = random.query();
+                assertEquals(mode + " " + query, queryOrMultiply(ruleEngine, query), queryOrMultiply(loaded, query));
+            }
+        }
+    }
+
+    @Test
+    public void loadSnapshot__emptyEngine__emptyRules() throws IOException {
+        // setup
+        Path path = folder.newFile("empty.snapshot").toPath();
+        new RuleEngine(null, null).writeSnapshot(path);
+
+        // act
+        ruleEngine.loadSnapshot(path);
+
+        // verify
+        assertTrue(ruleEngine.getRules().isEmpty());
+        assertTrue(ruleEngine.getAttributesDefinitions().isEmpty());
+    }
+
+    @Test
+    public void loadSnapshot__truncatedSnapshot__exceptionThrownAndRulesNotChanged() throws IOException {
+        // setup
+        Path path = folder.newFile("rules.snapshot").toPath();
+        ruleEngine.writeSnapshot(path);
+        byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length / 2));
+
+        // act
+        try {
+            new RuleEngine(null, null).loadSnapshot(path);
+            fail("RuleEngineException expected");
+        } catch (RuleEngineException e) {
+            // verify
+            assertTrue(e.getMessage().startsWith("Corrupted snapshot"));
+        }
+    }
+
+    @Test
+    public void loadSnapshot__corruptedLengths__exceptionThrownAndRulesNotChanged() throws IOException {
+        // setup
+        Path path = folder.newFile("rules.snapshot").toPath();
+        ruleEngine.writeSnapshot(path);
+        byte[] bytes = Files.readAllBytes(path);
+        Map<String, String> rules = ruleEngine.getRulesAsStrings();
+
+        // definitions count and length of the first definition name
+        for (int offset : new int[]{8, 12}) {
+            for (int length : new int[]{-1, Integer.MIN_VALUE, Integer.MAX_VALUE, bytes.length}) {
+                byte[] corrupted = bytes.clone();
+                ByteBuffer.wrap(corrupted).putInt(offset, length);
+                Files.write(path, corrupted);
+
+                // act
+                try {
+                    ruleEngine.loadSnapshot(path);
+                    fail("RuleEngineException expected for " + length + " at " + offset);
+                } catch (RuleEngineException e) {
+                    // verify
+                    assertTrue(e.getMessage().startsWith("Corrupted snapshot"));
+                    assertEquals(rules, ruleEngine.getRulesAsStrings());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void loadSnapshot__corruptedConditions__exceptionThrownAndRulesNotChanged() throws IOException {
+        // setup
+        Path path = folder.newFile("rules.snapshot").toPath();
+        ruleEngine.writeSnapshot(path);
+        byte[] bytes = Files.readAllBytes(path);
+        Map<String, String> rules = ruleEngine.getRulesAsStrings();
+        int conditionsCount = ruleEngine.getRules().stream().mapToInt(rule -> rule.getAttributes().size()).sum();
+        // the snapshot ends with condition starts, conditions count, attributes, types and values of conditions
+        int values = bytes.length - conditionsCount * Integer.BYTES;
+        int types = values - conditionsCount;
+        int attributes = types - conditionsCount * Integer.BYTES;
+        int secondConditionStart = attributes - Integer.BYTES * (ruleEngine.getRules().size() + 1);
+
+        // offset and written int
+        int[][] corruptions = {{values, 1_000_000}, {attributes, 99}, {attributes, -1},
+                {secondConditionStart, conditionsCount + 1}};
+        for (int[] corruption : corruptions) {
+            byte[] corrupted = bytes.clone();
+            ByteBuffer.wrap(corrupted).putInt(corruption[0], corruption[1]);
+            assertCorrupted(path, corrupted, rules);
+        }
+        byte[] corrupted = bytes.clone();
+        corrupted[types] = 42;
+        assertCorrupted(path, corrupted, rules);
+    }
+
+    @Test(expected = RuleEngineException.class)
+    public void loadSnapshot__notSnapshot__exceptionThrown() throws IOException {
+        // setup
+        Path path = folder.newFile("rules.txt").toPath();
+        Files.write(path, "1\tBrand:a=1".getBytes());
+
+        // act
+        ruleEngine.loadSnapshot(path);
+    }
+
+    private void assertCorrupted(Path path, byte[] corrupted, Map<String, String> rules) throws IOException {
+        Files.write(path, corrupted);
+
+        // act
+        try {
+            ruleEngine.loadSnapshot(path);
+            fail("RuleEngineException expected");
+        } catch (RuleEngineException e) {
+            // verify
+            assertTrue(e.getMessage().startsWith("Corrupted snapshot"));
+            assertEquals(rules, ruleEngine.getRulesAsStrings());
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.github.eboldyrev.ruleengine;
+
+import com.github.eboldyrev.ruleengine.exception.RuleEngineException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class RuleEngine_streamingTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private RuleEngine ruleEngine;
+
+    @Before
+    public void setUp() {
+        Map<String, Integer> attributeDefinitions = new HashMap<>();
+        attributeDefinitions.put("Brand", 1);
+        attributeDefinitions.put("Country", 1);
+
+        ruleEngine = new RuleEngine(null, null);
+        ruleEngine.setAttributesDefinitions(attributeDefinitions);
+    }
+
+    @Test
+    public void loadRules__validLines__rulesLoaded() throws IOException {
+        // setup
+        String lines = "1\tBrand:Puma#Country:Russia=10%\n" +
+                "\n" +
+                "2\tBrand:Puma=5%\r\n";
+
+        // act
+        ruleEngine.loadRules(new StringReader(lines));
+
+        // verify
+        assertEquals(2, ruleEngine.getRules().size());
+        assertEquals("10%", ruleEngine.query("Brand:Puma#Country:Russia"));
+        assertEquals("5%", ruleEngine.query("Brand:Puma"));
+    }
+
+    @Test
+    public void loadRules__invalidLines__allErrorsReportedAndRulesNotChanged() throws IOException {
+        // setup
+        ruleEngine.addRule("0", "Brand:Nike=1%");
+        String lines = "1\tBrand:Puma=10%\n" +
+                "2 Brand:Puma=5%\n" +
+                "3\tSize:XL=5%\n" +
+                "1\tCountry:Russia=3%\n";
+        List<RuleOrError> handledErrors = new ArrayList<>();
+
+        // act
+        try {
+            ruleEngine.loadRules(new StringReader(lines), handledErrors::add);
+            fail("RuleEngineException expected");
+        } catch (RuleEngineException e) {
+            // verify
+            assertTrue(e.getMessage().contains("Missing tab between rule id and rule in line 2"));
+            assertTrue(e.getMessage().contains("Unknown rule attribute: Size"));
+            assertTrue(e.getMessage().contains("Duplicate rule id in line 4"));
+        }
+        assertEquals(3, handledErrors.size());
+        assertEquals("1%", ruleEngine.query("Brand:Nike"));
+    }
+
+    @Test
+    public void loadRules__invalidLines__reloadFailureReportedToListener() throws IOException {
+        // setup
+        RuleEngineMetrics metrics = new RuleEngineMetrics();
+        ruleEngine.setListener(metrics);
+        String lines = "1\tBrand:Puma=10%\n" +
+                "2\tSize:XL=5%\n";
+
+        // act
+        try {
+            ruleEngine.loadRules(new StringReader(lines));
+            fail("RuleEngineException expected");
+        } catch (RuleEngineException e) {
+            // expected
+        }
+
+        // verify
+        assertEquals(1, metrics.getReloadErrorCount());
+        assertEquals(0, metrics.getReloadCount());
+        assertTrue(ruleEngine.getRules().isEmpty());
+    }
+
+    @Test
+    public void loadRules__failFast__readingStopsAtFirstError() throws IOException {
+        // setup
+        ruleEngine.setParsePolicy(ParsePolicy.failFast());
+        String lines = "1\tSize:XL=10%\n" +
+                "2\tSize:XXL=5%\n";
+        List<RuleOrError> handledErrors = new ArrayList<>();
+
+        // act
+        try {
+            ruleEngine.loadRules(new StringReader(lines), handledErrors::add);
+            fail("RuleEngineException expected");
+        } catch (RuleEngineException e) {
+            // expected
+        }
+
+        // verify
+        assertEquals(1, handledErrors.size());
+    }
+
+    @Test
+    public void loadRules__skipInvalid__validRulesLoaded() throws IOException {
+        // setup
+        ruleEngine.setParsePolicy(ParsePolicy.skipInvalid());
+        String lines = "1\tSize:XL=10%\n" +
+                "2\tBrand:Puma=5%\n";
+
+        // act
+        ruleEngine.loadRules(new StringReader(lines));
+
+        // verify
+        assertEquals(1, ruleEngine.getRules().size());
+    }
+
+    @Test
+    public void loadRules__skipInvalid__skippedRulesReportedToListener() throws IOException {
+        // setup
+        RuleEngineMetrics metrics = new RuleEngineMetrics();
+        ruleEngine.setListener(metrics);
+        ruleEngine.setParsePolicy(ParsePolicy.skipInvalid());
+        String lines = "1\tSize:XL=10%\n" +
+                "2\tBrand:Puma=5%\n" +
+                "3\tBrand:Puma=1%\n" +
+                "no tab\n";
+
+        // act
+        ruleEngine.loadRules(new StringReader(lines));
+
+        // verify
+        assertEquals(2, ruleEngine.getRules().size());
+        assertEquals(2, metrics.getSkippedRuleCount());
+    }
+
+    @Test
+    public void loadRules__definitionsChangedWhileReading__rulesParsedWithNewDefinitions() throws IOException {
+        // setup
+        Map<String, Integer> attributeDefinitions = new HashMap<>();
+        attributeDefinitions.put("Brand", 3);
+        attributeDefinitions.put("Country", 1);
+        String lines = "1\tBrand:Puma=5%\n";
+
+        // act
+        ruleEngine.loadRules(changeDefinitionsOnRead(lines, attributeDefinitions));
+
+        // verify
+        RuleEngine expected = new RuleEngine(null, null);
+        expected.setRulesAndAttributeDefinitions(attributeDefinitions, Collections.singletonMap("1", "Brand:Puma=5%"));
+        assertEquals(expected.getRules().get(0).getWeight(), ruleEngine.getRules().get(0).getWeight());
+        assertEquals(attributeDefinitions, ruleEngine.getAttributesDefinitions());
+    }
+
+    @Test
+    public void loadRules__attributeRemovedWhileReadingAndSkipInvalid__ruleSkippedAndReported() throws IOException {
+        // setup
+        RuleEngineMetrics metrics = new RuleEngineMetrics();
+        ruleEngine.setListener(metrics);
+        ruleEngine.setParsePolicy(ParsePolicy.skipInvalid());
+        String lines = "1\tBrand:Puma=5%\n" +
+                "2\tCountry:Russia=1%\n";
+
+        // act
+        ruleEngine.loadRules(changeDefinitionsOnRead(lines, Collections.singletonMap("Country", 1)));
+
+        // verify
+        assertEquals(Collections.singletonMap("2", "Country:Russia=1%"), ruleEngine.getRulesAsStrings());
+        assertEquals(1, metrics.getSkippedRuleCount());
+    }
+
+    @Test
+    public void loadRules__attributeRemovedWhileReading__exceptionThrownAndRulesNotChanged() throws IOException {
+        // setup
+        String lines = "1\tBrand:Puma=5%\n";
+
+        // act
+        try {
+            ruleEngine.loadRules(changeDefinitionsOnRead(lines, Collections.singletonMap("Country", 1)));
+            fail("RuleEngineException expected");
+        } catch (RuleEngineException e) {
+            // verify
+            assertTrue(e.getMessage().contains("Unknown rule attribute: Brand"));
+            assertTrue(ruleEngine.getRules().isEmpty());
+        }
+    }
+
+    // replaces attribute definitions of the engine when the first line is read, like a concurrent reload
+    private Reader changeDefinitionsOnRead(String lines, Map<String, Integer> attributeDefinitions) {
+        return new StringReader(lines) {
+            private boolean changed;
+
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                if (!changed) {
+                    changed = true;
+                    ruleEngine.setAttributesDefinitions(attributeDefinitions);
+                }
+                return super.read(cbuf, off, len);
+            }
+        };
+    }
+
+    @Test
+    public void exportRules__loadedFromFile__sameRulesLoadedBack() throws IOException {
+        // setup
+        Path path = folder.newFile("rules.tsv").toPath();
+        Files.write(path, "1\tBrand:Puma#Country:Russia=10%\n2\tCountry:*ssia=5%\n".getBytes(StandardCharsets.UTF_8));
+        ruleEngine.loadRules(path);
+
+        // act
+        StringWriter writer = new StringWriter();
+        ruleEngine.exportRules(writer);
+        RuleEngine copy = new RuleEngine(null, null);
+        copy.setAttributesDefinitions(ruleEngine.getAttributesDefinitions());
+        copy.loadRules(new StringReader(writer.toString()));
+
+        // verify
+        assertEquals(ruleEngine.getRulesAsStrings(), copy.getRulesAsStrings());
+        assertEquals("2\tCountry:*ssia=5%", writer.toString().split("\n")[1]);
+    }
+}
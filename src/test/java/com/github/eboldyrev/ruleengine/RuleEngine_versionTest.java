@@ -0,0 +1,107 @@
+package com.github.eboldyrev.ruleengine;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class RuleEngine_versionTest {
+
+    private RuleEngine ruleEngine;
+
+    @Before
+    public void setUp() {
+        Map<String, Integer> attributeDefinitions = new HashMap<>();
+        attributeDefinitions.put("Brand", 1);
+        attributeDefinitions.put("Country", 1);
+
+        ruleEngine = new RuleEngine(null, null);
+        ruleEngine.setRulesAndAttributeDefinitions(attributeDefinitions, Collections.singletonMap("1", "Brand:Puma=5%"));
+    }
+
+    @Test
+    public void getRulesVersion__rulesChanged__versionIncreased() {
+        // setup
+        long version = ruleEngine.getRulesVersion();
+
+        // act
+        ruleEngine.addRule("2", "Brand:Nike=3%");
+        ruleEngine.removeRule("unknown");
+
+        // verify
+        assertEquals(1, version);
+        assertEquals(2, ruleEngine.getRulesVersion());
+    }
+
+    @Test
+    public void pinRules__rulesReloaded__pinnedVersionQueried() {
+        // setup
+        PinnedRules pinned = ruleEngine.pinRules();
+
+        // act
+        ruleEngine.setRules(Collections.singletonMap("1", "Brand:Puma=7%"));
+
+        // verify
+        assertEquals("5%", pinned.query("Brand:Puma"));
+        assertEquals(QueryOutcome.Status.MATCHED, pinned.queryOutcome("Brand:Puma").getStatus());
+        assertEquals(1, pinned.getVersion());
+        assertEquals("7%", ruleEngine.query("Brand:Puma"));
+        assertEquals("7%", ruleEngine.pinRules().query(Collections.singletonMap("Brand", "Puma")));
+    }
+
+    @Test
+    public void pinRules__pinnedQueryWithCache__currentEntriesKept() {
+        // setup
+        ruleEngine.enableQueryCache(16);
+        PinnedRules pinned = ruleEngine.pinRules();
+        ruleEngine.setRules(Collections.singletonMap("1", "Brand:Puma=7%"));
+        ruleEngine.query("Brand:Puma");
+
+        // act
+        String pinnedResult = pinned.query("Brand:Puma");
+        String result = ruleEngine.query("Brand:Puma");
+
+        // verify
+        assertEquals("5%", pinnedResult);
+        assertEquals("7%", result);
+        assertEquals(1, ruleEngine.getQueryCacheStats().getHitCount());
+    }
+
+    @Test
+    public void upsertRules__concurrentReloads__noUpdateLost() throws Exception {
+        // setup
+        int threads = 8;
+        int updatesPerThread = 50;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < updatesPerThread; i++) {
+                    // act
+                    ruleEngine.upsertRules(Collections.singletonMap(thread + "-" + i, "Country:C" + thread + "_" + i + "=" + i));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // verify
+        assertEquals(1 + threads * updatesPerThread, ruleEngine.getRules().size());
+        assertEquals(1 + threads * updatesPerThread, ruleEngine.getRulesVersion());
+        assertEquals("7", ruleEngine.query("Country:C3_7"));
+    }
+}
@@ -0,0 +1,99 @@
+package com.github.eboldyrev.ruleengine;
+
+import com.github.eboldyrev.ruleengine.attributes.RuleAttribute;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class RuleIndexTest {
+
+    private Map<String, AttributeDefinition> attributeDefinitions;
+
+    @Before
+    public void setUp() {
+        RuleEngine ruleEngine = new RuleEngine(null, null);
+        Map<String, Integer> attributesWithWeight = new HashMap<>();
+        attributesWithWeight.put("Brand", 1);
+        attributesWithWeight.put("Country", 1);
+        attributeDefinitions = ruleEngine.createAttributeDefinitions(attributesWithWeight);
+    }
+
+    @Test
+    public void candidates__exactMatchRules__onlyRulesWithQueriedValueReturned() {
+        EncodedRules encodedRules = new EncodedRules(rules("Brand:Puma=1", "Brand:Adidas=2", "Brand:Puma#Country:Russia=3"));
+
+        int[] candidates = candidates(encodedRules, query("Brand:Puma#Country:Russia"));
+
+        assertArrayEquals(new int[]{0, 2}, candidates);
+    }
+
+    @Test
+    public void candidates__anyAndPartialMatchRules__returnedAsUnconstrained() {
+        EncodedRules encodedRules = new EncodedRules(rules("Brand:Puma=1", "Brand:*=2", "Brand:Ad*=3", "Country:Russia=4"));
+
+        int[] candidates = candidates(encodedRules, query("Brand:Adidas#Country:Russia"));
+
+        assertArrayEquals(new int[]{1, 2, 3}, candidates);
+    }
+
+    @Test
+    public void candidates__queryWithoutIndexedAttribute__rulesWithConditionOnItExcluded() {
+        EncodedRules encodedRules = new EncodedRules(rules("Brand:Puma=1", "Country:Russia=2", "Country:*=3"));
+
+        int[] candidates = candidates(encodedRules, query("Brand:Puma"));
+
+        assertArrayEquals(new int[]{0, 2}, candidates);
+    }
+
+    @Test
+    public void candidates__startsWithRules__onlyRulesWithMatchingPrefixReturned() {
+        EncodedRules encodedRules = new EncodedRules(rules("Brand:P*=1", "Brand:Pu*=2", "Brand:Pa*=3", "Brand:Puma=4", "Country:*=5"));
+
+        int[] candidates = candidates(encodedRules, query("Brand:Puma#Country:Russia"));
+
+        assertArrayEquals(new int[]{0, 1, 3, 4}, candidates);
+    }
+
+    @Test
+    public void candidates__endsWithRules__onlyRulesWithMatchingSuffixReturned() {
+        EncodedRules encodedRules = new EncodedRules(rules("Country:*ussia=1", "Country:*many=2", "Country:*a=3", "Brand:*=4"));
+
+        int[] candidates = candidates(encodedRules, query("Country:Belorussia"));
+
+        assertArrayEquals(new int[]{0, 2, 3}, candidates);
+    }
+
+    @Test
+    public void candidates__noIndexedRules__null() {
+        EncodedRules encodedRules = new EncodedRules(rules("Brand:*=1", "Country:*=2"));
+
+        assertEquals(RuleIndex.ALL_RULES, new RuleIndex(encodedRules).candidates(new QueryScratch()));
+    }
+
+    private static int[] candidates(EncodedRules encodedRules, List<RuleAttribute> queryAttributes) {
+        QueryScratch scratch = new QueryScratch();
+        encodedRules.encodeQuery(queryAttributes, scratch);
+        int count = new RuleIndex(encodedRules).candidates(scratch);
+        return Arrays.copyOf(scratch.candidates, count);
+    }
+
+    private List<Rule> rules(String... ruleStrs) {
+        List<Rule> rules = new ArrayList<>(ruleStrs.length);
+        for (int i = 0; i < ruleStrs.length; i++) {
+            rules.add(Rule.ruleFromString(String.valueOf(i), ruleStrs[i], attributeDefinitions, null, null));
+        }
+        return rules;
+    }
+
+    private List<RuleAttribute> query(String queryStr) {
+        return Rule.queryFromString(queryStr, attributeDefinitions, null, null);
+    }
+}
@@ -0,0 +1,147 @@
+package com.github.eboldyrev.ruleengine;
+
+import com.github.eboldyrev.ruleengine.attributes.ExactMatchAttribute;
+import com.github.eboldyrev.ruleengine.attributes.RuleAttribute;
+import com.github.eboldyrev.ruleengine.exception.InvalidRuleStructure;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the scanner with the split based parsing it replaced.
+ */
+public class RuleScannerTest {
+
+    private static final char[] ALPHABET = {'a', 'b', ' ', ':', '#', '=', '*'};
+
+    private final Map<String, AttributeDefinition> attributeDefinitions = attributeDefinitions();
+
+    @Test
+    public void ruleFromString__randomStrings__sameResultsAndErrorsAsSplit() {
+        Random random = new Random(42);
+        for (int i = 0; i < 50_000; i++) {
+            String str = randomString(random);
+            assertEquals(str, splitRule(str), outcome(() -> Rule.ruleFromString("1", str, attributeDefinitions, null, String::toUpperCase)));
+        }
+    }
+
+    @Test
+    public void queryFromString__randomStrings__sameResultsAndErrorsAsSplit() {
+        Random random = new Random(42);
+        for (int i = 0; i < 50_000; i++) {
+            String str = randomString(random);
+            assertEquals(str, splitQuery(str), outcome(() -> Rule.queryFromString(str, attributeDefinitions, null, null)));
+        }
+    }
+
+    @Test
+    public void ruleFromString__spacesAroundNamesAndValues__trimmed() {
+        // act
+        Rule rule = Rule.ruleFromString("1", " a : b* # b:*a =result", attributeDefinitions, null, null);
+
+        // verify
+        assertEquals("a:b*#b:*a", rule.asString().split("=")[0]);
+        assertEquals("result", rule.getResult());
+    }
+
+    private static Map<String, AttributeDefinition> attributeDefinitions() {
+        Map<String, AttributeDefinition> attributeDefinitions = new HashMap<>();
+        attributeDefinitions.put("a", new AttributeDefinition("a", 1));
+        attributeDefinitions.put("b", new AttributeDefinition("b", 2));
+        return attributeDefinitions;
+    }
+
+    private static String randomString(Random random) {
+        char[] chars = new char[random.nextInt(12)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = ALPHABET[random.nextInt(ALPHABET.length)];
+        }
+        return new String(chars);
+    }
+
+    private static String outcome(Supplier<Object> parse) {
+        try {
+            Object result = parse.get();
+            if (result instanceof Rule) {
+                Rule rule = (Rule) result;
+                return describe(rule.getAttributes()) + "=" + rule.getResult();
+            }
+            @SuppressWarnings("unchecked")
+            List<RuleAttribute> attributes = (List<RuleAttribute>) result;
+            return describe(attributes);
+        } catch (InvalidRuleStructure e) {
+            return "error: " + e.getMessage();
+        }
+    }
+
+    private static String describe(List<RuleAttribute> attributes) {
+        StringBuilder sb = new StringBuilder();
+        for (RuleAttribute attribute : attributes) {
+            sb.append(attribute.getClass().getSimpleName()).append('(').append(attribute.asString()).append(')');
+        }
+        return sb.toString();
+    }
+
+    // the parsing which was used before the scanner
+
+    private String splitRule(String rule) {
+        return outcome(() -> {
+            String[] ruleAndResult = rule.split("=");
+            if (ruleAndResult.length != 2) {
+                throw new InvalidRuleStructure("No rule result found: " + rule);
+            }
+            List<RuleAttribute> attributes = split(ruleAndResult[0], String::toUpperCase, name -> {
+                throw new InvalidRuleStructure("Unknown rule attribute: " + name);
+            }, ruleAttribute -> {
+            });
+            return new Rule("1", attributes, ruleAndResult[1]);
+        });
+    }
+
+    private String splitQuery(String query) {
+        return outcome(() -> split(query, null, name -> null, ruleAttribute -> {
+            if (!(ruleAttribute instanceof ExactMatchAttribute)) {
+                throw new InvalidRuleStructure("Only exact match values allowed in query.");
+            }
+        }));
+    }
+
+    private List<RuleAttribute> split(String queryStr, Function<String, String> valueTransformator,
+                                      Function<String, AttributeDefinition> unknownAttributePolicy,
+                                      Consumer<RuleAttribute> validateAttributeType) {
+        String[] splittedRule = queryStr.split("#");
+        if (splittedRule.length == 0) {
+            throw new InvalidRuleStructure("No attributes found!");
+        }
+
+        int attributeDivCount = 0;
+        for (int i = 0; i < queryStr.length(); i++) {
+            if (queryStr.charAt(i) == ':') {
+                attributeDivCount++;
+            }
+        }
+        if (attributeDivCount != splittedRule.length && !(splittedRule.length == 1 && attributeDivCount == 0)) {
+            String missedPart = "#";
+            if (attributeDivCount < splittedRule.length) {
+                missedPart = ":";
+            }
+            throw new InvalidRuleStructure("Incorrect query structure. Missed '" + missedPart + "' in " + queryStr);
+        }
+
+        List<RuleAttribute> attributes = new ArrayList<>(splittedRule.length);
+        for (String ruleAttrStr : splittedRule) {
+            RuleAttribute ruleAttribute = RuleAttribute.fromString(ruleAttrStr, attributeDefinitions,
+                    null, valueTransformator, unknownAttributePolicy, validateAttributeType);
+            if (ruleAttribute != null) {
+                attributes.add(ruleAttribute);
+            }
+        }
+        attributes.sort(Comparator.comparing(RuleAttribute::getName));
+        return attributes;
+    }
+}
@@ -0,0 +1,45 @@
+package com.github.eboldyrev.ruleengine.attributes;
+
+import com.github.eboldyrev.ruleengine.AttributeDefinition;
+import com.github.eboldyrev.ruleengine.RuleEngine;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class GlobRuleAttributeTest {
+
+    private AttributeDefinition definition;
+
+    @Before
+    public void setup() {
+        RuleEngine ruleEngine = new RuleEngine(null, null);
+        Map<String, AttributeDefinition> definitions = ruleEngine.createAttributeDefinitions(Collections.singletonMap("domain", 1));
+        definition = definitions.get("domain");
+    }
+
+    @Test
+    public void of__wildcardInsideOrOnBothEnds__globAttribute() {
+        assertTrue(RuleAttribute.of(definition, "*shop*") instanceof GlobRuleAttribute);
+        assertTrue(RuleAttribute.of(definition, "shop*com") instanceof GlobRuleAttribute);
+        assertTrue(RuleAttribute.of(definition, "**") instanceof GlobRuleAttribute);
+        assertTrue(RuleAttribute.of(definition, "shop*") instanceof StartsWithRuleAttribute);
+        assertTrue(RuleAttribute.of(definition, "*shop") instanceof EndsWithRuleAttribute);
+        assertTrue(RuleAttribute.of(definition, "*") instanceof AnyRuleAttribute);
+    }
+
+    @Test
+    public void calculate__globAttribute__matchesValuesOfPattern() {
+        RuleAttribute attribute = RuleAttribute.of(definition, "s*op*.com");
+
+        assertEquals("domain:s*op*.com", attribute.asString());
+        assertEquals(4, attribute.getWeight());
+        assertTrue(attribute.calculate(RuleAttribute.exactMatch(definition, "shop.com")));
+        assertTrue(attribute.calculate(RuleAttribute.exactMatch(definition, "s-op-x.com")));
+        assertFalse(attribute.calculate(RuleAttribute.exactMatch(definition, "shop.org")));
+        assertFalse(attribute.calculate(RuleAttribute.exactMatch(definition, "s.com")));
+    }
+}
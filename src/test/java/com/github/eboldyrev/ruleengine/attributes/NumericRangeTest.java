@@ -0,0 +1,84 @@
+package com.github.eboldyrev.ruleengine.attributes;
+
+import com.github.eboldyrev.ruleengine.AttributeDefinition;
+import com.github.eboldyrev.ruleengine.RuleEngine;
+import com.github.eboldyrev.ruleengine.exception.InvalidRuleStructure;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class NumericRangeTest {
+
+    @Test
+    public void parse__halfOpenRange__boundsAndInclusionParsed() {
+        NumericRange range = NumericRange.parse("[100..500)");
+
+        assertEquals(100, range.getLow(), 0);
+        assertTrue(range.isLowInclusive());
+        assertEquals(500, range.getHigh(), 0);
+        assertFalse(range.isHighInclusive());
+        assertTrue(range.contains(100));
+        assertTrue(range.contains(499.99));
+        assertFalse(range.contains(500));
+        assertFalse(range.contains(Double.NaN));
+    }
+
+    @Test
+    public void parse__emptyBound__unbounded() {
+        NumericRange range = NumericRange.parse("(-1.5..]");
+
+        assertFalse(range.contains(-1.5));
+        assertTrue(range.contains(1e300));
+    }
+
+    @Test
+    public void parse__invalidRanges__throwsInvalidRuleStructure() {
+        for (String value : new String[]{"[..]", "[a..5]", "[5..1]", "[1..1e400]", "[1,5]"}) {
+            try {
+                NumericRange.parse(value);
+                fail(value + " should not be parsed");
+            } catch (InvalidRuleStructure e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void parseNumber__variousValues__numberOrNaN() {
+        assertEquals(12, NumericRange.parseNumber("12"), 0);
+        assertEquals(-0.5, NumericRange.parseNumber("-.5"), 0);
+        assertEquals(1000, NumericRange.parseNumber("1e3"), 0);
+        assertEquals(0.0, NumericRange.parseNumber("-0"), 0);
+        assertEquals(Double.doubleToLongBits(0.0), Double.doubleToLongBits(NumericRange.parseNumber("-0")));
+        assertTrue(Double.isNaN(NumericRange.parseNumber("abc")));
+        assertTrue(Double.isNaN(NumericRange.parseNumber("1e")));
+        assertTrue(Double.isNaN(NumericRange.parseNumber("12a")));
+        assertTrue(Double.isNaN(NumericRange.parseNumber("NaN")));
+        assertTrue(Double.isNaN(NumericRange.parseNumber("")));
+    }
+
+    @Test
+    public void overlaps__touchingRanges__overlapOnlyWithBothBoundsIncluded() {
+        assertTrue(NumericRange.parse("[1..5]").overlaps(NumericRange.parse("[5..7)")));
+        assertFalse(NumericRange.parse("[1..5)").overlaps(NumericRange.parse("[5..7)")));
+        assertFalse(NumericRange.parse("[5..7)").overlaps(NumericRange.parse("[1..5)")));
+        assertTrue(NumericRange.parse("[1..)").overlaps(NumericRange.parse("(..2]")));
+    }
+
+    @Test
+    public void of__rangeValue__rangeAttributeWithRangeWeight() {
+        RuleEngine ruleEngine = new RuleEngine(null, null);
+        Map<String, AttributeDefinition> definitions = ruleEngine.createAttributeDefinitions(Collections.singletonMap("amount", 1));
+
+        RuleAttribute attribute = RuleAttribute.of(definitions.get("amount"), "[100..500)");
+
+        assertTrue(attribute instanceof RangeRuleAttribute);
+        assertEquals("amount:[100..500)", attribute.asString());
+        assertEquals(8, attribute.getWeight());
+        assertTrue(attribute.calculate(RuleAttribute.exactMatch(definitions.get("amount"), "250")));
+        assertFalse(attribute.calculate(RuleAttribute.exactMatch(definitions.get("amount"), "50")));
+    }
+}
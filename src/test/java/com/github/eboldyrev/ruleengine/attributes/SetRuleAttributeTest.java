@@ -0,0 +1,58 @@
+package com.github.eboldyrev.ruleengine.attributes;
+
+import com.github.eboldyrev.ruleengine.AttributeDefinition;
+import com.github.eboldyrev.ruleengine.RuleEngine;
+import com.github.eboldyrev.ruleengine.exception.InvalidRuleStructure;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class SetRuleAttributeTest {
+
+    private AttributeDefinition definition;
+
+    @Before
+    public void setup() {
+        RuleEngine ruleEngine = new RuleEngine(null, null);
+        Map<String, AttributeDefinition> definitions = ruleEngine.createAttributeDefinitions(Collections.singletonMap("country", 1));
+        definition = definitions.get("country");
+    }
+
+    @Test
+    public void of__setValue__setAttributeWithExactWeight() {
+        RuleAttribute attribute = RuleAttribute.of(definition, "{DE| FR|IT|DE}");
+
+        assertTrue(attribute instanceof SetRuleAttribute);
+        assertEquals("country:{DE| FR|IT|DE}", attribute.asString());
+        assertEquals(RuleAttribute.exactMatch(definition, "DE").getWeight(), attribute.getWeight());
+        assertEquals(Arrays.asList("DE", "FR", "IT"), new ArrayList<>(((SetRuleAttribute) attribute).getMembers()));
+        assertTrue(attribute.calculate(RuleAttribute.exactMatch(definition, "FR")));
+        assertFalse(attribute.calculate(RuleAttribute.exactMatch(definition, "ES")));
+    }
+
+    @Test
+    public void of__wildcardInSet__memberIsLiteral() {
+        RuleAttribute attribute = RuleAttribute.of(definition, "{D*|*}");
+
+        assertTrue(attribute.calculate(RuleAttribute.exactMatch(definition, "*")));
+        assertFalse(attribute.calculate(RuleAttribute.exactMatch(definition, "DE")));
+    }
+
+    @Test
+    public void parseMembers__emptyMember__throwsInvalidRuleStructure() {
+        for (String value : Arrays.asList("{}", "{DE||FR}", "{DE|}", "{ }")) {
+            try {
+                SetRuleAttribute.parseMembers(value);
+                fail("InvalidRuleStructure expected for " + value);
+            } catch (InvalidRuleStructure e) {
+                assertEquals("Set " + value + " has an empty value", e.getMessage());
+            }
+        }
+    }
+}